@@ -10,27 +10,11 @@ package towerdefence;
 public class Camel extends Enemy {
 
     /**
-     * Constructs a Camel object. The Enemy super constructor takes 3
-     * parameters: the health, the step and the symbol associated with the
-     * camel.
+     * Constructs a Camel object, with the health, step and symbol of the Camel
+     * in the unit file.
      */
     public Camel() {
-        super(HEALTH, STEP, SYMBOL);
+        super(UnitRegistry.enemy("Camel"));
     }
 
-    /**
-     * The starting health of the enemy.
-     */
-    private static final int HEALTH = 5;
-
-    /**
-     * How many steps the enemy may more forward each turn.
-     */
-    private static final double STEP = 1.0;
-
-    /**
-     * Symbol is a string of characters which represent the enemy when drawn on
-     * the map.
-     */
-    private static final String SYMBOL = "  MP ";
 }
@@ -10,38 +10,15 @@ package towerdefence;
 public class Cannon extends Tower {
 
     /**
-     * A cannon, which is an instance of a tower. It is instantiated by passing
-     * int damage, int position, int loadTime, int cost, String symbol to the
-     * Tower super constructor.
+     * A cannon, which is an instance of a tower. Its damage, load time, cost
+     * and symbol are those of the Cannon in the unit file.
      *
      * @param position
      *            the position of the tower - this is provided by the user when
      *            the tower is set up.
      */
     public Cannon(int position) {
-        // int damage, int position, int loadTime, int cost, String symbol
-        super(DAMAGE, position, LOADTIME, COST, SYMBOL);
+        super(UnitRegistry.tower("Cannon"), position);
     }
 
-    /**
-     * The damage dealt by the tower to an enemy.
-     */
-    private static final int DAMAGE = 10;
-
-    /**
-     * The number of timesteps that must elapse before the tower is able to
-     * fire.
-     */
-    private static final int LOADTIME = 5;
-
-    /**
-     * The cost of the tower in coins.
-     */
-    private static final int COST = 30;
-
-    /**
-     * The string representation of the tower for printing on the map.
-     */
-    private static final String SYMBOL = " _0o_";
-
 }
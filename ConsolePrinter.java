@@ -0,0 +1,40 @@
+package towerdefence;
+
+import java.util.List;
+
+/**
+ * Prints a game's events on the console for the player, as the game always
+ * has: who hit whom, and who died.
+ *
+ * @author 170021928
+ *
+ */
+public class ConsolePrinter implements GameListener {
+
+    /**
+     * Constructs a printer for a game with the given towers.
+     *
+     * @param towers
+     *            the game's towers, used to name the tower in hit events
+     */
+    public ConsolePrinter(List<Tower> towers) {
+        this.towers = towers;
+    }
+
+    /**
+     * The game's towers.
+     */
+    private final List<Tower> towers;
+
+    @Override
+    public void onHit(int tick, int tower, int towerPos, byte enemyType, int damage) {
+        System.out.println(this.towers.get(tower).name() + " hit " + EnemyStore.typeName(enemyType) + " with "
+                + damage + " damage.");
+    }
+
+    @Override
+    public void onKill(int tick, byte enemyType, int line, int position) {
+        System.out.print(EnemyStore.typeName(enemyType) + " died.");
+        System.out.println(" You get 1 COIN for killing a sentient being!");
+    }
+}
@@ -0,0 +1,359 @@
+package towerdefence;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes the state of a game for spectators: either a keyframe, holding every
+ * tower and enemy, or a delta, holding only what has changed since the last
+ * state encoded. Enemies are known by their ids, which stay the same as they
+ * move through the enemy store.
+ *
+ * Every message starts with its length in bytes, not counting the length
+ * itself, then its kind and the timestep. All numbers are big-endian ints
+ * except kinds and types, which are single bytes. After the header, a keyframe
+ * ('K') holds:
+ *
+ * the number of towers, then each tower's type and position; the number of
+ * enemies, then each enemy's id, type, line, position and health.
+ *
+ * A delta ('D') holds five lists, each a count followed by its entries: towers
+ * placed (type and position), enemies spawned (as in a keyframe), enemies moved
+ * (id and new position), enemies damaged (id and new health) and enemies
+ * removed (id).
+ *
+ * To find the changes the encoder keeps the state it last encoded, with a hash
+ * table from id to place, so a delta costs one pass over the enemies whatever
+ * order the store has put them in.
+ *
+ * @author 170021928
+ *
+ */
+public class DeltaEncoder {
+
+    /**
+     * Kind of message: every tower and enemy.
+     */
+    public static final byte KEYFRAME = 'K';
+
+    /**
+     * Kind of message: the changes since the last message.
+     */
+    public static final byte DELTA = 'D';
+
+    /**
+     * The bytes of a message before its body: the length, kind and timestep.
+     */
+    private static final int HEADER = Integer.BYTES + 1 + Integer.BYTES;
+
+    /**
+     * The bytes of a tower in a message.
+     */
+    private static final int TOWER = 1 + Integer.BYTES;
+
+    /**
+     * The bytes of an enemy in a keyframe, or spawned in a delta.
+     */
+    private static final int ENEMY = 1 + 4 * Integer.BYTES;
+
+    /**
+     * The bytes of a moved or damaged enemy in a delta.
+     */
+    private static final int CHANGE = 2 * Integer.BYTES;
+
+    /**
+     * The number of towers last encoded.
+     */
+    private int towers;
+
+    /**
+     * The id of each enemy last encoded.
+     */
+    private int[] ids = new int[0];
+
+    /**
+     * The position of each enemy last encoded.
+     */
+    private int[] positions = new int[0];
+
+    /**
+     * The health of each enemy last encoded.
+     */
+    private int[] healths = new int[0];
+
+    /**
+     * The number of enemies last encoded.
+     */
+    private int size;
+
+    /**
+     * Set for each enemy last encoded that is still in the store, while a delta
+     * is being made.
+     */
+    private boolean[] seen = new boolean[0];
+
+    /**
+     * The place in the last state encoded of each enemy in the store, or -1
+     * for one that has spawned since, while a delta is being made.
+     */
+    private int[] matches = new int[0];
+
+    /**
+     * The hash table from id to place in the last state encoded: the id plus
+     * one, or 0 for an empty bucket. Its length is a power of two, at least
+     * twice the number of enemies.
+     */
+    private int[] table = new int[2];
+
+    /**
+     * The place in the last state encoded of the id in the same bucket of
+     * table.
+     */
+    private int[] places = new int[2];
+
+    /**
+     * Returns the most bytes a keyframe of the given game could take.
+     *
+     * @param enemies
+     *            the enemies
+     * @param towerList
+     *            the towers
+     * @return the size of the buffer a keyframe needs
+     */
+    public int keyframeSize(EnemyStore enemies, List<Tower> towerList) {
+        return HEADER + Integer.BYTES + TOWER * towerList.size() + Integer.BYTES + ENEMY * enemies.size();
+    }
+
+    /**
+     * Returns the most bytes a delta of the given game could take.
+     *
+     * @param enemies
+     *            the enemies
+     * @param towerList
+     *            the towers
+     * @return the size of the buffer a delta needs
+     */
+    public int deltaSize(EnemyStore enemies, List<Tower> towerList) {
+        return HEADER + 5 * Integer.BYTES + TOWER * Math.max(0, towerList.size() - this.towers)
+                + (ENEMY + 2 * CHANGE) * enemies.size() + Integer.BYTES * this.size;
+    }
+
+    /**
+     * Writes a keyframe of the game, and remembers it as the last state
+     * encoded.
+     *
+     * @param out
+     *            the buffer to write to, with at least keyframeSize bytes free
+     * @param timeStep
+     *            the timestep
+     * @param enemies
+     *            the enemies
+     * @param towerList
+     *            the towers
+     */
+    public void keyframe(ByteBuffer out, int timeStep, EnemyStore enemies, List<Tower> towerList) {
+
+        int start = out.position();
+        out.putInt(0).put(KEYFRAME).putInt(timeStep);
+
+        out.putInt(towerList.size());
+        for (Tower tower : towerList) {
+            out.put((byte) Game.typeOf(tower)).putInt(tower.getPosition());
+        }
+
+        out.putInt(enemies.size());
+        for (int i = 0; i < enemies.size(); i++) {
+            putEnemy(out, enemies, i);
+        }
+        out.putInt(start, out.position() - start - Integer.BYTES);
+
+        this.remember(enemies, towerList);
+    }
+
+    /**
+     * Writes the changes since the last state encoded, and remembers the game
+     * as it is now.
+     *
+     * @param out
+     *            the buffer to write to, with at least deltaSize bytes free
+     * @param timeStep
+     *            the timestep
+     * @param enemies
+     *            the enemies
+     * @param towerList
+     *            the towers
+     */
+    public void delta(ByteBuffer out, int timeStep, EnemyStore enemies, List<Tower> towerList) {
+
+        int start = out.position();
+        out.putInt(0).put(DELTA).putInt(timeStep);
+
+        out.putInt(towerList.size() - this.towers);
+        for (int t = this.towers; t < towerList.size(); t++) {
+            Tower tower = towerList.get(t);
+            out.put((byte) Game.typeOf(tower)).putInt(tower.getPosition());
+        }
+
+        int n = enemies.size();
+        if (this.matches.length < n) {
+            this.matches = new int[Math.max(n, 2 * this.matches.length)];
+        }
+
+        // match each enemy to its place in the last state first, so the lists
+        // can each be written in a pass of their own straight after its count
+        Arrays.fill(this.seen, 0, this.size, false);
+        for (int i = 0; i < n; i++) {
+            int at = this.find(enemies.getId(i));
+            this.matches[i] = at;
+            if (at >= 0) {
+                this.seen[at] = true;
+            }
+        }
+
+        int count = out.position();
+        out.putInt(0);
+        int spawned = 0;
+        for (int i = 0; i < n; i++) {
+            if (this.matches[i] < 0) {
+                putEnemy(out, enemies, i);
+                spawned++;
+            }
+        }
+        out.putInt(count, spawned);
+
+        count = out.position();
+        out.putInt(0);
+        int moved = 0;
+        for (int i = 0; i < n; i++) {
+            int at = this.matches[i];
+            if (at >= 0 && this.positions[at] != enemies.getPosition(i)) {
+                out.putInt(enemies.getId(i)).putInt(enemies.getPosition(i));
+                moved++;
+            }
+        }
+        out.putInt(count, moved);
+
+        count = out.position();
+        out.putInt(0);
+        int damaged = 0;
+        for (int i = 0; i < n; i++) {
+            int at = this.matches[i];
+            if (at >= 0 && this.healths[at] != enemies.getHealth(i)) {
+                out.putInt(enemies.getId(i)).putInt(enemies.getHealth(i));
+                damaged++;
+            }
+        }
+        out.putInt(count, damaged);
+
+        count = out.position();
+        out.putInt(0);
+        int removed = 0;
+        for (int k = 0; k < this.size; k++) {
+            if (!this.seen[k]) {
+                out.putInt(this.ids[k]);
+                removed++;
+            }
+        }
+        out.putInt(count, removed);
+
+        out.putInt(start, out.position() - start - Integer.BYTES);
+
+        this.remember(enemies, towerList);
+    }
+
+    /**
+     * Writes one enemy as a keyframe holds it.
+     *
+     * @param out
+     *            the buffer to write to
+     * @param enemies
+     *            the enemies
+     * @param i
+     *            the slot of the enemy
+     */
+    private static void putEnemy(ByteBuffer out, EnemyStore enemies, int i) {
+        out.putInt(enemies.getId(i)).put(enemies.getType(i)).putInt(enemies.getLine(i))
+                .putInt(enemies.getPosition(i)).putInt(enemies.getHealth(i));
+    }
+
+    /**
+     * Keeps the game as it is now as the last state encoded, and rebuilds the
+     * table of ids.
+     *
+     * @param enemies
+     *            the enemies
+     * @param towerList
+     *            the towers
+     */
+    private void remember(EnemyStore enemies, List<Tower> towerList) {
+
+        int n = enemies.size();
+        this.towers = towerList.size();
+
+        if (this.ids.length < n) {
+            int capacity = Math.max(n, 2 * this.ids.length);
+            this.ids = new int[capacity];
+            this.positions = new int[capacity];
+            this.healths = new int[capacity];
+            this.seen = new boolean[capacity];
+        }
+
+        int buckets = this.table.length;
+        while (buckets < 2 * n) {
+            buckets *= 2;
+        }
+        if (buckets != this.table.length) {
+            this.table = new int[buckets];
+            this.places = new int[buckets];
+        } else {
+            Arrays.fill(this.table, 0);
+        }
+
+        for (int i = 0; i < n; i++) {
+
+            int id = enemies.getId(i);
+            this.ids[i] = id;
+            this.positions[i] = enemies.getPosition(i);
+            this.healths[i] = enemies.getHealth(i);
+
+            int b = this.bucket(id);
+            while (this.table[b] != 0) {
+                b = (b + 1) & (this.table.length - 1);
+            }
+            this.table[b] = id + 1;
+            this.places[b] = i;
+        }
+        this.size = n;
+    }
+
+    /**
+     * Finds an enemy in the last state encoded.
+     *
+     * @param id
+     *            the id of the enemy
+     * @return its place, or -1 if it was not there
+     */
+    private int find(int id) {
+
+        for (int b = this.bucket(id); this.table[b] != 0; b = (b + 1) & (this.table.length - 1)) {
+            if (this.table[b] == id + 1) {
+                return this.places[b];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the bucket an id's search starts at. Ids are given out in order,
+     * so they are spread over the table with a multiplicative hash.
+     *
+     * @param id
+     *            the id
+     * @return the bucket
+     */
+    private int bucket(int id) {
+        return (id * 0x9e3779b9) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(this.table.length))
+                & (this.table.length - 1);
+    }
+}
@@ -0,0 +1,229 @@
+package towerdefence;
+
+/**
+ * How likely enemies are to spawn as a game goes on. On each timestep, each
+ * lane spawns an enemy with a chance of SPAWN_CHANCES in the inverse spawn
+ * rate. The rate starts at its initial value and falls by one every rampTicks
+ * timesteps until it reaches its minimum, so enemies come faster and faster
+ * and then keep coming at that pace.
+ *
+ * A SpawnScheduler does not roll for every lane on every timestep, but draws
+ * how long each lane waits for its next enemy. For that the curve keeps, for
+ * each rate, the chance of a lane going 1, 2, 3 and so on timesteps without
+ * spawning. A lane draws a number u from 0 to 1 and spawns on the first
+ * timestep by which the chance of having gone that long without spawning has
+ * fallen to u, found by binary search. That gives exactly the spawns of rolling
+ * every timestep, however the chance changes along the way, with one random
+ * number per enemy and no logarithms.
+ *
+ * @author 170021928
+ *
+ */
+public final class DifficultyCurve {
+
+    /**
+     * Constructs a curve.
+     *
+     * @param initialInverseRate
+     *            the inverse spawn rate at the start of the game
+     * @param minimumInverseRate
+     *            the lowest the inverse spawn rate falls to, at least
+     *            SPAWN_CHANCES
+     * @param rampTicks
+     *            the number of timesteps between each fall of the rate
+     * @throws IllegalArgumentException
+     *             if the rates are out of order or below SPAWN_CHANCES, or
+     *             rampTicks is not positive
+     */
+    public DifficultyCurve(int initialInverseRate, int minimumInverseRate, int rampTicks) {
+
+        if (minimumInverseRate < SPAWN_CHANCES || initialInverseRate < minimumInverseRate || rampTicks < 1) {
+            throw new IllegalArgumentException("Expected " + SPAWN_CHANCES + " <= minimum <= initial and ramp > 0"
+                    + " but got " + initialInverseRate + ", " + minimumInverseRate + ", " + rampTicks);
+        }
+        this.initialInverseRate = initialInverseRate;
+        this.minimumInverseRate = minimumInverseRate;
+        this.rampTicks = rampTicks;
+
+        this.survival = new double[initialInverseRate - minimumInverseRate + 1][SPAN + 1];
+        for (int rate = minimumInverseRate; rate <= initialInverseRate; rate++) {
+
+            double[] table = this.survival[rate - minimumInverseRate];
+            double miss = (double) (rate - SPAWN_CHANCES) / rate;
+            table[0] = 1.0;
+            for (int n = 1; n <= SPAN; n++) {
+                table[n] = table[n - 1] * miss;
+            }
+        }
+    }
+
+    /**
+     * The number of chances in the inverse spawn rate that a lane spawns an
+     * enemy on a timestep.
+     */
+    public static final int SPAWN_CHANCES = 4;
+
+    /**
+     * The curve a game has if it is given no other: one enemy in 20 chances to
+     * start with, rising every 10 timesteps to one in 8 chances, i.e. a lane
+     * spawns every other timestep.
+     */
+    public static final DifficultyCurve DEFAULT = new DifficultyCurve(20, 8, 10);
+
+    /**
+     * The most timesteps a lane's wait is looked up over at once. A longer wait
+     * is looked up a span at a time.
+     */
+    private static final int SPAN = 64;
+
+    /**
+     * The inverse spawn rate at the start of the game.
+     */
+    private final int initialInverseRate;
+
+    /**
+     * The lowest the inverse spawn rate falls to.
+     */
+    private final int minimumInverseRate;
+
+    /**
+     * The number of timesteps between each fall of the rate.
+     */
+    private final int rampTicks;
+
+    /**
+     * For each inverse rate, from the minimum up, the chance of a lane going
+     * from 0 to SPAN timesteps without spawning.
+     */
+    private final double[][] survival;
+
+    /**
+     * Returns the inverse spawn rate at the start of the game.
+     *
+     * @return the initial inverse rate
+     */
+    public int getInitialInverseRate() {
+        return this.initialInverseRate;
+    }
+
+    /**
+     * Returns the lowest the inverse spawn rate falls to.
+     *
+     * @return the minimum inverse rate
+     */
+    public int getMinimumInverseRate() {
+        return this.minimumInverseRate;
+    }
+
+    /**
+     * Returns the number of timesteps between each fall of the rate.
+     *
+     * @return the ramp ticks
+     */
+    public int getRampTicks() {
+        return this.rampTicks;
+    }
+
+    /**
+     * Returns the inverse spawn rate at a timestep.
+     *
+     * @param timeStep
+     *            the timestep
+     * @return the inverse rate: a lane spawns with a chance of SPAWN_CHANCES
+     *         in this
+     */
+    public int inverseRate(int timeStep) {
+        return Math.max(this.minimumInverseRate, this.initialInverseRate - timeStep / this.rampTicks);
+    }
+
+    /**
+     * Returns the chance that a lane spawns an enemy on a timestep.
+     *
+     * @param timeStep
+     *            the timestep
+     * @return the chance, from 0 to 1
+     */
+    public double chance(int timeStep) {
+        return (double) SPAWN_CHANCES / this.inverseRate(timeStep);
+    }
+
+    /**
+     * Finds the timestep at which a lane spawns its next enemy: the first, from
+     * the given one on, by which the chance of the lane having gone that long
+     * without spawning is no more than u.
+     *
+     * @param from
+     *            the first timestep the lane may spawn on
+     * @param u
+     *            a random number, more than 0 and at most 1
+     * @return the timestep of the spawn, or Integer.MAX_VALUE if it is further
+     *         off than that
+     */
+    public int spawnTick(int from, double u) {
+
+        long t = from;
+        double left = u;
+
+        while (t < Integer.MAX_VALUE) {
+
+            int rate = this.inverseRate((int) t);
+            double[] table = this.survival[rate - this.minimumInverseRate];
+
+            // the rate holds until the next multiple of rampTicks, or for good
+            // once it has reached its minimum
+            long end = rate == this.minimumInverseRate ? Long.MAX_VALUE : (t / this.rampTicks + 1) * this.rampTicks;
+            int span = (int) Math.min(end - t, SPAN);
+
+            if (table[span] <= left) {
+                int lo = 1;
+                int hi = span;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (table[mid] <= left) {
+                        hi = mid;
+                    } else {
+                        lo = mid + 1;
+                    }
+                }
+                return (int) Math.min(Integer.MAX_VALUE, t + lo - 1);
+            }
+
+            // no spawn in this span: the wait from here on is drawn afresh,
+            // which is u as a share of the chance of getting this far
+            left /= table[span];
+            t += span;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Tells whether another curve spawns enemies just as this one does, i.e.
+     * has the same rates and ramp.
+     *
+     * @param other
+     *            the object to compare with
+     * @return true if it is an equal curve
+     */
+    @Override
+    public boolean equals(Object other) {
+
+        if (!(other instanceof DifficultyCurve)) {
+            return false;
+        }
+        DifficultyCurve curve = (DifficultyCurve) other;
+        return curve.initialInverseRate == this.initialInverseRate
+                && curve.minimumInverseRate == this.minimumInverseRate && curve.rampTicks == this.rampTicks;
+    }
+
+    @Override
+    public int hashCode() {
+        return (this.initialInverseRate * 31 + this.minimumInverseRate) * 31 + this.rampTicks;
+    }
+
+    @Override
+    public String toString() {
+
+        return "initialInverseRate = " + this.initialInverseRate + " minimumInverseRate = " + this.minimumInverseRate
+                + " rampTicks = " + this.rampTicks;
+    }
+}
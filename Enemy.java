@@ -14,31 +14,36 @@ public class Enemy {
   /**
    * Constructs an enemy instance.
    *
-   * @param health
-   *          the HP of the enemy
-   * @param step
-   *          how many steps the enemy takes per turn
-   * @param symbol
-   *          the string representation of the enemy for drawing on the map.
-   */
-  public Enemy(int health, double step, String symbol) {
-    this.health = health;
-    this.step = step;
-    this.symbol = symbol;
+   * @param type
+   *          the kind of enemy, which holds its starting HP, its step and the
+   *          string representation of the enemy for drawing on the map.
+   */
+  public Enemy(EnemyType type) {
+    this.type = type;
+    this.health = type.getHealth();
     this.position = 0.0;
   }
 
   /**
-   * The enemy's health points.
+   * Constructs an enemy with no state of its own, for a view of an enemy kept
+   * somewhere else.
    */
-  private int health;
+  Enemy() {
+    this.type = null;
+  }
 
   /**
-   * How many steps the enemy may more forward each turn. Step is a double to
-   * accommodate slow enemies like the elephant, who move only 0.5 spaces per
-   * turn.
+   * The kind of enemy, shared by every enemy of the kind. Its step says how
+   * many steps the enemy may move forward each turn, and its symbol is a
+   * string of characters (e.g. " ~> ") which represent the enemy when drawn on
+   * the map.
    */
-  private double step;
+  private final EnemyType type;
+
+  /**
+   * The enemy's health points.
+   */
+  private int health;
 
   /**
    * position represents the location of the enemy along the corridor, from 0
@@ -49,12 +54,6 @@ public class Enemy {
    */
   private double position;
 
-  /**
-   * symbol is a string of characters (e.g. " ~> " which represent the enemy
-   * when drawn on the map)
-   */
-  private String symbol;
-
   /**
    * line is the y position of the enemy when drawn on the map. Enemies start
    * with a given line number which does not change as they move forward in a
@@ -67,7 +66,7 @@ public class Enemy {
    */
   public void advance() {
 
-    this.position += this.step;
+    this.position += this.type.getStep();
   }
 
   /**
@@ -107,7 +106,7 @@ public class Enemy {
    * @return the string representation of the enemy for drawing on the map.
    */
   public String getSymbol() {
-    return this.symbol;
+    return this.type.getSymbol();
   }
 
   /**
@@ -135,7 +134,16 @@ public class Enemy {
    * @return the name of the enemy as a string - e.g. "Rat"
    */
   public String name() {
-    return this.getClass().getSimpleName();
+    return this.type.getName();
+  }
+
+  /**
+   * Returns the kind of enemy that the enemy instance is.
+   *
+   * @return the kind of enemy
+   */
+  public EnemyType getType() {
+    return this.type;
   }
 
   /**
@@ -162,8 +170,8 @@ public class Enemy {
   @Override
   public String toString() {
 
-    return this.name() + " health = " + this.health + " step = " + this.step + " position = " + this.position
-        + " symbol = " + this.symbol;
+    return this.name() + " health = " + this.health + " step = " + this.type.getStep() + " position = "
+        + this.position + " symbol = " + this.getSymbol();
   }
 
 }
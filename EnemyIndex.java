@@ -0,0 +1,219 @@
+package towerdefence;
+
+/**
+ * Lets towers find their targets without searching every enemy. The game keeps
+ * its enemy store sorted from the furthest along the corridor to the closest to
+ * the start, so the enemies a tower can reach (those before it) are always a run
+ * of slots at the end of the store, found by binary search. For targeting by health, the
+ * index also keeps two segment trees over the list which give the weakest and
+ * strongest enemy in any such run. Indexes into the trees are slots in the
+ * store.
+ *
+ * @author 170021928
+ *
+ */
+public class EnemyIndex {
+
+    /**
+     * The enemies being indexed, sorted by position from highest to lowest.
+     */
+    private EnemyStore enemies;
+
+    /**
+     * The number of enemies in the trees.
+     */
+    private int size;
+
+    /**
+     * A segment tree of the index of the enemy with the least health. Leaves
+     * are at size to 2 * size - 1, and each node above holds the better of its
+     * two children.
+     */
+    private int[] lowest = new int[0];
+
+    /**
+     * A segment tree of the index of the enemy with the most health.
+     */
+    private int[] highest = new int[0];
+
+    /**
+     * True if the enemies have changed since the trees were last built. The
+     * trees are only rebuilt when asked for, so targeting that does not look at
+     * health does not pay for them.
+     */
+    private boolean stale = true;
+
+    /**
+     * Points the index at the enemies for this turn. They must already be
+     * sorted.
+     *
+     * @param sorted
+     *            the enemies, sorted by EnemyStore.sort
+     */
+    public void reset(EnemyStore sorted) {
+        this.enemies = sorted;
+        this.size = sorted.size();
+        this.stale = true;
+    }
+
+    /**
+     * Returns the number of enemies indexed.
+     *
+     * @return the number of enemies
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Finds the first enemy close enough to be hit by a tower at the given
+     * position - that is, the first enemy whose position is less than the
+     * tower's. Every enemy after it is in range too.
+     *
+     * @param towerPos
+     *            the position of the tower
+     * @return the slot of the first enemy in range, or size() if there is
+     *         none
+     */
+    public int inRangeFrom(int towerPos) {
+
+        int lo = 0;
+        int hi = this.size;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (this.enemies.getPosition(mid) < towerPos) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Finds the enemy with the least health from the given index to the end,
+     * passing over those already dead from this timestep's shots.
+     *
+     * @param from
+     *            the first index to consider
+     * @return the index of the weakest enemy still alive, or of a dead one if
+     *         they are all dead
+     */
+    public int lowestHealth(int from) {
+        this.build();
+        return this.query(this.lowest, from, -1);
+    }
+
+    /**
+     * Finds the enemy with the most health from the given index to the end,
+     * passing over those already dead from this timestep's shots.
+     *
+     * @param from
+     *            the first index to consider
+     * @return the index of the strongest enemy still alive, or of a dead one
+     *         if they are all dead
+     */
+    public int highestHealth(int from) {
+        this.build();
+        return this.query(this.highest, from, 1);
+    }
+
+    /**
+     * Tells the index that the health of the enemy at the given index has
+     * changed.
+     *
+     * @param i
+     *            the index of the enemy that was hit
+     */
+    public void update(int i) {
+
+        if (this.stale) {
+            return;
+        }
+        for (int node = (i + this.size) >>> 1; node > 0; node >>>= 1) {
+            this.lowest[node] = this.better(this.lowest[2 * node], this.lowest[2 * node + 1], -1);
+            this.highest[node] = this.better(this.highest[2 * node], this.highest[2 * node + 1], 1);
+        }
+    }
+
+    /**
+     * Builds both trees, if the enemies have changed since they were last
+     * built.
+     */
+    private void build() {
+
+        if (!this.stale) {
+            return;
+        }
+        if (this.lowest.length < 2 * this.size) {
+            this.lowest = new int[2 * this.size];
+            this.highest = new int[2 * this.size];
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.lowest[this.size + i] = i;
+            this.highest[this.size + i] = i;
+        }
+        for (int node = this.size - 1; node > 0; node--) {
+            this.lowest[node] = this.better(this.lowest[2 * node], this.lowest[2 * node + 1], -1);
+            this.highest[node] = this.better(this.highest[2 * node], this.highest[2 * node + 1], 1);
+        }
+        this.stale = false;
+    }
+
+    /**
+     * Walks a tree to find the best enemy from the given index to the end.
+     *
+     * @param tree
+     *            the tree to search
+     * @param from
+     *            the first index to consider
+     * @param sign
+     *            1 to prefer more health, -1 to prefer less
+     * @return the index of the best enemy
+     */
+    private int query(int[] tree, int from, int sign) {
+
+        int best = from;
+
+        for (int l = from + this.size, r = 2 * this.size; l < r; l >>>= 1, r >>>= 1) {
+            if ((l & 1) == 1) {
+                best = this.better(best, tree[l++], sign);
+            }
+            if ((r & 1) == 1) {
+                best = this.better(best, tree[--r], sign);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Picks the better of two enemies by health, or the first if they are
+     * equal. An enemy whose health is already 0 or below from this timestep's
+     * shots is dead, and only picked over one that is not if both are.
+     *
+     * @param a
+     *            the index of one enemy
+     * @param b
+     *            the index of the other
+     * @param sign
+     *            1 to prefer more health, -1 to prefer less
+     * @return the index of the better enemy
+     */
+    private int better(int a, int b, int sign) {
+
+        int healthA = this.enemies.getHealth(a);
+        int healthB = this.enemies.getHealth(b);
+
+        if ((healthA > 0) != (healthB > 0)) {
+            return healthB > 0 ? b : a;
+        }
+        int diff = healthB - healthA;
+
+        if (diff * sign > 0 || (diff == 0 && b < a)) {
+            return b;
+        }
+        return a;
+    }
+}
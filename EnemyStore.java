@@ -0,0 +1,729 @@
+package towerdefence;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Holds every enemy in the game as columns of primitive arrays rather than as
+ * one object per enemy: all the healths together, all the positions together,
+ * and so on. Moving, hitting and clearing away the dead are then simple loops
+ * over contiguous memory, and once the arrays have grown large enough nothing
+ * is allocated from one turn to the next.
+ *
+ * A turn has two phases. While the towers fire, hits only add to each enemy's
+ * damage column; health as read back has the damage already taken off, so the
+ * towers see the same enemies as if the hits had landed one at a time. Then
+ * update applies the damage, moves the enemies and clears away the dead in a
+ * single pass.
+ *
+ * Enemies are identified by their slot in the arrays. Slots change whenever
+ * enemies are sorted or the dead are swept away, so a slot should not be kept
+ * from one turn to the next; each enemy also has an id, given when it spawns,
+ * which stays with it for as long as it lives. For code that wants Enemy
+ * objects, such as the map, view and views give Enemy objects that read from
+ * the store.
+ *
+ * The arrays are a pool of enemies: a spawn takes the next free slot and
+ * resets it, and a death frees the slot again, so once a wave has been seen
+ * at its largest no enemy costs an allocation. The views are pooled in the
+ * same way, one per slot. The store counts how many of each type are alive and
+ * the most there have been at once, and toString reports them.
+ *
+ * An enemy's starting health, step, symbol and name are those of its kind, an
+ * EnemyType read from the unit file, so the store keeps only its type number.
+ *
+ * @author 170021928
+ *
+ */
+public class EnemyStore {
+
+    /**
+     * Constructs an empty store with room for the given number of enemies. It
+     * grows if more are spawned.
+     *
+     * @param capacity
+     *            the number of enemies to make room for
+     */
+    public EnemyStore(int capacity) {
+        int cap = Math.max(1, capacity);
+        this.health = new int[cap];
+        this.position = new double[cap];
+        this.line = new int[cap];
+        this.type = new byte[cap];
+        this.damage = new int[cap];
+        this.id = new int[cap];
+    }
+
+    /**
+     * Type number for a Rat, wherever the unit file puts it.
+     */
+    public static final byte RAT = (byte) UnitRegistry.enemy("Rat").getId();
+
+    /**
+     * Type number for a Camel, wherever the unit file puts it.
+     */
+    public static final byte CAMEL = (byte) UnitRegistry.enemy("Camel").getId();
+
+    /**
+     * Type number for an Elephant, wherever the unit file puts it.
+     */
+    public static final byte ELEPHANT = (byte) UnitRegistry.enemy("Elephant").getId();
+
+    /**
+     * The step of each type of enemy, by type number, copied out of the unit
+     * file's kinds so that moving the enemies reads a single array.
+     */
+    private static final double[] TYPE_STEP = steps();
+
+    /**
+     * The health points of each enemy.
+     */
+    private int[] health;
+
+    /**
+     * The position of each enemy along the corridor.
+     */
+    private double[] position;
+
+    /**
+     * The line (vertical position) of each enemy.
+     */
+    private int[] line;
+
+    /**
+     * The type number of each enemy.
+     */
+    private byte[] type;
+
+    /**
+     * The damage each enemy has taken this turn that has not yet been taken
+     * off its health.
+     */
+    private int[] damage;
+
+    /**
+     * The id of each enemy.
+     */
+    private int[] id;
+
+    /**
+     * The id the next enemy spawned will have.
+     */
+    private int nextId;
+
+    /**
+     * The number of enemies of each type alive, by type number.
+     */
+    private final int[] alive = new int[TYPE_STEP.length];
+
+    /**
+     * The most enemies of each type there have been alive at once.
+     */
+    private final int[] highWater = new int[TYPE_STEP.length];
+
+    /**
+     * The most enemies there have been in the store at once.
+     */
+    private int mostAlive;
+
+    /**
+     * A view of each slot, made the first time the slot is viewed. A view
+     * always reads whichever enemy is in its slot, so it can be handed out
+     * again and again.
+     */
+    private final ArrayList<Enemy> slotViews = new ArrayList<Enemy>();
+
+    /**
+     * The list views returns, refilled on each call.
+     */
+    private final ArrayList<Enemy> views = new ArrayList<Enemy>();
+
+    /**
+     * The number of enemies in the store. Slots from 0 to size - 1 are in use.
+     */
+    private int size;
+
+    /**
+     * Spare columns that sort writes the enemies into in their new order,
+     * then swaps with the store's own, so sorting allocates nothing once they
+     * have grown. Empty until the store is first sorted.
+     */
+    private int[] spareHealth = new int[0];
+
+    /**
+     * The spare column of positions.
+     */
+    private double[] sparePosition = new double[0];
+
+    /**
+     * The spare column of lines.
+     */
+    private int[] spareLine = new int[0];
+
+    /**
+     * The spare column of type numbers.
+     */
+    private byte[] spareType = new byte[0];
+
+    /**
+     * The spare column of damage.
+     */
+    private int[] spareDamage = new int[0];
+
+    /**
+     * The spare column of ids.
+     */
+    private int[] spareId = new int[0];
+
+    /**
+     * The number of enemies at each whole position, and then where the next
+     * of them goes, for sort.
+     */
+    private int[] buckets = new int[0];
+
+    /**
+     * Adds a new enemy of the given type at the start of the corridor.
+     *
+     * @param enemyType
+     *            a type number from the unit file, e.g. RAT
+     * @param l
+     *            the line the enemy walks along
+     * @return the slot of the new enemy
+     */
+    public int spawn(byte enemyType, int l) {
+
+        this.reserve(this.size + 1);
+
+        int slot = this.size++;
+        this.health[slot] = UnitRegistry.enemy(enemyType).getHealth();
+        this.position[slot] = 0.0;
+        this.line[slot] = l;
+        this.type[slot] = enemyType;
+        this.damage[slot] = 0;
+        this.id[slot] = this.nextId++;
+
+        if (++this.alive[enemyType] > this.highWater[enemyType]) {
+            this.highWater[enemyType] = this.alive[enemyType];
+        }
+        this.mostAlive = Math.max(this.mostAlive, this.size);
+
+        return slot;
+    }
+
+    /**
+     * Moves every enemy forward by its step.
+     */
+    public void advance() {
+
+        for (int i = 0; i < this.size; i++) {
+            this.position[i] += TYPE_STEP[this.type[i]];
+        }
+    }
+
+    /**
+     * Adds the given damage to what the enemy in the given slot has taken this
+     * turn. It comes off the enemy's health at the next update.
+     *
+     * @param slot
+     *            the slot of the enemy that was hit
+     * @param amount
+     *            the damage done
+     */
+    public void hit(int slot, int amount) {
+        this.damage[slot] += amount;
+    }
+
+    /**
+     * Ends the turn for every enemy in one pass: takes its damage off its
+     * health, then either moves it forward by its step or, if its health is 0
+     * or below, removes it. The survivors are moved down to fill the gaps,
+     * keeping their order, so a sorted store stays nearly sorted.
+     *
+     * @return the number of enemies removed
+     */
+    public int update() {
+
+        int kept = 0;
+
+        for (int i = 0; i < this.size; i++) {
+
+            int h = this.health[i] - this.damage[i];
+            this.damage[i] = 0;
+
+            if (h > 0) {
+                this.health[kept] = h;
+                this.position[kept] = this.position[i] + TYPE_STEP[this.type[i]];
+                if (kept != i) {
+                    this.line[kept] = this.line[i];
+                    this.type[kept] = this.type[i];
+                    this.id[kept] = this.id[i];
+                }
+                kept++;
+            } else {
+                this.alive[this.type[i]]--;
+            }
+        }
+
+        int removed = this.size - kept;
+        this.size = kept;
+        return removed;
+    }
+
+    /**
+     * Sorts the enemies from the furthest along the corridor to the closest to
+     * the start, by whole position, keeping enemies at the same whole position
+     * in the order they were in.
+     *
+     * Fast enemies overtake slow ones every turn, so the store can be far from
+     * sorted however little each enemy moves. Whole positions only run from 0
+     * to the length of the corridor, so the enemies are counted into a bucket
+     * per position and then copied into the spare columns in order: two passes
+     * over the enemies and one over the positions, however many have passed
+     * each other. A store that is already sorted is left as it is after the
+     * first pass.
+     */
+    public void sort() {
+
+        if (this.size < 2) {
+            return;
+        }
+
+        int previous = (int) this.position[0];
+        int min = previous;
+        int max = previous;
+        boolean sorted = true;
+        for (int i = 1; i < this.size; i++) {
+            int pos = (int) this.position[i];
+            if (pos > previous) {
+                sorted = false;
+            }
+            min = Math.min(min, pos);
+            max = Math.max(max, pos);
+            previous = pos;
+        }
+        if (sorted) {
+            return;
+        }
+
+        int range = max - min + 1;
+        if (this.buckets.length < range) {
+            this.buckets = new int[range];
+        }
+        int[] next = this.buckets;
+        Arrays.fill(next, 0, range, 0);
+        for (int i = 0; i < this.size; i++) {
+            next[max - (int) this.position[i]]++;
+        }
+
+        // turn the counts into where each position's first enemy goes, the
+        // furthest along first
+        int at = 0;
+        for (int b = 0; b < range; b++) {
+            int count = next[b];
+            next[b] = at;
+            at += count;
+        }
+
+        if (this.spareHealth.length < this.health.length) {
+            int cap = this.health.length;
+            this.spareHealth = new int[cap];
+            this.sparePosition = new double[cap];
+            this.spareLine = new int[cap];
+            this.spareType = new byte[cap];
+            this.spareDamage = new int[cap];
+            this.spareId = new int[cap];
+        }
+        for (int i = 0; i < this.size; i++) {
+            int to = next[max - (int) this.position[i]]++;
+            this.spareHealth[to] = this.health[i];
+            this.sparePosition[to] = this.position[i];
+            this.spareLine[to] = this.line[i];
+            this.spareType[to] = this.type[i];
+            this.spareDamage[to] = this.damage[i];
+            this.spareId[to] = this.id[i];
+        }
+        this.swapColumns();
+    }
+
+    /**
+     * Swaps the store's columns with the spare ones that sort has just filled.
+     */
+    private void swapColumns() {
+
+        int[] ints = this.health;
+        this.health = this.spareHealth;
+        this.spareHealth = ints;
+
+        double[] doubles = this.position;
+        this.position = this.sparePosition;
+        this.sparePosition = doubles;
+
+        ints = this.line;
+        this.line = this.spareLine;
+        this.spareLine = ints;
+
+        byte[] bytes = this.type;
+        this.type = this.spareType;
+        this.spareType = bytes;
+
+        ints = this.damage;
+        this.damage = this.spareDamage;
+        this.spareDamage = ints;
+
+        ints = this.id;
+        this.id = this.spareId;
+        this.spareId = ints;
+    }
+
+    /**
+     * Returns the number of enemies in the store.
+     *
+     * @return the number of enemies
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the health of the enemy in the given slot, less any damage it
+     * has taken this turn.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @return its health points
+     */
+    public int getHealth(int slot) {
+        return this.health[slot] - this.damage[slot];
+    }
+
+    /**
+     * Returns the position of the enemy in the given slot, cast to an int as in
+     * Enemy.getPosition.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @return its position along the corridor
+     */
+    public int getPosition(int slot) {
+        return (int) this.position[slot];
+    }
+
+    /**
+     * Returns the line of the enemy in the given slot.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @return its line
+     */
+    public int getLine(int slot) {
+        return this.line[slot];
+    }
+
+    /**
+     * Returns the type number of the enemy in the given slot.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @return RAT, CAMEL or ELEPHANT
+     */
+    public byte getType(int slot) {
+        return this.type[slot];
+    }
+
+    /**
+     * Returns the id of the enemy in the given slot. Ids are given out in the
+     * order enemies spawn and are never reused within a game, though a store
+     * loaded from a saved state numbers its enemies afresh.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @return its id
+     */
+    public int getId(int slot) {
+        return this.id[slot];
+    }
+
+    /**
+     * Returns the map symbol of the enemy in the given slot.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @return its symbol
+     */
+    public String getSymbol(int slot) {
+        return UnitRegistry.enemy(this.type[slot]).getSymbol();
+    }
+
+    /**
+     * Returns the name of the kind of enemy in the given slot.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @return its name, e.g. "Rat"
+     */
+    public String getName(int slot) {
+        return UnitRegistry.enemy(this.type[slot]).getName();
+    }
+
+    /**
+     * Returns the position of the enemy in the given slot without casting it
+     * to an int.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @return its exact position along the corridor
+     */
+    double getExactPosition(int slot) {
+        return this.position[slot];
+    }
+
+    /**
+     * Returns the name of a type of enemy.
+     *
+     * @param enemyType
+     *            a type number from the unit file, e.g. RAT
+     * @return its name, e.g. "Rat"
+     */
+    public static String typeName(byte enemyType) {
+        return UnitRegistry.enemy(enemyType).getName();
+    }
+
+    /**
+     * Returns the number of types of enemy.
+     *
+     * @return the number of kinds in the unit file
+     */
+    public static int typeCount() {
+        return TYPE_STEP.length;
+    }
+
+    /**
+     * Copies the step of each kind of enemy out of the unit registry.
+     *
+     * @return the steps, by type number
+     */
+    private static double[] steps() {
+
+        double[] steps = new double[UnitRegistry.enemyCount()];
+        for (int t = 0; t < steps.length; t++) {
+            steps[t] = UnitRegistry.enemy(t).getStep();
+        }
+        return steps;
+    }
+
+    /**
+     * Returns the step of the enemy in the given slot.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @return how far it moves each turn
+     */
+    double getStep(int slot) {
+        return TYPE_STEP[this.type[slot]];
+    }
+
+    /**
+     * Moves the enemy in the given slot to the given position.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @param pos
+     *            its new position
+     */
+    void setPosition(int slot, double pos) {
+        this.position[slot] = pos;
+    }
+
+    /**
+     * Moves the enemy in the given slot to the given line.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @param l
+     *            its new line
+     */
+    void setLine(int slot, int l) {
+        this.line[slot] = l;
+    }
+
+    /**
+     * Returns the number of bytes saveState writes for the store as it is now.
+     *
+     * @return the size of the saved state
+     */
+    int stateSize() {
+        final int perEnemy = Integer.BYTES + 2 * Double.BYTES + Integer.BYTES + 1;
+        return Integer.BYTES + perEnemy * this.size;
+    }
+
+    /**
+     * Writes every enemy to the buffer, column by column.
+     *
+     * @param out
+     *            the buffer to write to, with at least stateSize() bytes free
+     */
+    void saveState(ByteBuffer out) {
+
+        out.putInt(this.size);
+        for (int i = 0; i < this.size; i++) {
+            out.putInt(this.getHealth(i));
+        }
+        for (int i = 0; i < this.size; i++) {
+            out.putDouble(this.position[i]);
+        }
+        for (int i = 0; i < this.size; i++) {
+            out.putDouble(TYPE_STEP[this.type[i]]);
+        }
+        for (int i = 0; i < this.size; i++) {
+            out.putInt(this.line[i]);
+        }
+        out.put(this.type, 0, this.size);
+    }
+
+    /**
+     * Replaces every enemy with those written by saveState.
+     *
+     * @param in
+     *            the buffer to read from
+     */
+    void loadState(ByteBuffer in) {
+
+        this.size = 0;
+        int count = in.getInt();
+        this.reserve(count);
+
+        for (int i = 0; i < count; i++) {
+            this.health[i] = in.getInt();
+            this.damage[i] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            this.position[i] = in.getDouble();
+        }
+        // steps are kept in the state so that older replays still load, but
+        // each enemy's step is that of its type
+        in.position(in.position() + Double.BYTES * count);
+        for (int i = 0; i < count; i++) {
+            this.line[i] = in.getInt();
+        }
+        in.get(this.type, 0, count);
+        Arrays.fill(this.alive, 0);
+        for (int i = 0; i < count; i++) {
+            this.id[i] = i;
+            this.alive[this.type[i]]++;
+        }
+        for (int t = 0; t < this.alive.length; t++) {
+            this.highWater[t] = Math.max(this.highWater[t], this.alive[t]);
+        }
+        this.nextId = count;
+        this.size = count;
+        this.mostAlive = Math.max(this.mostAlive, count);
+    }
+
+    /**
+     * Makes sure the arrays have room for the given number of enemies.
+     *
+     * @param count
+     *            the number of enemies
+     */
+    private void reserve(int count) {
+
+        if (count > this.health.length) {
+            int cap = Math.max(count, 2 * this.health.length);
+            this.health = Arrays.copyOf(this.health, cap);
+            this.position = Arrays.copyOf(this.position, cap);
+            this.line = Arrays.copyOf(this.line, cap);
+            this.type = Arrays.copyOf(this.type, cap);
+            this.damage = Arrays.copyOf(this.damage, cap);
+            this.id = Arrays.copyOf(this.id, cap);
+        }
+    }
+
+    /**
+     * Returns an Enemy that reads from and writes to the given slot. The same
+     * view is returned for a slot every time.
+     *
+     * @param slot
+     *            the slot of the enemy
+     * @return a view of the enemy
+     */
+    public Enemy view(int slot) {
+
+        while (this.slotViews.size() <= slot) {
+            this.slotViews.add(new EnemyView(this, this.slotViews.size()));
+        }
+        return this.slotViews.get(slot);
+    }
+
+    /**
+     * Returns a view of every enemy in the store, for drawing the map. The
+     * list is the store's own and is refilled by the next call, so drawing
+     * allocates nothing once the store has been at its largest.
+     *
+     * @return the enemies as Enemy objects
+     */
+    public ArrayList<Enemy> views() {
+
+        if (this.size > 0) {
+            this.view(this.size - 1);
+        }
+        this.views.clear();
+        this.views.addAll(this.slotViews.subList(0, this.size));
+        return this.views;
+    }
+
+    /**
+     * Returns the number of enemies of the given type alive.
+     *
+     * @param enemyType
+     *            RAT, CAMEL or ELEPHANT
+     * @return the number alive
+     */
+    public int count(byte enemyType) {
+        return this.alive[enemyType];
+    }
+
+    /**
+     * Returns the most enemies of the given type there have been alive at
+     * once.
+     *
+     * @param enemyType
+     *            RAT, CAMEL or ELEPHANT
+     * @return the high-water mark
+     */
+    public int getHighWater(byte enemyType) {
+        return this.highWater[enemyType];
+    }
+
+    /**
+     * Returns the most enemies there have been in the store at once.
+     *
+     * @return the high-water mark
+     */
+    public int getHighWater() {
+        return this.mostAlive;
+    }
+
+    /**
+     * Returns the number of enemies the store has room for before it must
+     * grow.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return this.health.length;
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder text = new StringBuilder();
+        text.append("enemies = ").append(this.size).append(" high water = ").append(this.mostAlive)
+                .append(" capacity = ").append(this.capacity()).append(" views = ").append(this.slotViews.size());
+        for (byte t = 0; t < this.alive.length; t++) {
+            text.append(' ').append(typeName(t)).append(" = ").append(this.alive[t]).append('/')
+                    .append(this.highWater[t]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,131 @@
+package towerdefence;
+
+/**
+ * A kind of enemy, as read from the unit file: everything that is the same for
+ * every enemy of the kind. There is one of these per kind, shared by all its
+ * enemies; the enemy store keeps only each enemy's type number alongside its
+ * health, position and line.
+ *
+ * @author 170021928
+ *
+ */
+public final class EnemyType {
+
+    /**
+     * Constructs a kind of enemy.
+     *
+     * @param id
+     *            its type number, from 0
+     * @param name
+     *            its name, e.g. "Rat"
+     * @param health
+     *            the health it starts with
+     * @param step
+     *            how far it moves each timestep
+     * @param spawnWeight
+     *            how likely it is to be picked when an enemy spawns
+     * @param symbol
+     *            how it is drawn on the map
+     */
+    EnemyType(int id, String name, int health, double step, int spawnWeight, String symbol) {
+        this.id = id;
+        this.name = name;
+        this.health = health;
+        this.step = step;
+        this.spawnWeight = spawnWeight;
+        this.symbol = symbol;
+    }
+
+    /**
+     * The type number of the kind.
+     */
+    private final int id;
+
+    /**
+     * The name of the kind.
+     */
+    private final String name;
+
+    /**
+     * The starting health of the enemy.
+     */
+    private final int health;
+
+    /**
+     * How many steps the enemy may move forward each turn.
+     */
+    private final double step;
+
+    /**
+     * The weight of the kind when picking the kind of a new enemy.
+     */
+    private final int spawnWeight;
+
+    /**
+     * The string representation of the enemy for printing on the map.
+     */
+    private final String symbol;
+
+    /**
+     * Returns the type number of the kind, as the enemy store and game events
+     * know it.
+     *
+     * @return the type number, from 0
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Returns the name of the kind.
+     *
+     * @return the name, e.g. "Rat"
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the health an enemy of the kind starts with.
+     *
+     * @return the starting health
+     */
+    public int getHealth() {
+        return this.health;
+    }
+
+    /**
+     * Returns how far an enemy of the kind moves each timestep.
+     *
+     * @return the step
+     */
+    public double getStep() {
+        return this.step;
+    }
+
+    /**
+     * Returns how likely an enemy of the kind is to be picked when an enemy
+     * spawns: each kind is picked in proportion to its weight.
+     *
+     * @return the spawn weight, 0 if the kind never spawns by chance
+     */
+    public int getSpawnWeight() {
+        return this.spawnWeight;
+    }
+
+    /**
+     * Returns how an enemy of the kind is drawn on the map.
+     *
+     * @return the symbol, e.g. "  ~> "
+     */
+    public String getSymbol() {
+        return this.symbol;
+    }
+
+    @Override
+    public String toString() {
+
+        return this.name + " id = " + this.id + " health = " + this.health + " step = " + this.step + " spawnWeight = "
+                + this.spawnWeight + " symbol = " + this.symbol;
+    }
+}
@@ -0,0 +1,98 @@
+package towerdefence;
+
+/**
+ * An Enemy backed by a slot in an EnemyStore rather than by fields of its own,
+ * so that code written against Enemy, like the map, can be handed the store's
+ * enemies. A view reads whichever enemy is in its slot, so once the store is
+ * sorted or swept it may be looking at a different enemy; the store keeps one
+ * view per slot and hands it out again each time.
+ *
+ * @author 170021928
+ *
+ */
+class EnemyView extends Enemy {
+
+    /**
+     * Constructs a view of an enemy in the store.
+     *
+     * @param store
+     *            the store holding the enemy
+     * @param slot
+     *            the slot of the enemy in the store
+     */
+    EnemyView(EnemyStore store, int slot) {
+        super();
+        this.store = store;
+        this.slot = slot;
+    }
+
+    /**
+     * The store holding the enemy.
+     */
+    private final EnemyStore store;
+
+    /**
+     * The slot of the enemy in the store.
+     */
+    private final int slot;
+
+    @Override
+    public void advance() {
+        this.store.setPosition(this.slot, this.store.getExactPosition(this.slot) + this.store.getStep(this.slot));
+    }
+
+    @Override
+    public int getHealth() {
+        return this.store.getHealth(this.slot);
+    }
+
+    @Override
+    public int getLine() {
+        return this.store.getLine(this.slot);
+    }
+
+    @Override
+    public int getPosition() {
+        return this.store.getPosition(this.slot);
+    }
+
+    @Override
+    public String getSymbol() {
+        return this.store.getSymbol(this.slot);
+    }
+
+    @Override
+    public void hit(Tower t) {
+
+        if (t.getPosition() > this.getPosition()) {
+            this.store.hit(this.slot, t.getDamage());
+        }
+    }
+
+    @Override
+    public String name() {
+        return this.store.getName(this.slot);
+    }
+
+    @Override
+    public EnemyType getType() {
+        return UnitRegistry.enemy(this.store.getType(this.slot));
+    }
+
+    @Override
+    public void setLine(int l) {
+        this.store.setLine(this.slot, l);
+    }
+
+    @Override
+    public void setPosition(int pos) {
+        this.store.setPosition(this.slot, pos);
+    }
+
+    @Override
+    public String toString() {
+
+        return this.name() + " health = " + this.getHealth() + " step = " + this.store.getStep(this.slot)
+                + " position = " + this.getPosition() + " symbol = " + this.getSymbol();
+    }
+}
@@ -0,0 +1,334 @@
+package towerdefence;
+
+import java.util.ArrayList;
+
+/**
+ * Carries a game's events to its listeners. Events are written as numbers into
+ * a ring of preallocated arrays and handed to every listener when the game
+ * drains the bus, which it does after each phase of a turn. Publishing an event
+ * is a handful of array stores, and with no listeners it is nothing at all, so
+ * a headless game pays nothing for events it does not want.
+ *
+ * The bus belongs to its game's thread and is not safe to share.
+ *
+ * @author 170021928
+ *
+ */
+public class EventBus {
+
+    /**
+     * Constructs a bus whose ring holds the given number of events. If the ring
+     * fills up before the game drains it, it is drained early. The ring is not
+     * made until the first listener subscribes, so a game nobody listens to
+     * carries no ring at all.
+     *
+     * @param capacity
+     *            the number of events the ring holds
+     */
+    public EventBus(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Constructs a bus with a ring of the default size.
+     */
+    public EventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * The default number of events the ring holds.
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Kind of event: an enemy spawned.
+     */
+    static final byte SPAWN = 0;
+
+    /**
+     * Kind of event: a tower hit an enemy.
+     */
+    static final byte HIT = 1;
+
+    /**
+     * Kind of event: an enemy died.
+     */
+    static final byte KILL = 2;
+
+    /**
+     * Kind of event: an enemy reached the castle.
+     */
+    static final byte BREACH = 3;
+
+    /**
+     * Kind of event: a tower was placed.
+     */
+    static final byte TOWER_PLACED = 4;
+
+    /**
+     * Kind of event: coins were awarded.
+     */
+    static final byte COIN_AWARDED = 5;
+
+    /**
+     * The listeners events are handed to.
+     */
+    private final ArrayList<GameListener> listeners = new ArrayList<GameListener>();
+
+    /**
+     * The number of events the ring holds.
+     */
+    private final int capacity;
+
+    /**
+     * The kind of each event in the ring.
+     */
+    private byte[] kind;
+
+    /**
+     * The timestep of each event in the ring.
+     */
+    private int[] tick;
+
+    /**
+     * The first field of each event, whose meaning depends on its kind.
+     */
+    private int[] a;
+
+    /**
+     * The second field of each event.
+     */
+    private int[] b;
+
+    /**
+     * The third field of each event.
+     */
+    private int[] c;
+
+    /**
+     * The fourth field of each event.
+     */
+    private int[] d;
+
+    /**
+     * The number of events waiting in the ring, from slot 0.
+     */
+    private int count;
+
+    /**
+     * Adds a listener to be handed every event from now on.
+     *
+     * @param listener
+     *            the listener
+     */
+    public void subscribe(GameListener listener) {
+
+        if (this.kind == null) {
+            this.kind = new byte[this.capacity];
+            this.tick = new int[this.capacity];
+            this.a = new int[this.capacity];
+            this.b = new int[this.capacity];
+            this.c = new int[this.capacity];
+            this.d = new int[this.capacity];
+        }
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Stops handing events to a listener.
+     *
+     * @param listener
+     *            the listener
+     */
+    public void unsubscribe(GameListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Returns whether anyone is listening. Callers can check this before doing
+     * any work just to publish an event.
+     *
+     * @return true if there is at least one listener
+     */
+    public boolean isActive() {
+        return !this.listeners.isEmpty();
+    }
+
+    /**
+     * Publishes a spawn event.
+     *
+     * @param t
+     *            the timestep
+     * @param enemyType
+     *            the type of enemy
+     * @param line
+     *            its line
+     */
+    public void spawn(int t, byte enemyType, int line) {
+        this.put(SPAWN, t, enemyType, line, 0, 0);
+    }
+
+    /**
+     * Publishes a hit event.
+     *
+     * @param t
+     *            the timestep
+     * @param tower
+     *            the number of the tower
+     * @param towerPos
+     *            the position of the tower
+     * @param enemyType
+     *            the type of enemy hit
+     * @param damage
+     *            the damage done
+     */
+    public void hit(int t, int tower, int towerPos, byte enemyType, int damage) {
+        this.put(HIT, t, tower, towerPos, enemyType, damage);
+    }
+
+    /**
+     * Publishes a kill event.
+     *
+     * @param t
+     *            the timestep
+     * @param enemyType
+     *            the type of enemy
+     * @param line
+     *            its line
+     * @param position
+     *            its position
+     */
+    public void kill(int t, byte enemyType, int line, int position) {
+        this.put(KILL, t, enemyType, line, position, 0);
+    }
+
+    /**
+     * Publishes a breach event.
+     *
+     * @param t
+     *            the timestep
+     * @param enemyType
+     *            the type of enemy
+     * @param line
+     *            its line
+     * @param position
+     *            its position
+     */
+    public void breach(int t, byte enemyType, int line, int position) {
+        this.put(BREACH, t, enemyType, line, position, 0);
+    }
+
+    /**
+     * Publishes a tower placed event.
+     *
+     * @param t
+     *            the timestep
+     * @param tower
+     *            the number of the tower
+     * @param position
+     *            its position
+     * @param cost
+     *            what it cost
+     */
+    public void towerPlaced(int t, int tower, int position, int cost) {
+        this.put(TOWER_PLACED, t, tower, position, cost, 0);
+    }
+
+    /**
+     * Publishes a coins awarded event.
+     *
+     * @param t
+     *            the timestep
+     * @param amount
+     *            the number of coins
+     * @param purse
+     *            the coins in the purse afterwards
+     */
+    public void coinAwarded(int t, int amount, int purse) {
+        this.put(COIN_AWARDED, t, amount, purse, 0, 0);
+    }
+
+    /**
+     * Hands every waiting event to every listener, in the order they were
+     * published, and empties the ring.
+     */
+    public void drain() {
+
+        for (int i = 0; i < this.count; i++) {
+            for (int l = 0; l < this.listeners.size(); l++) {
+                this.dispatch(this.listeners.get(l), i);
+            }
+        }
+        this.count = 0;
+    }
+
+    /**
+     * Writes an event into the ring, if anyone is listening.
+     *
+     * @param k
+     *            the kind of event
+     * @param t
+     *            the timestep
+     * @param f1
+     *            the first field
+     * @param f2
+     *            the second field
+     * @param f3
+     *            the third field
+     * @param f4
+     *            the fourth field
+     */
+    private void put(byte k, int t, int f1, int f2, int f3, int f4) {
+
+        if (this.listeners.isEmpty()) {
+            return;
+        }
+        if (this.count == this.capacity) {
+            this.drain();
+        }
+
+        int i = this.count++;
+        this.kind[i] = k;
+        this.tick[i] = t;
+        this.a[i] = f1;
+        this.b[i] = f2;
+        this.c[i] = f3;
+        this.d[i] = f4;
+    }
+
+    /**
+     * Hands one event to one listener.
+     *
+     * @param listener
+     *            the listener
+     * @param i
+     *            the slot of the event in the ring
+     */
+    private void dispatch(GameListener listener, int i) {
+
+        switch (this.kind[i]) {
+
+            case SPAWN:
+                listener.onSpawn(this.tick[i], (byte) this.a[i], this.b[i]);
+                break;
+            case HIT:
+                listener.onHit(this.tick[i], this.a[i], this.b[i], (byte) this.c[i], this.d[i]);
+                break;
+            case KILL:
+                listener.onKill(this.tick[i], (byte) this.a[i], this.b[i], this.c[i]);
+                break;
+            case BREACH:
+                listener.onBreach(this.tick[i], (byte) this.a[i], this.b[i], this.c[i]);
+                break;
+            case TOWER_PLACED:
+                listener.onTowerPlaced(this.tick[i], this.a[i], this.b[i], this.c[i]);
+                break;
+            case COIN_AWARDED:
+                listener.onCoinAwarded(this.tick[i], this.a[i], this.b[i]);
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package towerdefence;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every event of a game, in order, as rows of numbers, so that a game
+ * can be looked over or compared with another afterwards. Each row holds the
+ * kind of event, the timestep and up to four fields, laid out as the EventBus
+ * lays them out.
+ *
+ * @author 170021928
+ *
+ */
+public class EventRecorder implements GameListener {
+
+    /**
+     * The number of numbers in a row.
+     */
+    public static final int ROW = 6;
+
+    /**
+     * The number of events there is room for to begin with.
+     */
+    private static final int INITIAL_EVENTS = 64;
+
+    /**
+     * The rows recorded, one after another.
+     */
+    private int[] rows = new int[ROW * INITIAL_EVENTS];
+
+    /**
+     * The number of events recorded.
+     */
+    private int count;
+
+    @Override
+    public void onSpawn(int tick, byte enemyType, int line) {
+        this.record(EventBus.SPAWN, tick, enemyType, line, 0, 0);
+    }
+
+    @Override
+    public void onHit(int tick, int tower, int towerPos, byte enemyType, int damage) {
+        this.record(EventBus.HIT, tick, tower, towerPos, enemyType, damage);
+    }
+
+    @Override
+    public void onKill(int tick, byte enemyType, int line, int position) {
+        this.record(EventBus.KILL, tick, enemyType, line, position, 0);
+    }
+
+    @Override
+    public void onBreach(int tick, byte enemyType, int line, int position) {
+        this.record(EventBus.BREACH, tick, enemyType, line, position, 0);
+    }
+
+    @Override
+    public void onTowerPlaced(int tick, int tower, int position, int cost) {
+        this.record(EventBus.TOWER_PLACED, tick, tower, position, cost, 0);
+    }
+
+    @Override
+    public void onCoinAwarded(int tick, int amount, int purse) {
+        this.record(EventBus.COIN_AWARDED, tick, amount, purse, 0, 0);
+    }
+
+    /**
+     * Returns the number of events recorded.
+     *
+     * @return the number of events
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Returns the events recorded, ROW numbers to an event.
+     *
+     * @return a copy of the rows
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(this.rows, this.count * ROW);
+    }
+
+    /**
+     * Forgets every event recorded so far.
+     */
+    public void clear() {
+        this.count = 0;
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param kind
+     *            the kind of event
+     * @param tick
+     *            the timestep
+     * @param f1
+     *            the first field
+     * @param f2
+     *            the second field
+     * @param f3
+     *            the third field
+     * @param f4
+     *            the fourth field
+     */
+    private void record(byte kind, int tick, int f1, int f2, int f3, int f4) {
+
+        int i = this.count * ROW;
+
+        if (i + ROW > this.rows.length) {
+            this.rows = Arrays.copyOf(this.rows, 2 * this.rows.length);
+        }
+        this.rows[i] = kind;
+        this.rows[i + 1] = tick;
+        this.rows[i + 2] = f1;
+        this.rows[i + 3] = f2;
+        this.rows[i + 4] = f3;
+        this.rows[i + 5] = f4;
+        this.count++;
+    }
+}
@@ -0,0 +1,183 @@
+package towerdefence;
+
+/**
+ * Counts up a game's events: spawns, shots, kills and so on, with kills broken
+ * down by type of enemy.
+ *
+ * @author 170021928
+ *
+ */
+public class EventStats implements GameListener {
+
+    /**
+     * The number of types of enemy.
+     */
+    private static final int ENEMY_TYPES = EnemyStore.typeCount();
+
+    /**
+     * The number of enemies spawned.
+     */
+    private long spawns;
+
+    /**
+     * The number of hits.
+     */
+    private long hits;
+
+    /**
+     * The total damage done by all hits.
+     */
+    private long damage;
+
+    /**
+     * The number of enemies killed, by type.
+     */
+    private final long[] kills = new long[ENEMY_TYPES];
+
+    /**
+     * The number of breaches.
+     */
+    private long breaches;
+
+    /**
+     * The number of towers placed.
+     */
+    private long towersPlaced;
+
+    /**
+     * The coins spent on towers.
+     */
+    private long coinsSpent;
+
+    /**
+     * The coins awarded.
+     */
+    private long coinsAwarded;
+
+    @Override
+    public void onSpawn(int tick, byte enemyType, int line) {
+        this.spawns++;
+    }
+
+    @Override
+    public void onHit(int tick, int tower, int towerPos, byte enemyType, int dmg) {
+        this.hits++;
+        this.damage += dmg;
+    }
+
+    @Override
+    public void onKill(int tick, byte enemyType, int line, int position) {
+        this.kills[enemyType]++;
+    }
+
+    @Override
+    public void onBreach(int tick, byte enemyType, int line, int position) {
+        this.breaches++;
+    }
+
+    @Override
+    public void onTowerPlaced(int tick, int tower, int position, int cost) {
+        this.towersPlaced++;
+        this.coinsSpent += cost;
+    }
+
+    @Override
+    public void onCoinAwarded(int tick, int amount, int purse) {
+        this.coinsAwarded += amount;
+    }
+
+    /**
+     * Returns the number of enemies spawned.
+     *
+     * @return spawns
+     */
+    public long getSpawns() {
+        return this.spawns;
+    }
+
+    /**
+     * Returns the number of hits.
+     *
+     * @return hits
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the total damage done.
+     *
+     * @return damage
+     */
+    public long getDamage() {
+        return this.damage;
+    }
+
+    /**
+     * Returns the number of enemies of the given type killed.
+     *
+     * @param enemyType
+     *            the EnemyStore type number
+     * @return kills of that type
+     */
+    public long getKills(byte enemyType) {
+        return this.kills[enemyType];
+    }
+
+    /**
+     * Returns the number of enemies killed.
+     *
+     * @return kills of every type
+     */
+    public long getKills() {
+        long total = 0;
+        for (long k : this.kills) {
+            total += k;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of breaches.
+     *
+     * @return breaches
+     */
+    public long getBreaches() {
+        return this.breaches;
+    }
+
+    /**
+     * Returns the number of towers placed.
+     *
+     * @return towers placed
+     */
+    public long getTowersPlaced() {
+        return this.towersPlaced;
+    }
+
+    /**
+     * Returns the coins spent on towers.
+     *
+     * @return coins spent
+     */
+    public long getCoinsSpent() {
+        return this.coinsSpent;
+    }
+
+    /**
+     * Returns the coins awarded.
+     *
+     * @return coins awarded
+     */
+    public long getCoinsAwarded() {
+        return this.coinsAwarded;
+    }
+
+    @Override
+    public String toString() {
+
+        return "spawns = " + this.spawns + " hits = " + this.hits + " damage = " + this.damage + " kills = "
+                + this.getKills() + " breaches = " + this.breaches + " towersPlaced = " + this.towersPlaced
+                + " coinsSpent = " + this.coinsSpent + " coinsAwarded = " + this.coinsAwarded;
+    }
+}
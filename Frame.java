@@ -0,0 +1,189 @@
+package towerdefence;
+
+import java.util.List;
+
+/**
+ * An immutable picture of where every enemy and tower is at the end of a
+ * timestep. The game makes one and hands it to a Renderer, which can then draw
+ * it on another thread while the game carries on.
+ *
+ * @author 170021928
+ *
+ */
+public final class Frame {
+
+    /**
+     * Constructs a frame. The arrays are kept, not copied, so must not be
+     * changed afterwards.
+     *
+     * @param timeStep
+     *            the timestep the frame shows
+     * @param enemyLines
+     *            the line of each enemy
+     * @param enemyPositions
+     *            the position of each enemy
+     * @param enemySymbols
+     *            the symbol of each enemy
+     * @param towerPositions
+     *            the position of each tower
+     * @param towerSymbols
+     *            the symbol of each tower
+     */
+    private Frame(int timeStep, int[] enemyLines, int[] enemyPositions, String[] enemySymbols,
+            int[] towerPositions, String[] towerSymbols) {
+        this.timeStep = timeStep;
+        this.enemyLines = enemyLines;
+        this.enemyPositions = enemyPositions;
+        this.enemySymbols = enemySymbols;
+        this.towerPositions = towerPositions;
+        this.towerSymbols = towerSymbols;
+    }
+
+    /**
+     * The timestep the frame shows.
+     */
+    private final int timeStep;
+
+    /**
+     * The line of each enemy.
+     */
+    private final int[] enemyLines;
+
+    /**
+     * The position of each enemy.
+     */
+    private final int[] enemyPositions;
+
+    /**
+     * The symbol of each enemy.
+     */
+    private final String[] enemySymbols;
+
+    /**
+     * The position of each tower.
+     */
+    private final int[] towerPositions;
+
+    /**
+     * The symbol of each tower.
+     */
+    private final String[] towerSymbols;
+
+    /**
+     * Takes a picture of the given enemies and towers.
+     *
+     * @param timeStep
+     *            the current timestep
+     * @param enemies
+     *            the enemies
+     * @param towers
+     *            the towers
+     * @return a frame showing them
+     */
+    static Frame of(int timeStep, EnemyStore enemies, List<Tower> towers) {
+
+        int n = enemies.size();
+        int[] enemyLines = new int[n];
+        int[] enemyPositions = new int[n];
+        String[] enemySymbols = new String[n];
+
+        for (int i = 0; i < n; i++) {
+            enemyLines[i] = enemies.getLine(i);
+            enemyPositions[i] = enemies.getPosition(i);
+            enemySymbols[i] = enemies.getSymbol(i);
+        }
+
+        int m = towers.size();
+        int[] towerPositions = new int[m];
+        String[] towerSymbols = new String[m];
+
+        for (int i = 0; i < m; i++) {
+            towerPositions[i] = towers.get(i).getPosition();
+            towerSymbols[i] = towers.get(i).getSymbol();
+        }
+
+        return new Frame(timeStep, enemyLines, enemyPositions, enemySymbols, towerPositions, towerSymbols);
+    }
+
+    /**
+     * Returns the timestep the frame shows.
+     *
+     * @return the timestep
+     */
+    public int getTimeStep() {
+        return this.timeStep;
+    }
+
+    /**
+     * Returns the number of enemies in the frame.
+     *
+     * @return the number of enemies
+     */
+    public int enemyCount() {
+        return this.enemyLines.length;
+    }
+
+    /**
+     * Returns the line of the given enemy.
+     *
+     * @param i
+     *            the number of the enemy in the frame
+     * @return its line
+     */
+    public int getEnemyLine(int i) {
+        return this.enemyLines[i];
+    }
+
+    /**
+     * Returns the position of the given enemy.
+     *
+     * @param i
+     *            the number of the enemy in the frame
+     * @return its position
+     */
+    public int getEnemyPosition(int i) {
+        return this.enemyPositions[i];
+    }
+
+    /**
+     * Returns the symbol of the given enemy.
+     *
+     * @param i
+     *            the number of the enemy in the frame
+     * @return its symbol
+     */
+    public String getEnemySymbol(int i) {
+        return this.enemySymbols[i];
+    }
+
+    /**
+     * Returns the number of towers in the frame.
+     *
+     * @return the number of towers
+     */
+    public int towerCount() {
+        return this.towerPositions.length;
+    }
+
+    /**
+     * Returns the position of the given tower.
+     *
+     * @param i
+     *            the number of the tower in the frame
+     * @return its position
+     */
+    public int getTowerPosition(int i) {
+        return this.towerPositions[i];
+    }
+
+    /**
+     * Returns the symbol of the given tower.
+     *
+     * @param i
+     *            the number of the tower in the frame
+     * @return its symbol
+     */
+    public String getTowerSymbol(int i) {
+        return this.towerSymbols[i];
+    }
+}
@@ -1,19 +1,45 @@
 package towerdefence;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.List;
 import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * My brilliant tower game! This class contains all the game logic. Run the game
  * from the command line thus:
  *
- * java -jar towerDefence.jar <corridor length>
+ * java -jar towerDefence.jar <corridor length> <seed> <replay file>
  *
  * Corridor length is optional - if one is not provided, a default of 20 will be
- * used. The shorter the corridor, the harder the game! The maximum possible
- * corridor length is 60 - if a higher number is provided, the game will use a
- * default corridor length of 15.
+ * used. The shorter the corridor, the harder the game! Corridors of any length
+ * can be played; the map shows as much of a long corridor as fits on the
+ * screen, following the enemies. If the number given is not above 0, the game
+ * will use a default corridor length of 15.
+ *
+ * The seed is also optional. All the game's randomness comes from one generator
+ * seeded with it, so the same seed and the same tower purchases always play out
+ * the same game. If no seed is given, one is picked at random and shown when the
+ * game starts.
+ *
+ * If a replay file is given, the game is recorded to it as it is played, and
+ * can be played back with ReplayPlayer.
+ *
+ * The game can also be run headless (see {@link #simulate(int, List)}), in
+ * which case tower purchases are read from a script rather than the console and
+ * nothing is printed or drawn.
+ *
+ * The kinds of tower on the buy menu and the kinds of enemy are read from the
+ * unit file when the game starts; see UnitRegistry.
+ *
+ * Each timestep can be timed for TickMetrics, and recorded by the Java Flight
+ * Recorder as a TickEvent; see setMetrics and advance.
  *
  * @author 170021928
  *
@@ -28,159 +54,1275 @@ public class Game {
      *            the corridor.
      */
     Game(int corridorLength) {
+        this(corridorLength, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructor for a game whose randomness is drawn from the given seed.
+     *
+     * @param corridorLength
+     *            int taken from the command line which determines the length of
+     *            the corridor.
+     * @param seed
+     *            the seed for the game's random number generator.
+     */
+    Game(int corridorLength, long seed) {
+        this(corridorLength, seed, DEFAULT_LANES);
+    }
+
+    /**
+     * Constructor for a game with the given number of lanes for enemies to
+     * walk along.
+     *
+     * @param corridorLength
+     *            the length of the corridor.
+     * @param seed
+     *            the seed for the game's random number generator.
+     * @param lanes
+     *            the number of lanes.
+     */
+    Game(int corridorLength, long seed, int lanes) {
         this.corridorLength = corridorLength;
+        this.purse = startingPurse(corridorLength);
+        this.seed = seed;
+        this.random = new GameRandom(seed);
+        this.mapHeight = lanes + Map.FIRST_LINE;
+        this.occupied = new Occupancy(corridorLength);
+    }
+
+    /**
+     * Menu option (and purchase type) for a Slingshot, wherever the unit file
+     * puts it.
+     */
+    public static final int SLINGSHOT = UnitRegistry.tower("Slingshot").getId();
+
+    /**
+     * Menu option (and purchase type) for a Catapult, wherever the unit file
+     * puts it.
+     */
+    public static final int CATAPULT = UnitRegistry.tower("Catapult").getId();
+
+    /**
+     * Menu option (and purchase type) for a Cannon, wherever the unit file
+     * puts it.
+     */
+    public static final int CANNON = UnitRegistry.tower("Cannon").getId();
+
+    /**
+     * The number of timesteps a headless game may run for before it is called
+     * off, if no other limit is given. Without a limit a very strong layout
+     * could keep a game going forever.
+     */
+    public static final int DEFAULT_MAX_TICKS = 100000;
+
+    /**
+     * The first menu option, the first tower in the unit file.
+     */
+    static final int FIRST_TOWER = 1;
+
+    /**
+     * The menu option that ends buying and plays on (avoiding the dreaded
+     * magic number!): the one after the last kind of tower.
+     */
+    static final int CONTINUE = UnitRegistry.towerCount() + 1;
+
+    /**
+     * The options of the buy menu, as buyTowers shows them: one for each kind
+     * of tower in the unit file, then one to continue.
+     */
+    static final String[] MENU = menu();
+
+    /**
+     * Contains all the enemies that are currently alive.
+     */
+    private final EnemyStore enemies = new EnemyStore(INITIAL_ENEMY_CAPACITY);
+
+    /**
+     * The number of enemies there is room for when a game starts. The enemy
+     * store grows if more are needed.
+     */
+    private static final int INITIAL_ENEMY_CAPACITY = 64;
+
+    /**
+     * Contains all the towers.
+     */
+    private ArrayList<Tower> towers = new ArrayList<Tower>();
+
+    /**
+     * The default corridor length, used if no arguments are passed.
+     */
+    static final int DEFAULTCORRIDOR = 15;
+
+    /**
+     * The number of lanes enemies walk along, if no other number is given.
+     */
+    public static final int DEFAULT_LANES = Map.MAPHEIGHT - Map.FIRST_LINE;
+
+    /**
+     * The smallest purse a game starts with: enough for a Slingshot. Corridors
+     * longer than 60 would otherwise start with too little to buy any towers.
+     */
+    private static final int MINPURSE = 10;
+
+    /**
+     * The purse start value. The length of the corridor is subtracted from
+     * this, so that if you have a shorter corridor you get a bit more money.
+     */
+    private static final int PURSESTART = 70;
+
+    /**
+     * Stores the height of the map when we create a new map. This is used when
+     * generating start positions of the enemies.
+     */
+    private int mapHeight;
+
+    /**
+     * Holds the player's coins.
+     */
+    private int purse;
+
+    /**
+     * Holds the length of the corridor if it has been specified by the user.
+     */
+    private int corridorLength;
+
+    /**
+     * Tracks the current timeStep - this is used to determine if each tower is
+     * ready to fire.
+     */
+    private int timeStep = 1;
+
+    /**
+     * The seed the game's random number generator was created with.
+     */
+    private final long seed;
+
+    /**
+     * The source of all the game's randomness: which enemies spawn and which
+     * enemy each tower fires at.
+     */
+    private final GameRandom random;
+
+    /**
+     * The number of timesteps played so far: the last timestep the game was
+     * advanced at, or 0 before it first advances. Purchases are made at this
+     * tick.
+     */
+    private int ticks;
+
+    /**
+     * The purchases a headless game makes, sorted by tick.
+     */
+    private ArrayList<Purchase> orders = new ArrayList<Purchase>();
+
+    /**
+     * The index of the first purchase not yet made.
+     */
+    private int nextOrder;
+
+    /**
+     * Records the game to a replay file, or null if it is not being recorded.
+     */
+    private ReplayRecorder recorder;
+
+    /**
+     * Counts the enemies killed so far.
+     */
+    private int kills;
+
+    /**
+     * True if the game is being run without a console, in which case nothing
+     * is printed and no map is drawn.
+     */
+    private boolean headless;
+
+    /**
+     * True once endGame has found the game won or lost and announced it, so
+     * that asking again announces and counts nothing more. Cleared when an
+     * earlier state is loaded.
+     */
+    private boolean over;
+
+    /**
+     * Carries the game's events - spawns, hits, kills and so on - to whoever is
+     * listening. The console printer is one listener; a headless game has none
+     * unless some are subscribed, and then publishing costs nothing.
+     */
+    private final EventBus events = new EventBus();
+
+    /**
+     * Draws the game on another thread while it is played headless, or null if
+     * it is not being watched.
+     */
+    private Renderer renderer;
+
+    /**
+     * Sends the game to spectators after every timestep while it is played
+     * headless, or null if there are none.
+     */
+    private SpectatorServer spectators;
+
+    /**
+     * When watching, a frame is published every this many timesteps.
+     */
+    private int renderEvery = 1;
+
+    /**
+     * Towers bought from other threads, e.g. while the game runs in real time,
+     * waiting to be placed after the next advance.
+     */
+    private final ConcurrentLinkedQueue<Purchase> commands = new ConcurrentLinkedQueue<Purchase>();
+
+    /**
+     * Where the player who submits purchases is told how each went, or null if
+     * nobody is told, as in a game played without a player at the console.
+     */
+    private PrintStream replies;
+
+    /**
+     * Decides which enemy in range each tower fires at.
+     */
+    private TargetingPolicy targeting = TargetingPolicy.RANDOM_IN_RANGE;
+
+    /**
+     * How likely enemies are to spawn as the game goes on.
+     */
+    private DifficultyCurve difficulty = DifficultyCurve.DEFAULT;
+
+    /**
+     * Knows when each lane next spawns an enemy, or null until the first
+     * enemies are generated.
+     */
+    private SpawnScheduler spawns;
+
+    /**
+     * Finds the enemies in range of each tower. The enemy store is kept
+     * sorted from the furthest along the corridor to the closest to the start
+     * for it: new enemies start at position 0 so they go on the end, and
+     * updateEnemies re-sorts after moving everyone.
+     */
+    private final EnemyIndex index = new EnemyIndex();
+
+    /**
+     * The positions that have a tower on them, for checking where a new tower
+     * can go.
+     */
+    private final Occupancy occupied;
+
+    /**
+     * Knows which towers are loaded and ready to fire at each timestep.
+     */
+    private final ReloadWheel reloads = new ReloadWheel();
+
+    /**
+     * Shares out the firing of many towers over a pool of threads, or null if
+     * towers are always fired on the game's own thread.
+     */
+    private ParallelFire parallelFire;
+
+    /**
+     * Times the game's phases and counts its shots, kills and so on, or null
+     * if nobody is keeping track.
+     */
+    private TickMetrics metrics;
+
+    /**
+     * True if the metrics are timing the current timestep.
+     */
+    private boolean timing;
+
+    /**
+     * The number of timesteps to go until the metrics time one, counting it.
+     */
+    private int untilTimed;
+
+    /**
+     * The timesteps played since the game last reported to its metrics. The
+     * counts are kept in the game and handed over only on the timesteps that
+     * are timed, so the others cost a few additions.
+     */
+    private int ticksUnreported;
+
+    /**
+     * The towers fired since the game last reported to its metrics.
+     */
+    private int shotsUnreported;
+
+    /**
+     * The shots that hit since the game last reported to its metrics.
+     */
+    private int hitsUnreported;
+
+    /**
+     * The enemies killed since the game last reported to its metrics.
+     */
+    private int killsUnreported;
+
+    /**
+     * The enemies spawned since the game last reported to its metrics.
+     */
+    private int spawnsUnreported;
+
+    /**
+     * The number of enemies alive that the metrics were last told of.
+     */
+    private int enemiesReported;
+
+    /**
+     * The number of towers that the metrics were last told of.
+     */
+    private int towersReported;
+
+    /**
+     * The main method does these things:
+     *
+     * Sets up and prints the map. Initialises the purse - this relates to the
+     * corridor length, so that if you have a shorter corridor you get a bit
+     * more money. Otherwise it's too hard with a very short corridor. Opens a
+     * scanner to get user input and prompts for tower choices. Sets towers.
+     * Randomly generates enemies. If by chance no enemies were generated, sets
+     * some.
+     *
+     * Now the game is set up, and so it simply loops through advancing the game
+     * state, giving the option to buy towers, updating the map, and
+     * incrementing the time step until the game is over. Meanwhile the
+     * phases of each timestep are timed and shown over JMX; see
+     * MetricsExporter.
+     *
+     * @param args
+     *            takes up to three arguments when run: an int which
+     *            determines the length of the game corridor, a long seed for
+     *            the random number generator, and a file to record a replay
+     *            to. All are optional.
+     * @throws IOException
+     *             if the replay file cannot be written, or the metrics port
+     *             cannot be listened on
+     */
+    public static void main(String[] args) throws IOException {
+
+        Game newGame;
+
+        int corridorLength = DEFAULTCORRIDOR;
+
+        if (args.length >= 1 && Integer.parseInt(args[0]) > 0) {
+            corridorLength = Integer.parseInt(args[0]);
+        }
+        if (args.length >= 2) {
+            newGame = new Game(corridorLength, Long.parseLong(args[1]));
+        } else {
+            newGame = new Game(corridorLength);
+        }
+        if (args.length >= 3) {
+            newGame.recorder = ReplayRecorder.create(Paths.get(args[2]), corridorLength, newGame.getSeed());
+        }
+
+        Map newMap = new Map(newGame.corridorLength);
+        newGame.mapHeight = newMap.getMapHeight();
+
+        TickMetrics metrics = new TickMetrics(1);
+        newGame.setMetrics(metrics);
+        newMap.setMetrics(metrics);
+        MetricsExporter exporter = MetricsExporter.export(metrics, "console " + newGame.getSeed());
+
+        newMap.print(newGame.enemies.views(), newGame.towers);
+        Scanner scanner = new Scanner(System.in);
+
+        newGame.events.subscribe(new ConsolePrinter(newGame.towers));
+
+        System.out.println("Welcome to ANIMAL ADVANCE!");
+        System.out.println("SEED: " + newGame.getSeed());
+        newGame.buyTowers(newMap, scanner);
+
+        newGame.generateEnemies(newGame.enemies);
+        newGame.seedEnemies();
+
+        newMap.print(newGame.enemies.views(), newGame.towers);
+
+        while (newGame.endGame() == 0) {
+
+            newGame.recordKeyframe();
+            newGame.advance();
+
+            newGame.buyTowers(newMap, scanner);
+
+            newMap.print(newGame.enemies.views(), newGame.towers);
+            newGame.incrementTimeStep();
+
+        }
+        scanner.close();
+        newMap.close();
+        exporter.close();
+        if (newGame.recorder != null) {
+            newGame.recorder.close();
+        }
+    }
+
+    /**
+     * Runs a whole game without a console: no input is read, nothing is printed
+     * and no map is drawn. Towers are bought from the given script instead of
+     * the buyTowers menu.
+     *
+     * @param corridorLength
+     *            the length of the corridor, as would be given on the command
+     *            line
+     * @param script
+     *            the tower purchases to make during the game
+     * @return the outcome of the game
+     */
+    public static SimulationResult simulate(int corridorLength, List<Purchase> script) {
+        return simulate(corridorLength, script, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Runs a whole game without a console from the given seed. The same seed
+     * and script always give the same result.
+     *
+     * @param corridorLength
+     *            the length of the corridor, as would be given on the command
+     *            line
+     * @param script
+     *            the tower purchases to make during the game
+     * @param seed
+     *            the seed for the game's random number generator
+     * @return the outcome of the game
+     */
+    public static SimulationResult simulate(int corridorLength, List<Purchase> script, long seed) {
+        return simulate(corridorLength, script, seed, DEFAULT_MAX_TICKS);
+    }
+
+    /**
+     * Runs a whole game without a console from the given seed, calling it off
+     * after the given number of timesteps if it has not been won or lost by
+     * then.
+     *
+     * @param corridorLength
+     *            the length of the corridor, as would be given on the command
+     *            line
+     * @param script
+     *            the tower purchases to make during the game
+     * @param seed
+     *            the seed for the game's random number generator
+     * @param maxTicks
+     *            the most timesteps the game may run for
+     * @return the outcome of the game
+     */
+    public static SimulationResult simulate(int corridorLength, List<Purchase> script, long seed, int maxTicks) {
+        return simulate(corridorLength, script, seed, maxTicks, TargetingPolicy.RANDOM_IN_RANGE);
+    }
+
+    /**
+     * Runs a whole game without a console from the given seed, with towers
+     * choosing their targets by the given policy.
+     *
+     * @param corridorLength
+     *            the length of the corridor, as would be given on the command
+     *            line
+     * @param script
+     *            the tower purchases to make during the game
+     * @param seed
+     *            the seed for the game's random number generator
+     * @param maxTicks
+     *            the most timesteps the game may run for
+     * @param targeting
+     *            how towers choose which enemy to fire at
+     * @return the outcome of the game
+     */
+    public static SimulationResult simulate(int corridorLength, List<Purchase> script, long seed, int maxTicks,
+            TargetingPolicy targeting) {
+        Game game = newHeadless(corridorLength, seed);
+        game.setTargeting(targeting);
+        return game.play(script, maxTicks);
+    }
+
+    /**
+     * Makes a game that prints nothing and draws no map, ready to be played
+     * with play. This is for callers that want to set the game up first, e.g.
+     * to subscribe listeners to its events.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @param seed
+     *            the seed for the game's random number generator
+     * @return the new game
+     */
+    public static Game newHeadless(int corridorLength, long seed) {
+        return newHeadless(corridorLength, seed, DEFAULT_LANES);
+    }
+
+    /**
+     * Makes a headless game with the given number of lanes for enemies to walk
+     * along.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @param seed
+     *            the seed for the game's random number generator
+     * @param lanes
+     *            the number of lanes
+     * @return the new game
+     */
+    public static Game newHeadless(int corridorLength, long seed, int lanes) {
+        Game game = new Game(corridorLength, seed, lanes);
+        game.headless = true;
+        return game;
+    }
+
+    /**
+     * Plays a game headless from the given seed, as simulate does, but draws it
+     * on the console as it goes. The drawing happens on a render thread, which
+     * draws the latest state at most maxFps times a second and skips any
+     * states it cannot keep up with, so the game is never held up waiting for
+     * the console.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @param script
+     *            the tower purchases to make during the game
+     * @param seed
+     *            the seed for the game's random number generator
+     * @param maxFps
+     *            the most frames to draw each second
+     * @param renderEvery
+     *            only publish a frame every this many timesteps; 1 publishes
+     *            every timestep
+     * @return the outcome of the game
+     */
+    public static SimulationResult watch(int corridorLength, List<Purchase> script, long seed, int maxFps,
+            int renderEvery) {
+
+        Game game = newHeadless(corridorLength, seed);
+
+        Map map = new Map(corridorLength);
+        game.renderer = new Renderer(map, maxFps);
+        game.renderEvery = Math.max(1, renderEvery);
+        game.renderer.start();
+
+        try {
+            return game.play(script, DEFAULT_MAX_TICKS);
+        } finally {
+            game.renderer.stop();
+            map.close();
+        }
+    }
+
+    /**
+     * Plays this game headless from start to finish. This follows the same
+     * steps as main, except that purchases are taken from the script: those
+     * for tick 0 are made before the first enemies arrive, and those for tick
+     * n are made after the game has advanced at timestep n.
+     *
+     * @param script
+     *            the tower purchases to make during the game
+     * @param maxTicks
+     *            the most timesteps the game may run for
+     * @return the outcome of the game
+     */
+    public SimulationResult play(List<Purchase> script, int maxTicks) {
+
+        this.setScript(script);
+        this.placeTowers(0);
+        this.begin();
+
+        return this.resume(maxTicks);
+    }
+
+    /**
+     * Carries on playing this game headless from wherever it is, until it is
+     * won or lost or the given number of timesteps have been played. This is
+     * how a game restored from a saved state is played on.
+     *
+     * @param maxTicks
+     *            stop once this many timesteps have been played
+     * @return the outcome of the game, or 0 if it was stopped first
+     */
+    public SimulationResult resume(int maxTicks) {
+
+        int outcome;
+
+        while ((outcome = this.endGame()) == 0 && this.ticks < maxTicks) {
+            this.step();
+        }
+        this.publish(true);
+        return new SimulationResult(this.seed, outcome, this.ticks, this.purse, this.kills);
+    }
+
+    /**
+     * Plays this game from the start in real time, without waiting for the
+     * player: the scheduler sets the pace, and towers are bought whenever
+     * commands arrive through submit.
+     *
+     * @param scheduler
+     *            paces the timesteps
+     * @param maxTicks
+     *            the most timesteps the game may run for
+     * @return the outcome of the game
+     */
+    public SimulationResult playRealTime(TickScheduler scheduler, int maxTicks) {
+
+        this.setScript(new ArrayList<Purchase>());
+        this.takeCommands();
+        this.begin();
+
+        int outcome;
+
+        while ((outcome = this.endGame()) == 0 && this.ticks < maxTicks) {
+            scheduler.awaitTick();
+            this.step();
+        }
+        this.publish(true);
+        return new SimulationResult(this.seed, outcome, this.ticks, this.purse, this.kills);
+    }
+
+    /**
+     * Brings on the first enemies of a headless game, once the towers wanted
+     * before they arrive have been bought. A game played a timestep at a time
+     * with playTurn calls this first.
+     */
+    public void begin() {
+
+        this.generateEnemies(this.enemies);
+        this.seedEnemies();
+        this.publish(true);
+    }
+
+    /**
+     * Plays one timestep of a headless game that has begun, for callers that
+     * pace the game themselves, e.g. a GameServer session waiting on its
+     * player. Towers can be bought with buy between turns.
+     *
+     * @return -1 if the game is now lost, 1 if it is won, or 0 if it is still
+     *         in play
+     */
+    public int playTurn() {
+        this.step();
+        return this.endGame();
+    }
+
+    /**
+     * Plays one timestep of a headless game: advances it, then makes the
+     * purchases due.
+     */
+    private void step() {
+
+        this.recordKeyframe();
+        this.advance();
+
+        this.placeTowers(this.timeStep);
+        this.takeCommands();
+        this.publish(false);
+        this.incrementTimeStep();
+    }
+
+    /**
+     * Asks for a tower to be bought after the next advance. Unlike buy, this
+     * may be called from any thread, and never waits.
+     *
+     * @param type
+     *            the number of the tower on the buyTowers menu, e.g. CANNON
+     * @param position
+     *            the position of the tower
+     */
+    public void submit(int type, int position) {
+        this.commands.offer(new Purchase(type, position, 0));
+    }
+
+    /**
+     * Buys the towers submitted since the last timestep, telling the player
+     * how each went if setReplies has given somewhere to tell them.
+     */
+    private void takeCommands() {
+
+        Purchase command;
+
+        while ((command = this.commands.poll()) != null) {
+            boolean bought = this.buy(command.getType(), command.getPosition());
+            if (this.replies == null) {
+                continue;
+            }
+            if (bought) {
+                this.replies.println("Bought. PURSE: " + this.purse);
+            } else {
+                this.replies.println("You cannot buy that there. PURSE: " + this.purse);
+            }
+        }
+    }
+
+    /**
+     * Hands the renderer a frame of the current state, if the game is being
+     * watched and a frame is due, and the spectators the timestep's changes.
+     *
+     * @param always
+     *            true to publish whatever the timestep, e.g. for the first and
+     *            last frames
+     */
+    private void publish(boolean always) {
+
+        if (this.renderer != null && (always || this.timeStep % this.renderEvery == 0)) {
+            this.renderer.publish(this.toFrame());
+        }
+        if (this.spectators != null) {
+            this.spectators.publish(this.timeStep, this.enemies, this.towers);
+        }
+    }
+
+    /**
+     * Makes the scripted purchases that are due by the given tick. Purchases
+     * the purse cannot cover, or for a position that is off the corridor or
+     * already taken, are skipped.
+     *
+     * @param tick
+     *            the current tick
+     */
+    private void placeTowers(int tick) {
+
+        while (this.nextOrder < this.orders.size() && this.orders.get(this.nextOrder).getTick() <= tick) {
+
+            Purchase order = this.orders.get(this.nextOrder++);
+            this.buy(order.getType(), order.getPosition());
+        }
+    }
+
+    /**
+     * Buys a tower for a headless game at the current tick, as the buyTowers
+     * menu would. Nothing is bought if the purse cannot cover it or the
+     * position is off the corridor or already taken.
+     *
+     * @param type
+     *            the number of the tower on the buyTowers menu, e.g. CANNON
+     * @param position
+     *            the position of the tower
+     * @return true if the tower was bought
+     */
+    public boolean buy(int type, int position) {
+
+        Tower newTower = createTower(type, position);
+
+        if (newTower == null || newTower.getCost() > this.purse || !this.isFree(position)) {
+            return false;
+        }
+        this.purse -= newTower.getCost();
+        this.addTower(newTower, type);
+        return true;
+    }
+
+    /**
+     * Adds a tower that has been paid for to the game.
+     *
+     * @param newTower
+     *            the tower, already at its position
+     * @param type
+     *            the number of the kind of tower on the buyTowers menu
+     */
+    private void addTower(Tower newTower, int type) {
+
+        this.towers.add(newTower);
+        this.occupied.occupy(newTower.getPosition());
+        this.reloads.add(newTower.getLoadTime());
+        if (this.recorder != null) {
+            this.recorder.purchase(this.ticks, type, newTower.getPosition());
+        }
+        this.events.towerPlaced(this.timeStep, this.towers.size() - 1, newTower.getPosition(), newTower.getCost());
+        this.events.drain();
+    }
+
+    /**
+     * Checks whether a tower may be placed at the given position.
+     *
+     * @param pos
+     *            the position wanted for a tower
+     * @return true if the position is on the corridor and has no tower
+     */
+    private boolean isFree(int pos) {
+        return this.occupied.isFree(pos);
+    }
+
+    /**
+     * Finds the first position at or after the given one where a tower can be
+     * placed.
+     *
+     * @param from
+     *            the position to start looking at
+     * @return the free position, or -1 if there is none before the end of the
+     *         corridor
+     */
+    public int nextFreePosition(int from) {
+        return this.occupied.nextFree(from);
+    }
+
+    /**
+     * Returns the coins a player starts with on a corridor of the given
+     * length.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @return the starting purse
+     */
+    public static int startingPurse(int corridorLength) {
+        return Math.max(PURSESTART - corridorLength, MINPURSE);
+    }
+
+    /**
+     * Returns the cost of a kind of tower.
+     *
+     * @param type
+     *            the number of the tower on the buyTowers menu
+     * @return its cost in coins
+     */
+    public static int costOf(int type) {
+        return UnitRegistry.tower(type).getCost();
+    }
+
+    /**
+     * Finds which kind of tower a tower is, as numbered on the buyTowers menu.
+     *
+     * @param tower
+     *            the tower
+     * @return the number of its kind, e.g. CANNON
+     */
+    static int typeOf(Tower tower) {
+        return tower.getType().getId();
+    }
+
+    /**
+     * Writes out the buy menu, with an option for each kind of tower in the
+     * unit file followed by the option to continue.
+     *
+     * @return the options, one per line
+     */
+    private static String[] menu() {
+
+        String[] options = new String[CONTINUE];
+        for (int type = FIRST_TOWER; type < CONTINUE; type++) {
+            options[type - 1] = "Enter " + type + " to buy a " + UnitRegistry.describeTower(type);
+        }
+        options[CONTINUE - 1] = "Enter " + CONTINUE + " to continue.";
+        return options;
+    }
+
+    /**
+     * Writes a keyframe to the replay file, if the game is being recorded and
+     * one is due.
+     */
+    private void recordKeyframe() {
+
+        if (this.recorder != null && this.ticks % this.recorder.getKeyframeInterval() == 0) {
+            this.recorder.keyframe(this);
+        }
+    }
+
+    /**
+     * Returns the number of bytes saveState writes for the game as it is now.
+     *
+     * @return the size of the saved state
+     */
+    int stateSize() {
+        final int header = 4 * Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+        final int perTower = 1 + 2 * Integer.BYTES;
+        int spawnState = this.spawns == null ? 0 : this.spawns.stateSize();
+        return header + spawnState + perTower * this.towers.size() + this.enemies.stateSize();
+    }
+
+    /**
+     * Writes everything about the game that changes as it is played - the
+     * timestep, purse, kills, random number generator, next spawns, towers and
+     * enemies - to the buffer. The corridor, seed, targeting, difficulty curve
+     * and purchase script are not included; a replay keeps them in its header.
+     *
+     * @param out
+     *            the buffer to write to, with at least stateSize() bytes free
+     */
+    void saveState(ByteBuffer out) {
+
+        out.putInt(this.timeStep);
+        out.putInt(this.ticks);
+        out.putInt(this.purse);
+        out.putInt(this.kills);
+        out.putLong(this.random.getState());
+
+        if (this.spawns == null) {
+            out.putInt(0);
+        } else {
+            out.putInt(this.spawns.getLanes());
+            this.spawns.saveState(out);
+        }
+
+        out.putInt(this.towers.size());
+        for (Tower tower : this.towers) {
+            out.put((byte) typeOf(tower));
+            out.putInt(tower.getPosition());
+            out.putInt(tower.getLoadTime());
+        }
+        this.enemies.saveState(out);
+    }
+
+    /**
+     * Puts the game back into a state written by saveState, and skips any
+     * scripted purchases that would already have been made by then.
+     *
+     * @param in
+     *            the buffer to read from
+     */
+    void loadState(ByteBuffer in) {
+
+        if (this.spectators != null) {
+            this.spectators.restart();
+        }
+
+        this.over = false;
+        this.timeStep = in.getInt();
+        this.ticks = in.getInt();
+        this.purse = in.getInt();
+        this.kills = in.getInt();
+        this.random.setState(in.getLong());
+
+        int lanes = in.getInt();
+        if (lanes == 0) {
+            this.spawns = null;
+        } else {
+            if (this.spawns == null || this.spawns.getLanes() != lanes) {
+                this.spawns = new SpawnScheduler(lanes);
+            }
+            this.spawns.loadState(in);
+        }
+
+        for (Tower tower : this.towers) {
+            this.occupied.free(tower.getPosition());
+        }
+
+        // reuse the towers already here where they are of the right kind, so
+        // going back to an earlier state of the same game allocates nothing
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            int type = in.get();
+            int pos = in.getInt();
+            int loadTime = in.getInt();
+            this.occupied.occupy(pos);
+
+            if (i < this.towers.size() && typeOf(this.towers.get(i)) == type) {
+                this.towers.get(i).setPosition(pos);
+            } else if (i < this.towers.size()) {
+                this.towers.set(i, createTower(type, pos));
+            } else {
+                this.towers.add(createTower(type, pos));
+            }
+            this.towers.get(i).setLoadTime(loadTime);
+        }
+        while (this.towers.size() > count) {
+            this.towers.remove(this.towers.size() - 1);
+        }
+
+        // the next timestep to fire is the one about to be played
+        this.reloads.reset(this.timeStep - 1);
+        for (Tower tower : this.towers) {
+            this.reloads.add(tower.getLoadTime());
+        }
+        this.enemies.loadState(in);
+
+        this.nextOrder = 0;
+        while (this.nextOrder < this.orders.size() && this.orders.get(this.nextOrder).getTick() <= this.ticks) {
+            this.nextOrder++;
+        }
     }
 
     /**
-     * The difficulty increase threshold - after this number of timesteps, the
-     * inverse spawn rate will be decreased.
+     * Saves the state of the game into a new snapshot.
+     *
+     * @return the snapshot
      */
-    private static final int DIFFICULTY_INCREASE_THRESHOLD = 10;
+    public GameSnapshot snapshot() {
+        GameSnapshot snap = new GameSnapshot();
+        this.snapshot(snap);
+        return snap;
+    }
 
     /**
-     * The initial inverse enemy spawn rate - the higher the number, the less
-     * likely an enemy is to be spawned.
+     * Saves the state of the game into an existing snapshot, overwriting what
+     * it held. Reusing snapshots this way allocates nothing once a snapshot is
+     * big enough for the game.
+     *
+     * @param snap
+     *            the snapshot to save into
      */
-    private static final int INITIAL_INVERSE_SPAWNING_RATE = 20;
+    public void snapshot(GameSnapshot snap) {
+        ByteBuffer data = snap.reset(this.stateSize());
+        this.saveState(data);
+        data.flip();
+        snap.setTicks(this.ticks);
+    }
 
     /**
-     * Contains all the enemies that are currently alive.
+     * Puts the game back into the state saved in a snapshot. The game must
+     * have the same corridor as the one the snapshot was taken from. Enemies
+     * and towers are restored in place, so going back to an earlier point of
+     * the same game allocates nothing. The snapshot is unchanged and can be
+     * restored again.
+     *
+     * @param snap
+     *            the snapshot to restore
      */
-    private static ArrayList<Enemy> enemies = new ArrayList<Enemy>();
+    public void restore(GameSnapshot snap) {
+        this.loadState(snap.read());
+    }
 
     /**
-     * Contains all the towers.
+     * Sets the purchases a headless game will make, without making any.
+     *
+     * @param script
+     *            the purchases
      */
-    private static ArrayList<Tower> towers = new ArrayList<Tower>();
+    void setScript(List<Purchase> script) {
+        this.orders = new ArrayList<Purchase>(script);
+        this.orders.sort(Purchase.BY_TICK);
+        this.nextOrder = 0;
+    }
 
     /**
-     * The default corridor length, used if no arguments are passed.
+     * Records the game to a replay file from now on. The recorder must have
+     * been created for a game that targets and spawns as this one does, and
+     * neither can change while it records.
+     *
+     * @param replay
+     *            the recorder to write to
+     * @throws IllegalArgumentException
+     *             if the recorder was created for other targeting or another
+     *             difficulty curve
      */
-    private static final int DEFAULTCORRIDOR = 15;
+    public void setRecorder(ReplayRecorder replay) {
 
-    /**
-     * The maximum corridor length. This is set to 60, so that when the purse
-     * starting value is calculated the game remains playable. If the corridor
-     * was longer than 60, the purse start value would be less than 10, which is
-     * not enough to buy any towers.
-     */
-    private static final int MAXCORRIDOR = 60;
+        if (replay != null && replay.getTargeting() != this.targeting) {
+            throw new IllegalArgumentException("The recorder was created for other targeting than the game's");
+        }
+        if (replay != null && !replay.getDifficulty().equals(this.difficulty)) {
+            throw new IllegalArgumentException("The recorder was created for another difficulty curve than the game's");
+        }
+        this.recorder = replay;
+    }
 
     /**
-     * The purse start value. The length of the corridor is subtracted from
-     * this, so that if you have a shorter corridor you get a bit more money.
+     * Changes how many timesteps a tower takes to reload, e.g. when it is
+     * upgraded or slowed. It next fires at the next timestep that is a
+     * multiple of the new load time.
+     *
+     * @param tower
+     *            the index of the tower, in the order towers were bought
+     * @param loadTime
+     *            the new load time, at least 1
      */
-    private static final int PURSESTART = 70;
+    public void setLoadTime(int tower, int loadTime) {
+        this.towers.get(tower).setLoadTime(loadTime);
+        this.reloads.setLoadTime(tower, loadTime);
+    }
 
     /**
-     * Stores the height of the map when we create a new map. This is used when
-     * generating start positions of the enemies.
+     * Draws the game with the given renderer while it is played headless. The
+     * renderer must already be started.
+     *
+     * @param watcher
+     *            the renderer to publish frames to
      */
-    private int mapHeight;
+    void setRenderer(Renderer watcher) {
+        this.renderer = watcher;
+    }
 
     /**
-     * Holds the player's coins.
+     * Sends the game to the given server's spectators after every timestep
+     * while it is played headless. The server must already be started.
+     *
+     * @param server
+     *            the server to publish to, or null to stop
      */
-    private int purse;
+    public void setSpectators(SpectatorServer server) {
+        this.spectators = server;
+    }
 
     /**
-     * Holds the length of the corridor if it has been specified by the user.
+     * Sets where the player who submits purchases is told how each went, e.g.
+     * System.out for a player at the console. Nobody is told unless this is
+     * set.
+     *
+     * @param out
+     *            the stream to tell them on, or null to tell nobody
      */
-    private int corridorLength;
+    public void setReplies(PrintStream out) {
+        this.replies = out;
+    }
 
     /**
-     * Tracks the current timeStep - this is used to determine if each tower is
-     * ready to fire.
+     * Takes a picture of the game as it is now.
+     *
+     * @return a frame showing where every enemy and tower is
      */
-    private int timeStep = 1;
+    public Frame toFrame() {
+        return Frame.of(this.timeStep, this.enemies, this.towers);
+    }
 
     /**
-     * The main method does these things:
-     *
-     * Sets up and prints the map. Initialises the purse - this relates to the
-     * corridor length, so that if you have a shorter corridor you get a bit
-     * more money. Otherwise it's too hard with a very short corridor. Opens a
-     * scanner to get user input and prompts for tower choices. Sets towers.
-     * Randomly generates enemies. If by chance no enemies were generated, sets
-     * some.
-     *
-     * Now the game is set up, and so it simply loops through advancing the game
-     * state, giving the option to buy towers, updating the map, and
-     * incrementing the time step until the game is over.
+     * Creates a tower of the kind chosen from the buyTowers menu.
      *
-     * @param args
-     *            takes one argument when run, an int which determines the
-     *            length of the game corridor. It's optional.
+     * @param choice
+     *            the number of the tower on the menu, e.g. CANNON
+     * @param pos
+     *            the position of the tower
+     * @return the new tower, or null if the choice is not a kind of tower
      */
-    public static void main(String[] args) {
-
-        Game newGame;
+    static Tower createTower(int choice, int pos) {
 
-        if (args.length == 1 && Integer.parseInt(args[0]) <= MAXCORRIDOR) {
-            newGame = new Game(Integer.parseInt(args[0]));
-        } else {
-            newGame = new Game(DEFAULTCORRIDOR);
-        }
-
-        Map newMap = new Map(newGame.corridorLength);
-        newGame.mapHeight = newMap.getMapHeight();
-        newMap.print(enemies, towers);
-        newGame.purse = PURSESTART - newGame.corridorLength;
-        Scanner scanner = new Scanner(System.in);
-
-        System.out.println("Welcome to ANIMAL ADVANCE!");
-        newGame.buyTowers(newMap, scanner);
+        TowerType type = UnitRegistry.tower(choice);
+        return type == null ? null : new Tower(type, pos);
+    }
 
-        newGame.generateEnemies(enemies);
+    /**
+     * If there are not many enemies randomly generated to start with, adds
+     * some so that the game doesn't end really soon.
+     */
+    private void seedEnemies() {
 
-        // if there are not many enemies randomly generated to start with, add
-        // some
-        // so that the game doesn't end really soon
-        if (enemies.size() <= 2) {
+        if (this.enemies.size() <= 2) {
 
             // setting the enemies' line positions
             final int l2 = 2;
             final int l3 = 3;
             final int l4 = 4;
 
-            Rat newRat = new Rat();
-            newRat.setLine(l2);
-            enemies.add(newRat);
+            this.enemies.spawn(EnemyStore.RAT, l2);
+            this.events.spawn(this.timeStep, EnemyStore.RAT, l2);
 
-            Elephant newElephant = new Elephant();
-            newElephant.setLine(l3);
-            enemies.add(newElephant);
+            this.enemies.spawn(EnemyStore.ELEPHANT, l3);
+            this.events.spawn(this.timeStep, EnemyStore.ELEPHANT, l3);
 
-            Camel newCamel = new Camel();
-            newCamel.setLine(l4);
-            enemies.add(newCamel);
-        }
+            this.enemies.spawn(EnemyStore.CAMEL, l4);
+            this.events.spawn(this.timeStep, EnemyStore.CAMEL, l4);
+            this.events.drain();
 
-        newMap.print(enemies, towers);
+            final int seeded = 3;
+            this.spawnsUnreported += seeded;
+        }
+    }
 
-        while (newGame.endGame() == 0) {
+    /**
+     * Advances the game state by checking which towers may fire and firing
+     * them, updating the enemies based on the shots fired, and generating new
+     * enemies. If the game has metrics, one timestep in their timeEvery has
+     * each of the three timed, and then reports what the game has counted
+     * since the last. If a flight recording has turned on TickEvent or
+     * PhaseEvent, every timestep is recorded.
+     */
+    public void advance() {
 
-            newGame.advance();
+        this.ticks = this.timeStep;
+        this.ticksUnreported++;
 
-            newGame.buyTowers(newMap, scanner);
+        TickMetrics metrics = this.metrics;
+        this.timing = metrics != null && --this.untilTimed <= 0;
 
-            newMap.print(enemies, towers);
-            newGame.incrementTimeStep();
+        // asks the event types rather than making an event, so a timestep
+        // that is neither timed nor recorded allocates nothing
+        boolean recording = TickEvent.TYPE.isEnabled() || PhaseEvent.TYPE.isEnabled();
 
+        if (!this.timing && !recording) {
+            this.fire();
+            this.updateEnemies();
+            this.generateEnemies(this.enemies);
+            return;
         }
-        scanner.close();
+        this.advanceTimed(metrics, recording);
     }
 
     /**
-     * Advances the game state by checking which towers may fire and firing
-     * them, updating the enemies based on the shots fired, and generating new
-     * enemies.
+     * Advances the game as advance does, timing each phase for the metrics if
+     * they are timing this timestep, and recording it for the flight recorder
+     * if it is on. The events are only made if it is, so a timestep that is
+     * timed but not recorded allocates nothing either.
+     *
+     * @param metrics
+     *            the game's metrics, or null if it has none
+     * @param recording
+     *            true if a flight recording has TickEvent or PhaseEvent on
      */
-    public void advance() {
+    private void advanceTimed(TickMetrics metrics, boolean recording) {
+
+        int shots = this.shotsUnreported;
+        int hits = this.hitsUnreported;
+        int killed = this.killsUnreported;
+        int spawned = this.spawnsUnreported;
+
+        TickEvent event = null;
+        if (recording) {
+            event = new TickEvent();
+            event.begin();
+        }
 
+        PhaseEvent phase = this.beginPhase(recording, "fire");
+        long start = System.nanoTime();
         this.fire();
+        long fired = System.nanoTime();
+        endPhase(phase);
+
+        phase = this.beginPhase(recording, "updateEnemies");
         this.updateEnemies();
-        this.generateEnemies(enemies);
+        long updated = System.nanoTime();
+        endPhase(phase);
+
+        phase = this.beginPhase(recording, "generateEnemies");
+        this.generateEnemies(this.enemies);
+        long generated = System.nanoTime();
+        endPhase(phase);
+
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.timeStep = this.timeStep;
+                event.seed = this.seed;
+                event.enemies = this.enemies.size();
+                event.towers = this.towers.size();
+                event.shots = this.shotsUnreported - shots;
+                event.hits = this.hitsUnreported - hits;
+                event.kills = this.killsUnreported - killed;
+                event.spawns = this.spawnsUnreported - spawned;
+                event.commit();
+            }
+        }
+
+        if (this.timing) {
+            this.untilTimed = metrics.getTimeEvery();
+            metrics.record(TickMetrics.FIRE, fired - start);
+            metrics.record(TickMetrics.UPDATE, updated - fired);
+            metrics.record(TickMetrics.SPAWN, generated - updated);
+            this.report(metrics);
+        }
+    }
+
+    /**
+     * Starts the flight recorder event for a phase of this timestep, if a
+     * recording is on.
+     *
+     * @param recording
+     *            true if a flight recording has TickEvent or PhaseEvent on
+     * @param name
+     *            the name of the phase, e.g. "fire"
+     * @return the event, begun, or null if nothing is recording
+     */
+    private PhaseEvent beginPhase(boolean recording, String name) {
+
+        if (!recording) {
+            return null;
+        }
+        PhaseEvent phase = new PhaseEvent(name, this.timeStep);
+        phase.begin();
+        return phase;
+    }
+
+    /**
+     * Ends and commits a phase's flight recorder event, if there is one.
+     *
+     * @param phase
+     *            the event from beginPhase, or null
+     */
+    private static void endPhase(PhaseEvent phase) {
+
+        if (phase != null) {
+            phase.commit();
+        }
     }
 
     /**
@@ -205,49 +1347,27 @@ public class Game {
 
             System.out.println("PURSE: " + this.purse);
 
-            System.out.println("Enter 1 to buy a Slingshot: DMG: 1 DELAY: 1 COST: 10");
-            System.out.println("Enter 2 to buy a Catapult:  DMG: 5 DELAY: 3 COST: 20");
-            System.out.println("Enter 3 to buy a Cannon:    DMG: 10 DELAY: 5 COST: 30");
-            System.out.println("Enter 4 to continue.");
-
-            // User input options (avoiding the dreaded magic number!)
-            final int slingshotOption = 1;
-            final int catapultOption = 2;
-            final int cannonOption = 3;
-            final int continueOption = 4;
+            for (String option : MENU) {
+                System.out.println(option);
+            }
 
             int choice = this.getNumber(scanner);
 
-            if (choice == continueOption) {
+            if (choice == CONTINUE) {
                 break;
 
-            } else if (choice < slingshotOption || choice > continueOption) {
+            } else if (choice < FIRST_TOWER || choice > CONTINUE) {
                 System.out.println("Sorry, that's not an option.");
 
             } else {
 
-                Tower newTower = null;
-
                 // we pos to create a new tower, but it is a placeholder that
                 // will be updated shortly. We must create the tower object now,
                 // so we can access its cost to make sure the user can afford it
                 // before saving it to the array.
                 int pos = 0;
 
-                switch (choice) {
-
-                    case slingshotOption:
-                        newTower = new Slingshot(pos);
-                        break;
-                    case catapultOption:
-                        newTower = new Catapult(pos);
-                        break;
-                    case cannonOption:
-                        newTower = new Cannon(pos);
-                        break;
-                    default:
-                        break;
-                }
+                Tower newTower = createTower(choice, pos);
 
                 if (newTower.getCost() > this.purse) {
                     System.out.println("You don't have enough money for that. Choose another option.");
@@ -259,15 +1379,15 @@ public class Game {
 
                     pos = this.getNumber(scanner);
 
-                    while (!newMap.checkIfFree(pos)) {
+                    while (!this.isFree(pos)) {
                         System.out.println("You cannot place two towers in the same location.");
                         System.out.println("Choose tower position from 0 to " + (this.corridorLength - 1));
                         pos = this.getNumber(scanner);
                     }
 
                     newTower.setPosition(pos);
-                    towers.add(newTower);
-                    newMap.print(enemies, towers);
+                    this.addTower(newTower, choice);
+                    newMap.print(this.enemies.views(), this.towers);
                 }
             }
         }
@@ -279,20 +1399,44 @@ public class Game {
      * of the corridor, the game is lost, or if they have all been killed, the
      * game is won. 0 is returned if the game is still in play.
      *
+     * The enemies are sorted by position, so only the first can have reached
+     * the end of the corridor. The first call to find the game over announces
+     * it: the breach event and the pithy statement, and if the game has
+     * metrics, its report to them, counting a loss as a breach. Later calls
+     * only return the outcome. If the game has metrics, the check is timed
+     * after each timestep they time.
+     *
      * @return an int, either -1, 1 or 0
      */
     public int endGame() {
 
-        for (Enemy enemy : enemies) {
-            if (enemy.getPosition() >= this.corridorLength) {
-                System.out.println(
-                        "The animals have breached your defences. Fortunately, they're friendly and have brought cake.");
-                return -1; // lost
-            }
+        TickMetrics metrics = this.metrics;
+        long start = this.timing && metrics != null ? System.nanoTime() : 0;
+
+        int outcome = this.outcome();
+        if (outcome != 0 && !this.over) {
+            this.over = true;
+            this.announce(outcome);
+        }
+
+        if (this.timing && metrics != null) {
+            metrics.record(TickMetrics.END, System.nanoTime() - start);
+        }
+        return outcome;
+    }
+
+    /**
+     * Works out whether the game has been won or lost, for endGame, without
+     * changing anything.
+     *
+     * @return -1 if lost, 1 if won, or 0 if still in play
+     */
+    private int outcome() {
+
+        if (this.enemies.size() > 0 && this.enemies.getPosition(0) >= this.corridorLength) {
+            return -1; // lost
         }
-        if (enemies.size() == 0) {
-            System.out.println(
-                    "You have killed all the animals. Gazing out over the battlefield, you wonder what the point of it all was.");
+        if (this.enemies.size() == 0) {
             return 1; // won
         } else {
             return 0; // still playing
@@ -300,88 +1444,169 @@ public class Game {
     }
 
     /**
-     * Loops through the towers and checks if each is ready to fire. If so,
-     * finds an enemy within range and fires on it. Updates the enemy's health
-     * accordingly.
+     * Announces that the game is over, once: publishes the breach if it was
+     * lost, prints a pithy statement if there is a console, and hands the
+     * metrics, if any, the game's last counts.
+     *
+     * @param outcome
+     *            -1 if lost or 1 if won
+     */
+    private void announce(int outcome) {
+
+        if (outcome < 0) {
+
+            this.events.breach(this.timeStep, this.enemies.getType(0), this.enemies.getLine(0),
+                    this.enemies.getPosition(0));
+            this.events.drain();
+
+            if (!this.headless) {
+                System.out.println("The animals have breached your defences. "
+                        + "Fortunately, they're friendly and have brought cake.");
+            }
+        } else if (!this.headless) {
+            System.out.println("You have killed all the animals. "
+                    + "Gazing out over the battlefield, you wonder what the point of it all was.");
+        }
+
+        TickMetrics metrics = this.metrics;
+        if (metrics != null) {
+            if (outcome < 0) {
+                metrics.breached();
+            }
+            this.report(metrics);
+        }
+    }
+
+    /**
+     * Fires the towers that are ready this timestep, which the reload wheel
+     * hands over in the order they were bought. Each finds an enemy within
+     * range and fires on it. The damage is added up for each enemy, and taken
+     * off its health when updateEnemies moves it; until then, its health as
+     * read back already has the damage taken off. A tower with no enemy in
+     * range holds its fire.
+     *
+     * The enemies are kept sorted by position, so the ones in range of a tower
+     * are found by binary search and the targeting policy picks one of them.
+     * If a pool has been set with setFirePool and enough towers fire, the work
+     * is shared over the pool, with the same outcome.
      */
     public void fire() {
 
-        for (Tower tower : towers) {
+        this.index.reset(this.enemies);
 
-            if (tower.willFire(this.getTimeStep())) {
+        // only the towers that have reloaded are visited
+        int firing = this.reloads.collect(this.timeStep);
 
-                while (true) {
+        if (this.parallelFire != null && firing >= ParallelFire.THRESHOLD && !this.targeting.readsHealth()) {
+            this.shotsUnreported += firing;
+            this.hitsUnreported += this.fireInParallel(firing);
+            this.events.drain();
+            return;
+        }
 
-                    Enemy randomEnemy = enemies.get(new Random().nextInt(enemies.size()));
+        int hits = 0;
+        for (int f = 0; f < firing; f++) {
 
-                    if (randomEnemy.getPosition() < tower.getPosition()) {
+            int t = this.reloads.getFiring(f);
+            Tower tower = this.towers.get(t);
 
-                        randomEnemy.hit(tower);
-                        System.out.println(tower.name() + " hit " + randomEnemy.name() + " with " + tower.getDamage()
-                                + " damage.");
+            int from = this.index.inRangeFrom(tower.getPosition());
 
-                        break;
-                    }
-                }
+            if (from < this.index.size()) {
+
+                int target = this.targeting.choose(this.index, from, this.random);
+
+                this.enemies.hit(target, tower.getDamage());
+                this.index.update(target);
+                hits++;
+
+                this.events.hit(this.timeStep, t, tower.getPosition(), this.enemies.getType(target),
+                        tower.getDamage());
             }
         }
+        this.shotsUnreported += firing;
+        this.hitsUnreported += hits;
+        this.events.drain();
     }
 
     /**
-     * Randomly generates and instantiates enemies and adds them to the enemies
-     * array list.
+     * Fires the towers collected from the reload wheel with the work shared
+     * over the fire pool. The towers look for the enemies in range all at
+     * once, then pick their targets in firing order, drawing random numbers
+     * just as fire does, and then the damage is done a stripe of enemies per
+     * thread. The targeting policy must not read health, so the targets are
+     * the same as if the towers had fired one at a time.
      *
-     * @param enemies
-     *            takes the array list of existing enemies
-     * @return the array list updated with new enemies
+     * @param firing
+     *            the number of towers firing
+     * @return the number of them that hit an enemy
      */
-    public ArrayList<Enemy> generateEnemies(ArrayList<Enemy> enemies) {
+    private int fireInParallel(int firing) {
 
-        // the higher the enemyGenOutOf number, the lower the chance that
-        // an enemy will be randomly generated.
-        int inverseSpawnRate = INITIAL_INVERSE_SPAWNING_RATE;
+        ParallelFire shots = this.parallelFire;
+        shots.clear(firing);
+        for (int f = 0; f < firing; f++) {
+            shots.load(f, this.towers.get(this.reloads.getFiring(f)));
+        }
+
+        shots.findInRange(this.index);
+
+        int hits = 0;
+        for (int f = 0; f < firing; f++) {
+
+            int from = shots.getFrom(f);
 
-        // the number of possible random numbers that could result in an enemy
-        // being generated.
-        final int enemyNum = 4;
+            if (from < this.index.size()) {
 
-        // so as the game continues, the likelihood that enemies are generated
-        // becomes higher.
-        if (this.timeStep % DIFFICULTY_INCREASE_THRESHOLD == 0 && inverseSpawnRate > enemyNum) {
-            inverseSpawnRate--;
+                int target = this.targeting.choose(this.index, from, this.random);
+                shots.setTarget(f, target);
+                hits++;
+
+                if (this.events.isActive()) {
+                    int t = this.reloads.getFiring(f);
+                    Tower tower = this.towers.get(t);
+                    this.events.hit(this.timeStep, t, tower.getPosition(), this.enemies.getType(target),
+                            tower.getDamage());
+                }
+            } else {
+                shots.setTarget(f, -1);
+            }
         }
 
-        for (int i = 2; i < this.mapHeight; i++) {
+        shots.hit(this.enemies);
+        return hits;
+    }
 
-            // for each line position, we get a random number from 0 -
-            // enemyGen-1.
-            Random rn = new Random();
-            int r = (rn.nextInt(inverseSpawnRate) + 1);
+    /**
+     * Randomly generates enemies and adds them to the enemy store: one on each
+     * lane whose next spawn has come round, of a kind drawn by spawn weight.
+     * The first time it is called every lane's first spawn is drawn.
+     *
+     * @param enemies
+     *            takes the store of existing enemies
+     * @return the store updated with new enemies
+     */
+    public EnemyStore generateEnemies(EnemyStore enemies) {
 
-            // if that number is between 1 and 4, an enemy will be generated.
-            if (r > 0 && r <= enemyNum) {
+        if (this.spawns == null) {
+            this.spawns = new SpawnScheduler(this.mapHeight - Map.FIRST_LINE);
+            this.spawns.start(this.timeStep, this.difficulty, this.random);
+        }
 
-                Enemy newEnemy = null;
+        int due = this.spawns.collect(this.timeStep);
+        for (int d = 0; d < due; d++) {
 
-                // if the random number is 4, an Elephant is generated. 3, a
-                // Camel. 2 or 1, a rat. I had the numbers hardcoded before
-                // which seems simpler, but checkstyle was upset about it.
-                switch (r) {
+            int lane = this.spawns.getDue(d);
+            byte newEnemy = SpawnScheduler.nextKind(this.random);
+            int l = lane + Map.FIRST_LINE;
 
-                    case enemyNum:
-                        newEnemy = new Elephant();
-                        break;
-                    case enemyNum - 1:
-                        newEnemy = new Camel();
-                        break;
-                    default:
-                        newEnemy = new Rat();
-                }
+            enemies.spawn(newEnemy, l);
+            this.events.spawn(this.timeStep, newEnemy, l);
 
-                newEnemy.setLine(i);
-                enemies.add(newEnemy);
-            }
+            this.spawns.schedule(lane, this.timeStep + 1, this.difficulty, this.random);
         }
+        this.spawnsUnreported += due;
+        this.events.drain();
         return enemies;
     }
 
@@ -402,6 +1627,218 @@ public class Game {
         return s.nextInt();
     }
 
+    /**
+     * Returns the coins in the purse.
+     *
+     * @return the purse
+     */
+    public int getPurse() {
+        return this.purse;
+    }
+
+    /**
+     * Sets the coins in the purse. Used to build test positions that a real
+     * game could not afford.
+     *
+     * @param coins
+     *            the new purse
+     */
+    void setPurse(int coins) {
+        this.purse = coins;
+    }
+
+    /**
+     * Returns the store holding the enemies that are alive.
+     *
+     * @return the enemy store
+     */
+    EnemyStore getEnemyStore() {
+        return this.enemies;
+    }
+
+    /**
+     * Returns the number of timesteps played so far.
+     *
+     * @return the last timestep the game advanced at, or 0
+     */
+    public int getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * Returns the number of enemies killed so far.
+     *
+     * @return the kills
+     */
+    public int getKills() {
+        return this.kills;
+    }
+
+    /**
+     * Returns the length of the corridor.
+     *
+     * @return the number of positions along the corridor
+     */
+    public int getCorridorLength() {
+        return this.corridorLength;
+    }
+
+    /**
+     * Returns the number of lanes enemies walk along.
+     *
+     * @return the number of lanes
+     */
+    public int getLanes() {
+        return this.mapHeight - Map.FIRST_LINE;
+    }
+
+    /**
+     * Returns the seed the game's random number generator was created with.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Returns the bus that carries the game's events, for subscribing
+     * listeners to.
+     *
+     * @return the event bus
+     */
+    public EventBus getEvents() {
+        return this.events;
+    }
+
+    /**
+     * Sets how likely enemies are to spawn as the game goes on. The next spawn
+     * already drawn for each lane stands; later ones follow the new curve. It
+     * cannot change while the game is recorded, as the replay plays back the
+     * curve it was created with.
+     *
+     * @param difficulty
+     *            the difficulty curve
+     * @throws IllegalStateException
+     *             if the game is being recorded with another curve
+     */
+    public void setDifficulty(DifficultyCurve difficulty) {
+
+        if (this.recorder != null && !this.recorder.getDifficulty().equals(difficulty)) {
+            throw new IllegalStateException("Cannot change the difficulty of a game being recorded");
+        }
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * Returns how likely enemies are to spawn as the game goes on.
+     *
+     * @return the difficulty curve
+     */
+    public DifficultyCurve getDifficulty() {
+        return this.difficulty;
+    }
+
+    /**
+     * Sets how towers choose which enemy in range to fire at. It cannot change
+     * while the game is recorded, as the replay plays back the targeting it
+     * was created with.
+     *
+     * @param targeting
+     *            the targeting policy
+     * @throws IllegalStateException
+     *             if the game is being recorded with other targeting
+     */
+    public void setTargeting(TargetingPolicy targeting) {
+
+        if (this.recorder != null && this.recorder.getTargeting() != targeting) {
+            throw new IllegalStateException("Cannot change the targeting of a game being recorded");
+        }
+        this.targeting = targeting;
+    }
+
+    /**
+     * Sets a pool to share out the firing of towers over, for games with
+     * thousands of towers. It is only used in timesteps where at least
+     * ParallelFire.THRESHOLD towers fire and the targeting policy does not
+     * read health, and the game plays out exactly as it would without it.
+     * Games that are themselves being played in parallel, e.g. by MonteCarlo,
+     * are better left without one.
+     *
+     * @param pool
+     *            the pool, or null to fire every tower on the game's own thread
+     */
+    public void setFirePool(ForkJoinPool pool) {
+        this.parallelFire = pool == null ? null : new ParallelFire(pool);
+    }
+
+    /**
+     * Sets the metrics to time the game's phases with and count its shots,
+     * hits, kills, spawns and breaches in, from the next timestep on. Games
+     * played on the same thread may share them. The game's
+     * enemies and towers are counted in the metrics' live counts until they
+     * are swapped for others or null, when the game reports what it has
+     * counted so far.
+     *
+     * @param metrics
+     *            the metrics, or null to stop keeping track
+     */
+    public void setMetrics(TickMetrics metrics) {
+
+        if (this.metrics != null) {
+            this.report(this.metrics);
+            this.metrics.report(0, 0, 0, 0, 0, -this.enemiesReported, -this.towersReported);
+            this.enemiesReported = 0;
+            this.towersReported = 0;
+        }
+
+        // what happened before the metrics were set is not theirs to count
+        this.ticksUnreported = 0;
+        this.shotsUnreported = 0;
+        this.hitsUnreported = 0;
+        this.killsUnreported = 0;
+        this.spawnsUnreported = 0;
+
+        this.metrics = metrics;
+        if (metrics != null) {
+            this.untilTimed = metrics.getTimeEvery();
+            this.report(metrics);
+        }
+    }
+
+    /**
+     * Returns the metrics the game's phases are timed with.
+     *
+     * @return the metrics, or null if nobody is keeping track
+     */
+    public TickMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Hands the metrics what the game has counted since it last reported, and
+     * how many enemies and towers it has now, as a change from what they were
+     * last told.
+     *
+     * @param metrics
+     *            the game's metrics
+     */
+    private void report(TickMetrics metrics) {
+
+        int enemyCount = this.enemies.size();
+        int towerCount = this.towers.size();
+        metrics.report(this.ticksUnreported, this.shotsUnreported, this.hitsUnreported, this.killsUnreported,
+                this.spawnsUnreported, enemyCount - this.enemiesReported, towerCount - this.towersReported);
+
+        this.ticksUnreported = 0;
+        this.shotsUnreported = 0;
+        this.hitsUnreported = 0;
+        this.killsUnreported = 0;
+        this.spawnsUnreported = 0;
+        this.enemiesReported = enemyCount;
+        this.towersReported = towerCount;
+    }
+
     /**
      * The current timestep.
      *
@@ -419,23 +1856,42 @@ public class Game {
     }
 
     /**
-     * loops through the enemies array list, advances each of them and prints
-     * out information on their status for the user. If their health is 0 or
-     * below, they die and the user gets a coin.
+     * advances every enemy and, if there is a console, prints out information
+     * on their status for the user. The damage the towers did this turn is
+     * taken off each enemy's health as it moves; if its health is 0 or below,
+     * it dies and the user gets a coin, and listeners hear of each death.
+     * Finally the survivors are sorted back into position order, as some will
+     * have overtaken others.
      */
     public void updateEnemies() {
 
-        for (int e = enemies.size() - 1; e >= 0; e--) {
-
-            System.out.println(enemies.get(e).name() + " HP: " + enemies.get(e).getHealth());
-            enemies.get(e).advance();
+        if (!this.headless) {
+            for (int e = this.enemies.size() - 1; e >= 0; e--) {
+                System.out.println(this.enemies.getName(e) + " HP: " + this.enemies.getHealth(e));
+            }
+        }
 
-            if (enemies.get(e).getHealth() <= 0) {
-                System.out.print(enemies.get(e).name() + " died.");
-                System.out.println(" You get 1 COIN for killing a sentient being!");
-                this.purse++;
-                enemies.remove(e);
+        // listeners are told each dead enemy's position after this turn's
+        // move, which is where they have always been told it died
+        if (this.events.isActive()) {
+            for (int e = this.enemies.size() - 1; e >= 0; e--) {
+                if (this.enemies.getHealth(e) <= 0) {
+                    this.events.kill(this.timeStep, this.enemies.getType(e), this.enemies.getLine(e),
+                            (int) (this.enemies.getExactPosition(e) + this.enemies.getStep(e)));
+                }
             }
         }
+
+        int dead = this.enemies.update();
+        this.purse += dead;
+        this.kills += dead;
+        this.killsUnreported += dead;
+
+        if (dead > 0) {
+            this.events.coinAwarded(this.timeStep, dead, this.purse);
+        }
+        this.events.drain();
+
+        this.enemies.sort();
     }
 }
@@ -0,0 +1,104 @@
+package towerdefence;
+
+/**
+ * Receives the events of a game from its EventBus. Every event is passed as
+ * plain numbers, so nothing has to be built or formatted to send one. Each
+ * method does nothing unless overridden, so a listener need only override the
+ * events it cares about.
+ *
+ * Towers are identified by their number in the order they were placed, and
+ * enemies by their EnemyStore type number.
+ *
+ * @author 170021928
+ *
+ */
+public interface GameListener {
+
+    /**
+     * An enemy has appeared at the start of the corridor.
+     *
+     * @param tick
+     *            the timestep
+     * @param enemyType
+     *            the type of enemy
+     * @param line
+     *            the line it walks along
+     */
+    default void onSpawn(int tick, byte enemyType, int line) {
+    }
+
+    /**
+     * A tower has hit an enemy.
+     *
+     * @param tick
+     *            the timestep
+     * @param tower
+     *            the number of the tower
+     * @param towerPos
+     *            the position of the tower
+     * @param enemyType
+     *            the type of enemy hit
+     * @param damage
+     *            the damage done
+     */
+    default void onHit(int tick, int tower, int towerPos, byte enemyType, int damage) {
+    }
+
+    /**
+     * An enemy has died.
+     *
+     * @param tick
+     *            the timestep
+     * @param enemyType
+     *            the type of enemy
+     * @param line
+     *            its line
+     * @param position
+     *            its position when it died
+     */
+    default void onKill(int tick, byte enemyType, int line, int position) {
+    }
+
+    /**
+     * An enemy has reached the end of the corridor.
+     *
+     * @param tick
+     *            the timestep
+     * @param enemyType
+     *            the type of enemy
+     * @param line
+     *            its line
+     * @param position
+     *            its position
+     */
+    default void onBreach(int tick, byte enemyType, int line, int position) {
+    }
+
+    /**
+     * A tower has been bought and placed.
+     *
+     * @param tick
+     *            the timestep
+     * @param tower
+     *            the number of the tower
+     * @param position
+     *            its position
+     * @param cost
+     *            what it cost
+     */
+    default void onTowerPlaced(int tick, int tower, int position, int cost) {
+    }
+
+    /**
+     * Coins have been added to the purse.
+     *
+     * @param tick
+     *            the timestep
+     * @param amount
+     *            the number of coins awarded
+     * @param purse
+     *            the coins in the purse afterwards
+     */
+    default void onCoinAwarded(int tick, int amount, int purse) {
+    }
+}
@@ -0,0 +1,133 @@
+package towerdefence;
+
+/**
+ * The game's random number generator. It is the SplitMix64 algorithm that
+ * java.util.SplittableRandom uses, and gives exactly the same numbers from the
+ * same seed, but its whole state is one long that can be read and set. That
+ * lets a saved game carry on with the same random numbers it would have had.
+ *
+ * @author 170021928
+ *
+ */
+public final class GameRandom {
+
+    /**
+     * Constructs a generator from a seed.
+     *
+     * @param seed
+     *            the seed
+     */
+    public GameRandom(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * The amount the state moves on by for each number drawn.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The number of low bits of a random long left out of a random double,
+     * leaving the 53 a double holds exactly.
+     */
+    private static final int DOUBLE_SHIFT = 11;
+
+    /**
+     * The gap between the random doubles: 2 to the power -53.
+     */
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    /**
+     * The state of the generator.
+     */
+    private long state;
+
+    /**
+     * Returns a random int from 0 (inclusive) to bound (exclusive), each as
+     * likely as the others.
+     *
+     * @param bound
+     *            one more than the largest number wanted; must be positive
+     * @return the random number
+     */
+    public int nextInt(int bound) {
+
+        int r = mix32(this.state += GOLDEN_GAMMA);
+        int m = bound - 1;
+
+        if ((bound & m) == 0) {
+            r &= m;
+        } else {
+            // reject the few values that would make some results likelier
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(this.state += GOLDEN_GAMMA) >>> 1) {
+                continue;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Returns a random long.
+     *
+     * @return the random number
+     */
+    public long nextLong() {
+        return mix64(this.state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * Returns a random double from 0 (inclusive) to 1 (exclusive), as
+     * SplittableRandom would.
+     *
+     * @return the random number
+     */
+    public double nextDouble() {
+        return (this.nextLong() >>> DOUBLE_SHIFT) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Returns the state of the generator, to be saved.
+     *
+     * @return the state
+     */
+    public long getState() {
+        return this.state;
+    }
+
+    /**
+     * Sets the state of the generator to one saved earlier.
+     *
+     * @param s
+     *            the state
+     */
+    public void setState(long s) {
+        this.state = s;
+    }
+
+    /**
+     * Scrambles a state into a 64 bit random number.
+     *
+     * @param seed
+     *            the state
+     * @return the random number
+     */
+    private static long mix64(long seed) {
+        long z = seed;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Scrambles a state into a 32 bit random number.
+     *
+     * @param seed
+     *            the state
+     * @return the random number
+     */
+    private static int mix32(long seed) {
+        long z = seed;
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+}
@@ -0,0 +1,414 @@
+package towerdefence;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Hosts many players' games at once, each on its own connection, over a TCP
+ * port on this machine or a Unix domain socket. Run it from the command line
+ * thus:
+ *
+ * java -cp towerDefence.jar towerdefence.GameServer <port or socket path>
+ * [corridor length] [lanes] [seed]
+ *
+ * and connect with e.g. "nc localhost 7070" or "nc -U /tmp/td.sock". Each
+ * connection is given a new game, played a timestep at a time through a
+ * Session using the same menu as the console game.
+ *
+ * All the connections are served by one thread with a Selector, so an idle
+ * player costs no thread at all, only their game, their session and a small
+ * read buffer; many thousands can be connected at once. A timestep of a game
+ * takes microseconds, so a player's turn is played on that thread as soon as
+ * it is asked for.
+ *
+ * The games' seeds follow on from the server's seed, one per connection, so a
+ * run of the server with a given seed deals out the same games in the same
+ * order.
+ *
+ * Every game's turns are timed and counted in one TickMetrics, which the
+ * command line shows over JMX, and over HTTP if the port is set; see
+ * MetricsExporter.
+ *
+ * @author 170021928
+ *
+ */
+public class GameServer extends SelectorServer {
+
+    /**
+     * Constructs a server that takes connections on a channel already bound.
+     *
+     * @param channel
+     *            the channel to accept connections on
+     * @param corridorLength
+     *            the length of the corridor of every game
+     * @param lanes
+     *            the number of lanes of every game
+     * @param seed
+     *            the seed of the first game
+     * @throws IOException
+     *             if the selector cannot be opened
+     */
+    public GameServer(ServerSocketChannel channel, int corridorLength, int lanes, long seed) throws IOException {
+        super(channel);
+        this.corridorLength = corridorLength;
+        this.lanes = lanes;
+        this.nextSeed = seed;
+    }
+
+    /**
+     * The port the server listens on, if no other is given.
+     */
+    public static final int DEFAULT_PORT = 7070;
+
+    /**
+     * The most connections waiting to be accepted.
+     */
+    private static final int BACKLOG = 1024;
+
+    /**
+     * The longest line a player may send, in bytes. Each connection's read
+     * buffer is this size.
+     */
+    private static final int MAX_LINE = 128;
+
+    /**
+     * A connected player: their channel, their session and any bytes read or
+     * still to be written.
+     */
+    private static final class Connection {
+
+        /**
+         * Constructs a connection for a player who has just connected.
+         *
+         * @param channel
+         *            the player's channel
+         * @param session
+         *            the player's session
+         */
+        Connection(SocketChannel channel, Session session) {
+            this.channel = channel;
+            this.session = session;
+        }
+
+        /**
+         * The player's channel.
+         */
+        final SocketChannel channel;
+
+        /**
+         * The player's session.
+         */
+        final Session session;
+
+        /**
+         * The bytes read that do not yet make up a whole line.
+         */
+        final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+
+        /**
+         * The bytes waiting to be written, or null if everything has been.
+         */
+        ByteBuffer out;
+    }
+
+    /**
+     * The length of the corridor of every game.
+     */
+    private final int corridorLength;
+
+    /**
+     * The number of lanes of every game.
+     */
+    private final int lanes;
+
+    /**
+     * The seed of the next game.
+     */
+    private long nextSeed;
+
+    /**
+     * The number of players connected.
+     */
+    private volatile int sessions;
+
+    /**
+     * Times and counts the turns of every game being played. Every turn is
+     * timed, as each waits on its player far longer than it takes.
+     */
+    private final TickMetrics metrics = new TickMetrics(1);
+
+    /**
+     * Opens a server on the given address; see SelectorServer.bind.
+     *
+     * @param address
+     *            the address to listen on
+     * @param corridorLength
+     *            the length of the corridor of every game
+     * @param lanes
+     *            the number of lanes of every game
+     * @param seed
+     *            the seed of the first game
+     * @return the server, ready to run
+     * @throws IOException
+     *             if the address cannot be listened on
+     */
+    public static GameServer open(SocketAddress address, int corridorLength, int lanes, long seed)
+            throws IOException {
+
+        ServerSocketChannel channel = bind(address, BACKLOG);
+        try {
+            return new GameServer(channel, corridorLength, lanes, seed);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of players connected.
+     *
+     * @return the number of sessions
+     */
+    public int getSessions() {
+        return this.sessions;
+    }
+
+    /**
+     * Returns the metrics shared by every game being played, whose live
+     * counts are of the players connected.
+     *
+     * @return the metrics
+     */
+    public TickMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Sends a player what is waiting for them, and reads their commands.
+     */
+    @Override
+    void serve(SelectionKey key) throws IOException {
+
+        Connection connection = (Connection) key.attachment();
+        if (key.isWritable()) {
+            this.flush(key, connection);
+        }
+        if (key.isValid() && key.isReadable()) {
+            this.read(key, connection);
+        }
+    }
+
+    /**
+     * Accepts every player waiting to connect, and greets them.
+     *
+     * @throws IOException
+     *             if the server's channel fails
+     */
+    @Override
+    void accept() throws IOException {
+
+        SocketChannel client;
+
+        while ((client = this.channel.accept()) != null) {
+
+            client.configureBlocking(false);
+
+            Game game = Game.newHeadless(this.corridorLength, this.nextSeed++, this.lanes);
+            game.setMetrics(this.metrics);
+            Connection connection = new Connection(client, new Session(game));
+            SelectionKey key = client.register(this.selector, SelectionKey.OP_READ, connection);
+            this.sessions++;
+
+            try {
+                this.send(key, connection, connection.session.greet());
+            } catch (IOException e) {
+                this.disconnect(key, connection);
+            }
+        }
+    }
+
+    /**
+     * Reads what a player has sent and answers each whole line.
+     *
+     * @param key
+     *            the player's key
+     * @param connection
+     *            the player's connection
+     * @throws IOException
+     *             if the player's channel fails
+     */
+    private void read(SelectionKey key, Connection connection) throws IOException {
+
+        ByteBuffer in = connection.in;
+
+        if (connection.channel.read(in) < 0) {
+            this.disconnect(key, connection);
+            return;
+        }
+
+        in.flip();
+        StringBuilder reply = new StringBuilder();
+        int start = 0;
+
+        for (int i = 0; i < in.limit(); i++) {
+            if (in.get(i) == '\n') {
+                String line = new String(in.array(), start, i - start, StandardCharsets.US_ASCII);
+                reply.append(connection.session.handle(line));
+                start = i + 1;
+            }
+        }
+        in.position(start);
+        in.compact();
+
+        if (!in.hasRemaining()) {
+            reply.append("That line is too long.\n");
+            in.clear();
+        }
+        if (reply.length() > 0) {
+            this.send(key, connection, reply.toString());
+        } else if (connection.session.isOver()) {
+            this.disconnect(key, connection);
+        }
+    }
+
+    /**
+     * Sends text to a player. Whatever cannot be written straight away is kept
+     * and written when the player's channel is ready for it.
+     *
+     * @param key
+     *            the player's key
+     * @param connection
+     *            the player's connection
+     * @param text
+     *            the text to send
+     * @throws IOException
+     *             if the player's channel fails
+     */
+    private void send(SelectionKey key, Connection connection, String text) throws IOException {
+
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+
+        if (connection.out == null) {
+            connection.out = ByteBuffer.wrap(bytes);
+        } else {
+            ByteBuffer both = ByteBuffer.allocate(connection.out.remaining() + bytes.length);
+            both.put(connection.out).put(bytes).flip();
+            connection.out = both;
+        }
+        this.flush(key, connection);
+    }
+
+    /**
+     * Writes as much as the player's channel will take of what is waiting to
+     * be sent. Once everything has been written, a player whose session is
+     * over is disconnected.
+     *
+     * @param key
+     *            the player's key
+     * @param connection
+     *            the player's connection
+     * @throws IOException
+     *             if the player's channel fails
+     */
+    private void flush(SelectionKey key, Connection connection) throws IOException {
+
+        if (connection.out != null) {
+            connection.channel.write(connection.out);
+            if (connection.out.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.out = null;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+
+        if (connection.session.isOver()) {
+            this.disconnect(key, connection);
+        }
+    }
+
+    /**
+     * Closes a player's connection.
+     *
+     * @param key
+     *            the player's key
+     * @param connection
+     *            the player's connection
+     */
+    private void disconnect(SelectionKey key, Connection connection) {
+
+        if (!key.isValid()) {
+            return;
+        }
+        key.cancel();
+        this.sessions--;
+        connection.session.getGame().setMetrics(null);
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+
+    @Override
+    void disconnect(SelectionKey key) {
+        this.disconnect(key, (Connection) key.attachment());
+    }
+
+    @Override
+    void disconnectAll() {
+
+        for (SelectionKey key : this.selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                this.disconnect(key, (Connection) key.attachment());
+            }
+        }
+    }
+
+    /**
+     * Runs a server from the command line.
+     *
+     * @param args
+     *            a port number or a socket path, then optionally the corridor
+     *            length, the number of lanes and the seed
+     * @throws IOException
+     *             if the server cannot listen on the address
+     */
+    public static void main(String[] args) throws IOException {
+
+        SocketAddress address;
+
+        if (args.length < 1) {
+            address = new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+        } else if (args[0].matches("\\d+")) {
+            address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]));
+        } else {
+            address = UnixDomainSocketAddress.of(Path.of(args[0]));
+        }
+
+        int corridorLength = args.length >= 2 ? Integer.parseInt(args[1]) : Game.DEFAULTCORRIDOR;
+        int lanes = args.length >= 3 ? Integer.parseInt(args[2]) : Game.DEFAULT_LANES;
+        long seed = args.length >= 4 ? Long.parseLong(args[3]) : new SplittableRandom().nextLong();
+
+        GameServer server = open(address, corridorLength, lanes, seed);
+        System.out.println("Listening on " + server.getAddress() + " SEED: " + seed);
+
+        try (MetricsExporter exporter = MetricsExporter.export(server.getMetrics(), "server")) {
+            if (exporter.getAddress() != null) {
+                System.out.println("Metrics on http://localhost:" + exporter.getAddress().getPort()
+                        + MetricsExporter.PATH);
+            }
+            server.run();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package towerdefence;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A saved copy of everything about a game that changes as it is played, packed
+ * into a single buffer of bytes. Taking and restoring a snapshot is a straight
+ * copy of a few arrays, so a search can save a game, try some purchases, and
+ * go back to try others many thousands of times a second. See Game.snapshot
+ * and Game.restore.
+ *
+ * @author 170021928
+ *
+ */
+public class GameSnapshot {
+
+    /**
+     * The room given to a new snapshot to begin with. It grows if the game
+     * needs more.
+     */
+    private static final int INITIAL_SIZE = 1024;
+
+    /**
+     * The packed state, from 0 to its limit.
+     */
+    private ByteBuffer data = ByteBuffer.allocate(INITIAL_SIZE);
+
+    /**
+     * The number of timesteps that had been played when the snapshot was
+     * taken.
+     */
+    private int ticks;
+
+    /**
+     * Returns the number of timesteps that had been played when the snapshot
+     * was taken.
+     *
+     * @return the tick of the snapshot
+     */
+    public int getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * Returns the number of bytes the snapshot takes up.
+     *
+     * @return the size of the packed state
+     */
+    public int size() {
+        return this.data.limit();
+    }
+
+    /**
+     * Sets the tick of the snapshot.
+     *
+     * @param t
+     *            the number of timesteps played
+     */
+    void setTicks(int t) {
+        this.ticks = t;
+    }
+
+    /**
+     * Empties the snapshot ready to be written, making sure it has room for
+     * the given number of bytes.
+     *
+     * @param size
+     *            the number of bytes about to be written
+     * @return the buffer to write to
+     */
+    ByteBuffer reset(int size) {
+
+        if (this.data.capacity() < size) {
+            this.data = ByteBuffer.allocate(Math.max(size, 2 * this.data.capacity()));
+        }
+        this.data.clear();
+        return this.data;
+    }
+
+    /**
+     * Returns the buffer rewound to the start, ready to be read.
+     *
+     * @return the buffer to read from
+     */
+    ByteBuffer read() {
+        this.data.rewind();
+        return this.data;
+    }
+}
@@ -0,0 +1,175 @@
+package towerdefence;
+
+import java.util.Arrays;
+
+/**
+ * Counts how long something took, in nanoseconds, in a fixed number of buckets
+ * in the manner of an HdrHistogram: the buckets double in width from one power
+ * of two to the next, and each power of two is split into 32 equal buckets,
+ * so every time is kept to within about 3% however short or long it is. A time
+ * is counted with a shift and an add, never allocates, and the histogram
+ * takes the same few kilobytes whether it has counted ten times or ten
+ * billion.
+ *
+ * Only one thread may record into a histogram, but any thread may read it
+ * while it does, with no locking on either side. A reader sees the counts as
+ * they were at some recent moment, perhaps missing the last few, which is all
+ * a report of a running game needs; TickMetrics makes sure that moment is no
+ * older than the last report it published.
+ *
+ * @author 170021928
+ *
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of bits of a time kept beneath its highest: each power of two
+     * is split into 2 to the power of this buckets.
+     */
+    private static final int SUB_BITS = 5;
+
+    /**
+     * The longest time told apart from longer ones, a little over a minute.
+     * Longer times are counted in the last bucket, though the longest time is
+     * still kept exactly.
+     */
+    private static final long HIGHEST = (1L << 36) - 1;
+
+    /**
+     * The number of times counted in each bucket.
+     */
+    private final long[] counts = new long[index(HIGHEST) + 1];
+
+    /**
+     * The number of times counted.
+     */
+    private long count;
+
+    /**
+     * The sum of the times counted.
+     */
+    private long total;
+
+    /**
+     * The longest time counted.
+     */
+    private long max;
+
+    /**
+     * Counts a time.
+     *
+     * @param nanos
+     *            the time, in nanoseconds; below 0 is taken as 0
+     */
+    public void record(long nanos) {
+
+        long value = Math.max(0, nanos);
+        this.counts[index(Math.min(value, HIGHEST))]++;
+        this.total += value;
+        if (value > this.max) {
+            this.max = value;
+        }
+        this.count++;
+    }
+
+    /**
+     * Returns the number of times counted.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the longest time counted.
+     *
+     * @return the time in nanoseconds, or 0 if none have been counted
+     */
+    public long getMax() {
+        return this.count == 0 ? 0 : this.max;
+    }
+
+    /**
+     * Returns the sum of the times counted.
+     *
+     * @return the sum in nanoseconds
+     */
+    public long getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Returns the mean of the times counted.
+     *
+     * @return the mean in nanoseconds, or 0 if none have been counted
+     */
+    public double getMean() {
+        long n = this.count;
+        return n == 0 ? 0 : (double) this.total / n;
+    }
+
+    /**
+     * Returns the time that the given share of the times counted were no
+     * longer than, to within the width of its bucket.
+     *
+     * @param quantile
+     *            the share, from 0 to 1, e.g. 0.99 for the 99th percentile
+     * @return the longest time in the bucket the quantile falls in, in
+     *         nanoseconds, or 0 if none have been counted
+     */
+    public long getQuantile(double quantile) {
+
+        long[] snapshot = Arrays.copyOf(this.counts, this.counts.length);
+
+        // more may be counted while this runs, so the rank is taken from what
+        // the snapshot holds rather than from the count
+        long held = 0;
+        for (long c : snapshot) {
+            held += c;
+        }
+        if (held == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * held));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // the last bucket has every time too long for the others
+                return i == snapshot.length - 1 ? this.max : Math.min(highestIn(i), this.max);
+            }
+        }
+        return this.max;
+    }
+
+    /**
+     * Returns the bucket a time is counted in. A time below 64 has a bucket to
+     * itself; above that, the bucket is its power of two and the SUB_BITS bits
+     * beneath its highest.
+     *
+     * @param value
+     *            the time, from 0 to HIGHEST
+     * @return the bucket
+     */
+    private static int index(long value) {
+
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the longest time counted in a bucket.
+     *
+     * @param index
+     *            the bucket
+     * @return the time in nanoseconds
+     */
+    private static long highestIn(int index) {
+
+        int shift = Math.max(0, (index >> SUB_BITS) - 1);
+        long lowest = (long) (index - (shift << SUB_BITS)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -1,11 +1,32 @@
 package towerdefence;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * The map is used to display information about tower and enemy positions to the
- * user. It is stored as a 2d array and is updated and reprinted throughout the
- * game.
+ * user. It is drawn as a grid of characters, five to a cell, which is updated
+ * and reprinted throughout the game.
+ *
+ * Maps can be far bigger than a screen, so only a window of the map - the
+ * viewport - is ever drawn, and nothing is stored for the rest of it. The
+ * grid holds just the cells in the viewport, so drawing costs the same
+ * however long the corridor is or however many lanes it has. By default the
+ * viewport follows the enemy nearest the castle along the corridor; a map
+ * that fits on the screen is always drawn whole.
+ *
+ * The parts of the viewport that do not change while it stays in place - the
+ * tower position numbers along the top and the castle at the end - are drawn
+ * into a blank frame whenever it moves. Each print copies the blank frame,
+ * plots the enemies and towers inside the viewport on it and sends it out in
+ * a single write. On an ANSI terminal the map is instead kept at the top of
+ * the screen and only the cells that changed since the last print are
+ * redrawn.
  *
  * @author 170021928
  *
@@ -15,23 +36,101 @@ public class Map {
 
   /**
    * The length of the corridor - this is initialised by the game to either a
-   * number set by the user or the default of 15.
+   * number set by the user or the default of 15. Whether to redraw in place is
+   * decided by whether the game is running in an ANSI terminal.
    *
    * @param corridorLength
    *          the corridor length supplied
    */
   Map(int corridorLength) {
+    this(corridorLength, isAnsiTerminal());
+  }
+
+  /**
+   * Makes a map that either reprints the whole map each time, or redraws only
+   * the cells that changed using ANSI escape codes.
+   *
+   * @param corridorLength
+   *          the corridor length supplied
+   * @param ansi
+   *          true to redraw in place with ANSI escape codes
+   */
+  Map(int corridorLength, boolean ansi) {
+    this(corridorLength, ansi, new OutputStreamWriter(System.out));
+  }
+
+  /**
+   * Makes a map that prints to the given writer instead of the console.
+   *
+   * @param corridorLength
+   *          the corridor length supplied
+   * @param ansi
+   *          true to redraw in place with ANSI escape codes
+   * @param sink
+   *          where the map is written to
+   */
+  Map(int corridorLength, boolean ansi, Writer sink) {
+    this(corridorLength, MAPHEIGHT - FIRST_LINE, ansi, sink);
+  }
+
+  /**
+   * Makes a map with the given number of lanes for enemies to walk along.
+   *
+   * @param corridorLength
+   *          the corridor length supplied
+   * @param lanes
+   *          the number of lanes
+   * @param ansi
+   *          true to redraw in place with ANSI escape codes
+   * @param sink
+   *          where the map is written to
+   */
+  Map(int corridorLength, int lanes, boolean ansi, Writer sink) {
 
     this.castlePos = corridorLength + 1;
-    this.map = this.init(this.castlePos);
+    this.height = lanes + FIRST_LINE;
+    this.ansi = ansi;
+    this.viewCells = Math.min(this.castlePos + 1, VIEW_CELLS);
+    this.viewRows = Math.min(this.height, VIEW_LANES + FIRST_LINE);
+    this.width = this.viewCells * CELL;
+    this.blank = new char[this.viewRows * this.width];
+    this.frame = new char[this.blank.length];
+    this.shown = new char[this.blank.length];
+    this.out = new BufferedWriter(sink, (this.viewRows + 1) * (this.width + 1) * 2);
   }
 
   /**
-   * The height of the map drawn. The actual area of play is mapHeight -2, as
-   * the first two rows are used to draw the tower positions and the towers
-   * themselves.
+   * The height of the map drawn if no number of lanes is given. The actual
+   * area of play is mapHeight -2, as the first two rows are used to draw the
+   * tower positions and the towers themselves.
+   */
+  static final int MAPHEIGHT = 7;
+
+  /**
+   * The row of the first lane enemies walk along.
+   */
+  static final int FIRST_LINE = 2;
+
+  /**
+   * The most cells of the corridor drawn at once. This fits the whole of the
+   * longest corridor the game used to allow, 60, with its castle.
    */
-  private static final int MAPHEIGHT = 7;
+  static final int VIEW_CELLS = 62;
+
+  /**
+   * The most lanes drawn at once.
+   */
+  static final int VIEW_LANES = 20;
+
+  /**
+   * The number of characters in a cell. Every symbol is this wide.
+   */
+  static final int CELL = 5;
+
+  /**
+   * The escape character that starts an ANSI control sequence.
+   */
+  private static final char ESC = 27;
 
   /**
    * The position of the castle that the user must defend at the end of the
@@ -45,89 +144,270 @@ public class Map {
   private int towerPos = 1;
 
   /**
-   * A 2d array that is used to hold the map information.
+   * The number of rows in the whole map: the tower positions, the towers and
+   * the lanes.
    */
-  private String[][] map;
+  private final int height;
 
   /**
-   * Checks if there is free space on the map to place a given tower - stops the
-   * user placing two towers in the same position.
-   *
-   * @param pos
-   *          an integer representing the position of the tower that the user
-   *          wants
-   * @return true if the tower can be places, false if not.
+   * The number of cells across the viewport.
    */
-  public boolean checkIfFree(int pos) {
+  private final int viewCells;
 
-    if (pos < 0 || pos > this.castlePos) {
-      return false;
-    }
-    if (this.map[this.towerPos][pos] != "     ") {
-      return false;
-    }
+  /**
+   * The number of rows in the viewport. The tower positions and the towers
+   * are always in view, so this is two more than the lanes shown.
+   */
+  private final int viewRows;
 
-    return true;
+  /**
+   * The corridor position of the leftmost cell in the viewport.
+   */
+  private int firstCell;
 
-  }
+  /**
+   * The lane shown at the top of the viewport, just below the towers.
+   */
+  private int firstLine = FIRST_LINE;
 
   /**
-   * Returns the height of the map, this is fixed and is used when generating
-   * enemies.
+   * True if the viewport moves along the corridor to keep up with the enemy
+   * nearest the castle.
+   */
+  private boolean following = true;
+
+  /**
+   * True if the viewport has moved since the blank frame was drawn.
+   */
+  private boolean moved = true;
+
+  /**
+   * The number of characters in a row of the viewport.
+   */
+  private final int width;
+
+  /**
+   * The viewport with nothing on it but the tower positions and the castle.
+   * Copied into the frame at the start of every print.
+   */
+  private final char[] blank;
+
+  /**
+   * The viewport as it is being drawn, row after row.
+   */
+  private final char[] frame;
+
+  /**
+   * The viewport as it was last shown on the screen, to work out which cells
+   * have changed. Only used when redrawing in place.
+   */
+  private final char[] shown;
+
+  /**
+   * True if the map redraws only changed cells, in place, using ANSI escape
+   * codes.
+   */
+  private final boolean ansi;
+
+  /**
+   * True once the map has been drawn for the first time.
+   */
+  private boolean drawn;
+
+  /**
+   * Holds the characters of one print until they are written out together.
+   */
+  private char[] buffer = new char[0];
+
+  /**
+   * The number of characters waiting in the buffer.
+   */
+  private int length;
+
+  /**
+   * Where the map is written.
+   */
+  private final Writer out;
+
+  /**
+   * Times each print, or null if nobody is keeping track.
+   */
+  private TickMetrics metrics;
+
+  /**
+   * Returns the height of the whole map, including the rows outside the
+   * viewport. This is used when generating enemies.
    *
    * @return the height of the map
    */
   public int getMapHeight() {
-    return MAPHEIGHT;
+    return this.height;
   }
 
   /**
-   * Initialises a blank map with the given corridor length.
+   * Moves the viewport so that its leftmost cell is the given corridor
+   * position and its top lane is the given line, as near as the edges of the
+   * map allow. The viewport then stays there rather than following the
+   * enemies.
    *
-   * @param corridorLength
-   *          an int (up to 60) used to determine the length of the map to
-   *          initialise
-   * @return the initialised map
+   * @param cell
+   *          the corridor position to show first
+   * @param line
+   *          the lane to show first
+   */
+  public void scrollTo(int cell, int line) {
+    this.following = false;
+    this.moveView(cell, line);
+  }
+
+  /**
+   * Sets whether the viewport moves along the corridor to keep up with the
+   * enemy nearest the castle.
+   *
+   * @param follow
+   *          true to follow the enemies
+   */
+  public void setFollowing(boolean follow) {
+    this.following = follow;
+  }
+
+  /**
+   * Sets the metrics to time each print with. The map may be printed on a
+   * different thread from the game's, e.g. by a Renderer, but only one.
+   *
+   * @param metrics
+   *          the metrics, or null to stop timing
+   */
+  public void setMetrics(TickMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Moves the viewport, keeping it inside the map.
+   *
+   * @param cell
+   *          the corridor position to show first
+   * @param line
+   *          the lane to show first
+   */
+  private void moveView(int cell, int line) {
+
+    int cellTo = Math.max(0, Math.min(cell, this.castlePos + 1 - this.viewCells));
+    int lineTo = Math.max(FIRST_LINE, Math.min(line, this.height - this.viewRows + FIRST_LINE));
+
+    if (cellTo != this.firstCell || lineTo != this.firstLine) {
+      this.firstCell = cellTo;
+      this.firstLine = lineTo;
+      this.moved = true;
+    }
+  }
+
+  /**
+   * Keeps the enemy nearest the castle in view. The viewport only moves once
+   * the enemy is near one of its edges, and then moves a long way, so that an
+   * ANSI terminal does not have to redraw it all every timestep.
+   *
+   * @param front
+   *          the position of the enemy nearest the castle, or 0 if there are
+   *          none
+   */
+  private void follow(int front) {
+
+    final int margin = 2;
+    int quarter = this.viewCells / 4;
+
+    if (front > this.firstCell + this.viewCells - margin || (front < this.firstCell + quarter && this.firstCell > 0)) {
+      this.moveView(front - 3 * quarter, this.firstLine);
+    }
+  }
+
+  /**
+   * Draws the blank viewport: the tower positions along the top and whatever
+   * part of the castle is in view.
    */
-  private String[][] init(int corridorLength) {
+  private void init() {
+
+    Arrays.fill(this.blank, ' ');
 
     // ten is used to check whether the numbers being printed to represent
-    // the
-    // tower positions are ten or over - if so, we must print one less space
-    // for each of the so the map doesn't go wonky.
+    // the tower positions are ten or over - if so, the one under the castle
+    // is left out so it does not run into it.
     final int ten = 10;
+    int end = Math.min(this.firstCell + this.viewCells, this.castlePos);
 
-    this.map = new String[MAPHEIGHT][this.castlePos + 1];
-
-    for (int i = 0; i < MAPHEIGHT; i++) {
-      for (int j = 0; j < corridorLength; j++) {
-        this.map[i][j] = "     ";
+    for (int j = this.firstCell; j < end; j++) {
+      if (j < ten || j < this.castlePos - 1) {
+        this.plot(this.blank, 0, j - this.firstCell, label(j));
+      }
+    }
 
-        if (i == 0) {
-          if (j < ten) {
-            this.map[i][j] = "  " + j + "  ";
-          } else if (j < corridorLength - 1) {
-            this.map[i][j] = "  " + j + " ";
-          }
-        }
+    // adding the castle at the end, if it is in view
+    int castle = this.castlePos - 1 - this.firstCell;
+    for (int k = 0; k < this.viewRows; k++) {
+      if (castle >= 0 && castle < this.viewCells) {
+        this.plot(this.blank, k, castle, " |^|_");
+      }
+      if (castle + 1 >= 0 && castle + 1 < this.viewCells) {
+        this.plot(this.blank, k, castle + 1, "_|^| ");
       }
     }
 
-    // adding the castle at the end
-    for (int k = 0; k < MAPHEIGHT; k++) {
-      this.map[k][this.castlePos - 1] = " |^|_";
-      this.map[k][this.castlePos] = "_|^| ";
+    this.moved = false;
+  }
+
+  /**
+   * Makes the label for a tower position, fitted to a cell.
+   *
+   * @param j
+   *          the tower position
+   * @return the label, CELL characters long
+   */
+  private static String label(int j) {
+
+    final int ten = 10;
+    final int hundred = 100;
+    final int thousand = 1000;
+    final int tenThousand = 10000;
+
+    if (j < ten) {
+      return "  " + j + "  ";
+    } else if (j < hundred) {
+      return "  " + j + " ";
+    } else if (j < thousand) {
+      return " " + j + " ";
+    } else if (j < tenThousand) {
+      return " " + j;
     }
+    // too long for a cell, so only the last four digits are shown
+    String digits = Integer.toString(tenThousand + j % tenThousand);
+    return "~" + digits.substring(1);
+  }
 
-    return this.map;
+  /**
+   * Starts a print: moves the viewport if it is following the enemies,
+   * redraws the blank viewport if it has moved, then copies it into the
+   * frame.
+   *
+   * @param front
+   *          the position of the enemy nearest the castle, or 0 if there are
+   *          none
+   */
+  private void begin(int front) {
 
+    if (this.following) {
+      this.follow(front);
+    }
+    if (this.moved) {
+      this.init();
+    }
+    System.arraycopy(this.blank, 0, this.frame, 0, this.frame.length);
   }
 
   /**
    * Given the current array lists of enemies and towers, plots them on the map.
-   * It first initialises the map to be blank - this is important, so that
-   * enemies who have died and then been removed from the arraylist do not still
-   * appear on the map when it is updated.
+   * It first copies in the blank map - this is important, so that enemies who
+   * have died and then been removed from the arraylist do not still appear on
+   * the map when it is updated.
    *
    * @param enemies
    *          arrayList of enemy objects
@@ -136,30 +416,333 @@ public class Map {
    */
   public void print(ArrayList<Enemy> enemies, ArrayList<Tower> towers) {
 
-    this.map = this.init(this.castlePos);
+    long start = this.metrics == null ? 0 : System.nanoTime();
+    int front = 0;
+    for (Enemy enemy : enemies) {
+      front = Math.max(front, enemy.getPosition());
+    }
+    this.begin(front);
 
     for (Enemy enemy : enemies) {
 
-      this.map[enemy.getLine()][enemy.getPosition()] = enemy.getSymbol();
+      this.put(this.frame, enemy.getLine(), enemy.getPosition(), enemy.getSymbol());
 
     }
 
     for (Tower tower : towers) {
 
-      this.map[this.towerPos][tower.getPosition()] = tower.getSymbol();
+      this.put(this.frame, this.towerPos, tower.getPosition(), tower.getSymbol());
+
+    }
+
+    this.show();
+    this.timed(start);
+  }
+
+  /**
+   * Plots a frame published by the game on the map, in the same way as the
+   * print above.
+   *
+   * @param snapshot
+   *          the positions of the enemies and towers to show
+   */
+  public void print(Frame snapshot) {
+
+    long start = this.metrics == null ? 0 : System.nanoTime();
+    int front = 0;
+    for (int i = 0; i < snapshot.enemyCount(); i++) {
+      front = Math.max(front, snapshot.getEnemyPosition(i));
+    }
+    this.begin(front);
+
+    for (int i = 0; i < snapshot.enemyCount(); i++) {
+      this.put(this.frame, snapshot.getEnemyLine(i), snapshot.getEnemyPosition(i), snapshot.getEnemySymbol(i));
+    }
+
+    for (int i = 0; i < snapshot.towerCount(); i++) {
+      this.put(this.frame, this.towerPos, snapshot.getTowerPosition(i), snapshot.getTowerSymbol(i));
+    }
+
+    this.show();
+    this.timed(start);
+  }
+
+  /**
+   * Writes the frame out: the whole of it, or on an ANSI terminal just the
+   * cells that changed.
+   */
+  private void show() {
+
+    this.length = 0;
+
+    if (!this.ansi) {
+      this.append('\n');
+      for (int i = 0; i < this.viewRows; i++) {
+        this.append(this.frame, i * this.width, this.width);
+        this.append('\n');
+      }
+      this.append('\n');
+    } else if (!this.drawn) {
+      this.drawAll();
+    } else {
+      this.drawChanges();
+    }
+
+    System.out.flush();
+    try {
+      this.out.write(this.buffer, 0, this.length);
+      this.out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Records how long a print took, if the map has metrics.
+   *
+   * @param start
+   *          the time the print started, from System.nanoTime
+   */
+  private void timed(long start) {
+
+    TickMetrics timing = this.metrics;
+    if (timing != null) {
+      timing.record(TickMetrics.DRAW, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Puts the map back to normal when the game is over. When redrawing in
+   * place, this lets the whole screen scroll again.
+   */
+  public void close() {
+
+    if (this.ansi && this.drawn) {
+      this.length = 0;
+      this.escape("r");
+      this.moveTo(this.viewRows + 2, 1);
+      try {
+        this.out.write(this.buffer, 0, this.length);
+        this.out.flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Draws the whole map at the top of a cleared screen, and keeps everything
+   * printed after it scrolling underneath so the map stays in place.
+   */
+  private void drawAll() {
+
+    this.escape("2J");
+    this.moveTo(1, 1);
+
+    for (int i = 0; i < this.viewRows; i++) {
+      this.append(this.frame, i * this.width, this.width);
+      this.append('\n');
+    }
+
+    // scroll only the lines below the map
+    this.escape((this.viewRows + 2) + "r");
+    this.moveTo(this.viewRows + 2, 1);
+
+    System.arraycopy(this.frame, 0, this.shown, 0, this.frame.length);
+    this.drawn = true;
+  }
+
+  /**
+   * Redraws the cells that differ from what is on the screen, then puts the
+   * cursor back where it was.
+   */
+  private void drawChanges() {
+
+    // save the cursor
+    this.append(ESC);
+    this.append('7');
+
+    for (int i = 0; i < this.viewRows; i++) {
 
+      boolean follows = false;
+
+      for (int j = 0; j < this.viewCells; j++) {
+
+        int start = i * this.width + j * CELL;
+
+        if (this.differs(start)) {
+          if (!follows) {
+            this.moveTo(i + 1, j * CELL + 1);
+          }
+          this.append(this.frame, start, CELL);
+          System.arraycopy(this.frame, start, this.shown, start, CELL);
+          follows = true;
+        } else {
+          follows = false;
+        }
+      }
     }
 
-    System.out.print("\n");
+    // restore the cursor
+    this.append(ESC);
+    this.append('8');
+  }
+
+  /**
+   * Checks whether the cell starting at the given index has changed since it
+   * was last shown.
+   *
+   * @param start
+   *          the index of the first character of the cell
+   * @return true if the cell has changed
+   */
+  private boolean differs(int start) {
 
-    for (int i = 0; i < MAPHEIGHT; i++) {
-      for (int j = 0; j < this.castlePos + 1; j++) {
-        System.out.print(this.map[i][j]);
+    for (int c = start; c < start + CELL; c++) {
+      if (this.frame[c] != this.shown[c]) {
+        return true;
       }
-      System.out.print("\n");
     }
-    System.out.print("\n");
+    return false;
+  }
+
+  /**
+   * Writes a symbol into a cell of a map.
+   *
+   * @param map
+   *          the map to write into
+   * @param row
+   *          the row of the cell
+   * @param col
+   *          the column of the cell
+   * @param symbol
+   *          the symbol, at most CELL characters long
+   */
+  private void plot(char[] map, int row, int col, String symbol) {
+    int len = Math.min(symbol.length(), CELL);
+    symbol.getChars(0, len, map, row * this.width + col * CELL);
+  }
+
+  /**
+   * Writes a symbol into the cell at a map position, if that cell is in the
+   * viewport. Rows 0 and 1 are always in view; lanes are moved up to sit
+   * below them.
+   *
+   * @param map
+   *          the viewport to write into
+   * @param row
+   *          the row on the whole map
+   * @param pos
+   *          the corridor position
+   * @param symbol
+   *          the symbol, at most CELL characters long
+   */
+  private void put(char[] map, int row, int pos, String symbol) {
+
+    int viewRow = row;
+    if (row >= FIRST_LINE) {
+      viewRow = row - this.firstLine + FIRST_LINE;
+    }
+    int col = pos - this.firstCell;
+
+    if (viewRow >= 0 && viewRow < this.viewRows && col >= 0 && col < this.viewCells) {
+      this.plot(map, viewRow, col, symbol);
+    }
+  }
+
+  /**
+   * Adds an ANSI move-cursor sequence to the buffer.
+   *
+   * @param row
+   *          the screen row, counting from 1
+   * @param col
+   *          the screen column, counting from 1
+   */
+  private void moveTo(int row, int col) {
+    this.append(ESC);
+    this.append('[');
+    this.appendNumber(row);
+    this.append(';');
+    this.appendNumber(col);
+    this.append('H');
+  }
+
+  /**
+   * Adds an ANSI control sequence to the buffer.
+   *
+   * @param code
+   *          the sequence after the escape and bracket, e.g. "2J"
+   */
+  private void escape(String code) {
+    this.append(ESC);
+    this.append('[');
+    for (int i = 0; i < code.length(); i++) {
+      this.append(code.charAt(i));
+    }
+  }
+
+  /**
+   * Adds a number to the buffer in decimal.
+   *
+   * @param n
+   *          a number that is not negative
+   */
+  private void appendNumber(int n) {
+    final int ten = 10;
+    if (n >= ten) {
+      this.appendNumber(n / ten);
+    }
+    this.append((char) ('0' + n % ten));
+  }
+
+  /**
+   * Adds a character to the buffer.
+   *
+   * @param c
+   *          the character
+   */
+  private void append(char c) {
+    this.reserve(1);
+    this.buffer[this.length++] = c;
+  }
+
+  /**
+   * Adds characters to the buffer.
+   *
+   * @param source
+   *          where to copy them from
+   * @param start
+   *          the index of the first one
+   * @param count
+   *          how many to copy
+   */
+  private void append(char[] source, int start, int count) {
+    this.reserve(count);
+    System.arraycopy(source, start, this.buffer, this.length, count);
+    this.length += count;
+  }
+
+  /**
+   * Makes sure the buffer has room for the given number of extra characters.
+   *
+   * @param count
+   *          the number of characters about to be added
+   */
+  private void reserve(int count) {
+    if (this.length + count > this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, Math.max(2 * this.buffer.length, this.length + count));
+    }
+  }
 
+  /**
+   * Checks whether the game is being played in a terminal that understands
+   * ANSI escape codes.
+   *
+   * @return true if output goes to a terminal that is not dumb
+   */
+  private static boolean isAnsiTerminal() {
+    String term = System.getenv("TERM");
+    return System.console() != null && term != null && !term.equals("dumb");
   }
 
 }
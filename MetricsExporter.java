@@ -0,0 +1,221 @@
+package towerdefence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Shows a game's TickMetrics outside the process: as an MBean named
+ * towerdefence:type=TickMetrics,name=<name>, for JConsole, VisualVM or any
+ * other JMX client, and, if the system property towerdefence.metrics.port
+ * names a port, as plain text on this machine at
+ *
+ * http://localhost:<port>/metrics
+ *
+ * in the format Prometheus scrapes, e.g.
+ *
+ * java -Dtowerdefence.metrics.port=9100 -cp towerDefence.jar
+ * towerdefence.GameServer
+ *
+ * A game given a name that is already registered, e.g. the second of two
+ * games from the same seed, is registered beside the first with ,id=<n> added
+ * rather than failing; the first keeps the plain name. The endpoint only
+ * listens on the loopback address. Each request is answered on the HTTP
+ * server's own thread from what the game last published, so scraping never
+ * holds the game up.
+ *
+ * @author 170021928
+ *
+ */
+public class MetricsExporter implements Closeable {
+
+    /**
+     * Constructs an exporter for metrics already registered.
+     *
+     * @param name
+     *            the name the MBean was registered under
+     * @param http
+     *            the started HTTP server, or null if there is none
+     */
+    private MetricsExporter(ObjectName name, HttpServer http) {
+        this.name = name;
+        this.http = http;
+    }
+
+    /**
+     * The system property naming the port to serve the metrics on over HTTP.
+     */
+    public static final String PROPERTY = "towerdefence.metrics.port";
+
+    /**
+     * The path the metrics are served at.
+     */
+    public static final String PATH = "/metrics";
+
+    /**
+     * The content type of the text format Prometheus scrapes.
+     */
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * The number of exports so far in this process under a name already
+     * registered, which gives each its id.
+     */
+    private static final AtomicInteger DUPLICATES = new AtomicInteger();
+
+    /**
+     * The name the MBean is registered under.
+     */
+    private final ObjectName name;
+
+    /**
+     * The HTTP server, or null if the metrics are only shown over JMX.
+     */
+    private final HttpServer http;
+
+    /**
+     * Registers metrics as an MBean, and serves them over HTTP if the system
+     * property names a port.
+     *
+     * @param metrics
+     *            the metrics
+     * @param name
+     *            the name to register them under, e.g. "game"
+     * @return the exporter, to close once the game is over
+     * @throws IOException
+     *             if the port cannot be listened on
+     * @throws IllegalStateException
+     *             if the metrics cannot be registered
+     */
+    public static MetricsExporter export(TickMetrics metrics, String name) throws IOException {
+
+        String port = System.getProperty(PROPERTY);
+        return export(metrics, name, port == null ? -1 : Integer.parseInt(port));
+    }
+
+    /**
+     * Registers metrics as an MBean, and serves them over HTTP on the given
+     * port.
+     *
+     * @param metrics
+     *            the metrics
+     * @param name
+     *            the name to register them under, e.g. "game"
+     * @param port
+     *            the port to serve them on, 0 for any free port, or -1 to show
+     *            them over JMX alone
+     * @return the exporter, to close once the game is over
+     * @throws IOException
+     *             if the port cannot be listened on
+     * @throws IllegalStateException
+     *             if the metrics cannot be registered
+     */
+    public static MetricsExporter export(TickMetrics metrics, String name, int port) throws IOException {
+
+        MBeanServer beans = ManagementFactory.getPlatformMBeanServer();
+        String plain = "towerdefence:type=TickMetrics,name=" + ObjectName.quote(name);
+        ObjectName objectName;
+        try {
+            objectName = new ObjectName(plain);
+            try {
+                beans.registerMBean(metrics, objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                objectName = new ObjectName(plain + ",id=" + DUPLICATES.incrementAndGet());
+                beans.registerMBean(metrics, objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the metrics as " + name, e);
+        }
+
+        if (port < 0) {
+            return new MetricsExporter(objectName, null);
+        }
+
+        HttpServer http;
+        try {
+            http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            unregister(objectName);
+            throw e;
+        }
+        http.createContext(PATH, new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+
+                try {
+                    if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                    }
+                    byte[] body = metrics.report().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+
+                    if (exchange.getRequestMethod().equals("HEAD")) {
+                        exchange.sendResponseHeaders(200, -1);
+                        return;
+                    }
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        http.start();
+        return new MetricsExporter(objectName, http);
+    }
+
+    /**
+     * Returns the address the metrics are served on over HTTP, e.g. to find
+     * the port when it was opened on port 0.
+     *
+     * @return the address, or null if they are only shown over JMX
+     */
+    public InetSocketAddress getAddress() {
+        return this.http == null ? null : this.http.getAddress();
+    }
+
+    /**
+     * Stops serving the metrics over HTTP and unregisters the MBean.
+     */
+    @Override
+    public void close() {
+
+        if (this.http != null) {
+            this.http.stop(0);
+        }
+        unregister(this.name);
+    }
+
+    /**
+     * Unregisters an MBean, if it is still registered.
+     *
+     * @param name
+     *            the name it was registered under
+     */
+    private static void unregister(ObjectName name) {
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // already gone
+        }
+    }
+}
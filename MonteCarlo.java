@@ -0,0 +1,267 @@
+package towerdefence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Plays many independent headless games of the same tower layout across all
+ * cores, and gathers how well the layout did. Every game has its own Game
+ * instance, so games share nothing while they run and each one writes its
+ * result into its own slot. Run it from the command line thus:
+ *
+ * java -cp towerDefence.jar towerdefence.MonteCarlo <corridor length> <games>
+ * <seed> <purchase>...
+ *
+ * where each purchase is written type:position[:tick], as in Purchase.parse.
+ * The seed is optional. Game i is played from seed + i, so a run with a given
+ * seed can be repeated exactly, and any single game can be replayed with
+ * Game.simulate.
+ *
+ * @author 170021928
+ *
+ */
+public class MonteCarlo {
+
+    /**
+     * Constructs a runner that plays its games on the given pool.
+     *
+     * @param pool
+     *            the pool to play games on
+     */
+    public MonteCarlo(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Constructs a runner that plays its games on the common pool, which has
+     * one thread per core.
+     */
+    public MonteCarlo() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The number of games a task plays itself rather than splitting them
+     * further. Games take microseconds, so a batch keeps the cost of forking
+     * small next to the work.
+     */
+    private static final int BATCH = 64;
+
+    /**
+     * The pool that games are played on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Reads the corridor length, number of games and layout from the command
+     * line, plays the games and prints the statistics.
+     *
+     * @param args
+     *            corridor length, number of games, then the purchases
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 2) {
+            System.out.println("Usage: MonteCarlo <corridor length> <games> [seed] <type:position[:tick]>...");
+            return;
+        }
+
+        int first = 2;
+        long seed = new SplittableRandom().nextLong();
+
+        if (args.length > first && !args[first].contains(":")) {
+            seed = Long.parseLong(args[first++]);
+        }
+
+        List<Purchase> layout = new ArrayList<Purchase>();
+        for (int i = first; i < args.length; i++) {
+            layout.add(Purchase.parse(args[i]));
+        }
+
+        long start = System.nanoTime();
+        MonteCarloResult result = new MonteCarlo().run(Integer.parseInt(args[0]), layout,
+                Integer.parseInt(args[1]), seed);
+        final double nanosPerSecond = 1e9;
+        double seconds = (System.nanoTime() - start) / nanosPerSecond;
+
+        System.out.println(result);
+        System.out.println(result.getGames() + " games in " + seconds + "s");
+    }
+
+    /**
+     * Plays the given number of games of one layout.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @param layout
+     *            the tower purchases to make in every game
+     * @param games
+     *            how many games to play
+     * @param seed
+     *            the seed of the first game; game i is played from seed + i
+     * @return the statistics over all the games
+     */
+    public MonteCarloResult run(int corridorLength, List<Purchase> layout, int games, long seed) {
+
+        int[] outcomes = new int[games];
+        int[] ticks = new int[games];
+        int[] kills = new int[games];
+
+        this.pool.invoke(new Batch(corridorLength, layout, seed, outcomes, ticks, kills, 0, games));
+
+        return new MonteCarloResult(layout, outcomes, ticks, kills);
+    }
+
+    /**
+     * Plays the given number of games of each of several layouts. The games of
+     * every layout are shared out over the pool together, so even a few games
+     * each of many layouts keeps every core busy.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @param layouts
+     *            the layouts to try
+     * @param games
+     *            how many games to play for each layout
+     * @param seed
+     *            the seed of the first game of each layout, so that every
+     *            layout faces the same games
+     * @return the statistics for each layout, in the same order
+     */
+    public List<MonteCarloResult> runAll(int corridorLength, List<List<Purchase>> layouts, int games,
+            long seed) {
+
+        int n = layouts.size();
+        int[][] outcomes = new int[n][games];
+        int[][] ticks = new int[n][games];
+        int[][] kills = new int[n][games];
+
+        final List<Batch> batches = new ArrayList<Batch>(n);
+        for (int i = 0; i < n; i++) {
+            batches.add(new Batch(corridorLength, layouts.get(i), seed, outcomes[i], ticks[i], kills[i], 0, games));
+        }
+
+        this.pool.invoke(new RecursiveAction() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(batches);
+            }
+        });
+
+        List<MonteCarloResult> results = new ArrayList<MonteCarloResult>(n);
+
+        for (int i = 0; i < n; i++) {
+            results.add(new MonteCarloResult(layouts.get(i), outcomes[i], ticks[i], kills[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Plays a range of games, splitting it in half until it is small enough to
+     * play in one go.
+     */
+    private static final class Batch extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The length of the corridor.
+         */
+        private final int corridorLength;
+
+        /**
+         * The purchases to make in every game.
+         */
+        private final List<Purchase> layout;
+
+        /**
+         * The seed of game 0.
+         */
+        private final long seed;
+
+        /**
+         * Where each game's outcome is written.
+         */
+        private final int[] outcomes;
+
+        /**
+         * Where each game's ticks survived are written.
+         */
+        private final int[] ticks;
+
+        /**
+         * Where each game's kills are written.
+         */
+        private final int[] kills;
+
+        /**
+         * The first game of the range.
+         */
+        private final int from;
+
+        /**
+         * One past the last game of the range.
+         */
+        private final int to;
+
+        /**
+         * Constructs a batch covering games from (inclusive) to to (exclusive).
+         *
+         * @param corridorLength
+         *            the length of the corridor
+         * @param layout
+         *            the purchases to make in every game
+         * @param seed
+         *            the seed of game 0
+         * @param outcomes
+         *            where outcomes are written
+         * @param ticks
+         *            where ticks survived are written
+         * @param kills
+         *            where kills are written
+         * @param from
+         *            the first game
+         * @param to
+         *            one past the last game
+         */
+        Batch(int corridorLength, List<Purchase> layout, long seed, int[] outcomes, int[] ticks, int[] kills,
+                int from, int to) {
+            this.corridorLength = corridorLength;
+            this.layout = layout;
+            this.seed = seed;
+            this.outcomes = outcomes;
+            this.ticks = ticks;
+            this.kills = kills;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (this.to - this.from <= BATCH) {
+
+                for (int i = this.from; i < this.to; i++) {
+                    SimulationResult result = Game.simulate(this.corridorLength, this.layout, this.seed + i);
+                    this.outcomes[i] = result.getOutcome();
+                    this.ticks[i] = result.getTicks();
+                    this.kills[i] = result.getKills();
+                }
+
+            } else {
+
+                int mid = (this.from + this.to) >>> 1;
+                invokeAll(new Batch(this.corridorLength, this.layout, this.seed, this.outcomes, this.ticks,
+                        this.kills, this.from, mid),
+                        new Batch(this.corridorLength, this.layout, this.seed, this.outcomes, this.ticks,
+                                this.kills, mid, this.to));
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package towerdefence;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Statistics gathered over many headless games of one tower layout: the win
+ * rate, how long games lasted and how many enemies were killed.
+ *
+ * @author 170021928
+ *
+ */
+public class MonteCarloResult {
+
+    /**
+     * Constructs the statistics from the results of each game.
+     *
+     * @param layout
+     *            the layout that was played
+     * @param outcomes
+     *            the outcome of each game, as given by Game.endGame
+     * @param ticks
+     *            the ticks survived in each game
+     * @param kills
+     *            the kills in each game
+     */
+    MonteCarloResult(List<Purchase> layout, int[] outcomes, int[] ticks, int[] kills) {
+
+        this.layout = layout;
+        this.games = outcomes.length;
+        this.sortedTicks = ticks.clone();
+        Arrays.sort(this.sortedTicks);
+
+        long tickTotal = 0;
+        long killTotal = 0;
+
+        for (int i = 0; i < this.games; i++) {
+            if (outcomes[i] > 0) {
+                this.wins++;
+            }
+            tickTotal += ticks[i];
+            killTotal += kills[i];
+        }
+        this.meanTicks = this.games == 0 ? 0 : (double) tickTotal / this.games;
+        this.meanKills = this.games == 0 ? 0 : (double) killTotal / this.games;
+    }
+
+    /**
+     * The layout that was played.
+     */
+    private final List<Purchase> layout;
+
+    /**
+     * The number of games played.
+     */
+    private final int games;
+
+    /**
+     * The number of games won.
+     */
+    private int wins;
+
+    /**
+     * The mean number of ticks survived.
+     */
+    private final double meanTicks;
+
+    /**
+     * The mean number of kills.
+     */
+    private final double meanKills;
+
+    /**
+     * The ticks survived in each game, sorted so percentiles can be read off.
+     */
+    private final int[] sortedTicks;
+
+    /**
+     * Returns the layout that was played.
+     *
+     * @return the tower purchases made in each game
+     */
+    public List<Purchase> getLayout() {
+        return this.layout;
+    }
+
+    /**
+     * Returns the number of games played.
+     *
+     * @return games played
+     */
+    public int getGames() {
+        return this.games;
+    }
+
+    /**
+     * Returns the fraction of games that were won.
+     *
+     * @return the win rate from 0 to 1
+     */
+    public double getWinRate() {
+        return this.games == 0 ? 0 : (double) this.wins / this.games;
+    }
+
+    /**
+     * Returns the mean number of ticks survived.
+     *
+     * @return mean ticks survived
+     */
+    public double getMeanTicks() {
+        return this.meanTicks;
+    }
+
+    /**
+     * Returns the given percentile of ticks survived, using the nearest rank.
+     *
+     * @param percentile
+     *            the percentile wanted, from 0 to 100
+     * @return the ticks survived at that percentile
+     */
+    public int getTicksPercentile(double percentile) {
+
+        if (this.games == 0) {
+            return 0;
+        }
+        final double hundred = 100.0;
+        int rank = (int) Math.ceil(percentile / hundred * this.games);
+
+        return this.sortedTicks[Math.max(0, Math.min(this.games - 1, rank - 1))];
+    }
+
+    /**
+     * Returns the mean number of enemies killed.
+     *
+     * @return mean kills
+     */
+    public double getMeanKills() {
+        return this.meanKills;
+    }
+
+    @Override
+    public String toString() {
+
+        final double p50 = 50;
+        final double p90 = 90;
+        final double p99 = 99;
+
+        return "layout = " + this.layout + " games = " + this.games + " winRate = " + this.getWinRate()
+                + " meanTicks = " + this.meanTicks + " p50 = " + this.getTicksPercentile(p50) + " p90 = "
+                + this.getTicksPercentile(p90) + " p99 = " + this.getTicksPercentile(p99) + " meanKills = "
+                + this.meanKills;
+    }
+}
@@ -0,0 +1,106 @@
+package towerdefence;
+
+/**
+ * Records which positions along the corridor have a tower on them, one bit per
+ * position. Placing a tower, checking a position and finding the next free one
+ * take no more than a word or two of the bitmap each, whatever the number of
+ * towers, so neither the game nor the player has to look through the towers or
+ * the drawn map to find space.
+ *
+ * @author 170021928
+ *
+ */
+public class Occupancy {
+
+    /**
+     * Makes an empty bitmap for a corridor of the given length.
+     *
+     * @param corridorLength
+     *            the number of positions a tower can be placed on
+     */
+    public Occupancy(int corridorLength) {
+        this.size = corridorLength;
+        this.words = new long[(corridorLength + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    /**
+     * The number of positions.
+     */
+    private final int size;
+
+    /**
+     * The bitmap. Bit pos % 64 of word pos / 64 is set if position pos is
+     * taken.
+     */
+    private final long[] words;
+
+    /**
+     * Checks whether a tower can go at the given position.
+     *
+     * @param pos
+     *            the position
+     * @return true if the position is on the corridor and has no tower
+     */
+    public boolean isFree(int pos) {
+        return pos >= 0 && pos < this.size && (this.words[pos >>> 6] & (1L << pos)) == 0;
+    }
+
+    /**
+     * Marks a position as having a tower on it.
+     *
+     * @param pos
+     *            a position on the corridor
+     */
+    public void occupy(int pos) {
+        this.words[pos >>> 6] |= 1L << pos;
+    }
+
+    /**
+     * Marks a position as free again.
+     *
+     * @param pos
+     *            a position on the corridor
+     */
+    public void free(int pos) {
+        this.words[pos >>> 6] &= ~(1L << pos);
+    }
+
+    /**
+     * Finds the first free position at or after the given one.
+     *
+     * @param from
+     *            the position to start looking at
+     * @return the free position, or -1 if every position from there to the end
+     *         of the corridor is taken
+     */
+    public int nextFree(int from) {
+
+        int start = Math.max(from, 0);
+        if (start >= this.size) {
+            return -1;
+        }
+
+        // the free positions of the first word, from start on
+        int w = start >>> 6;
+        long free = ~this.words[w] & (-1L << start);
+
+        while (free == 0) {
+            if (++w == this.words.length) {
+                return -1;
+            }
+            free = ~this.words[w];
+        }
+
+        int pos = (w << 6) + Long.numberOfTrailingZeros(free);
+        return pos < this.size ? pos : -1;
+    }
+
+    /**
+     * Returns the number of positions.
+     *
+     * @return the corridor length
+     */
+    public int size() {
+        return this.size;
+    }
+}
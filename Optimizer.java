@@ -0,0 +1,230 @@
+package towerdefence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Searches for the best opening buy for a corridor: the towers to place before
+ * the first enemies arrive that win the most games. It is a beam search. Each
+ * round, every layout kept from the last round is grown by one more tower of
+ * each kind at each free position the purse allows, every new layout is played
+ * many times headless on all cores, and the best few are kept for the next
+ * round. Every layout faces the same seeds, so they are compared on the same
+ * games. Run it from the command line thus:
+ *
+ * java -cp towerDefence.jar towerdefence.Optimizer <corridor length> <rollouts>
+ * <beam width> <seed>
+ *
+ * Everything but the corridor length is optional.
+ *
+ * @author 170021928
+ *
+ */
+public class Optimizer {
+
+    /**
+     * Constructs an optimizer.
+     *
+     * @param runner
+     *            plays the games
+     * @param rollouts
+     *            the number of games to play of each layout
+     * @param beamWidth
+     *            the number of layouts kept from each round
+     * @param seed
+     *            the seed of the first game of each layout
+     */
+    public Optimizer(MonteCarlo runner, int rollouts, int beamWidth, long seed) {
+        this.runner = runner;
+        this.rollouts = rollouts;
+        this.beamWidth = beamWidth;
+        this.seed = seed;
+    }
+
+    /**
+     * The number of games played of each layout if no other number is given.
+     */
+    public static final int DEFAULT_ROLLOUTS = 200;
+
+    /**
+     * The number of layouts kept from each round if no other number is given.
+     */
+    public static final int DEFAULT_BEAM_WIDTH = 8;
+
+    /**
+     * Puts the best layouts first: those that win most often, then those that
+     * last longest, then those that kill most.
+     */
+    static final Comparator<MonteCarloResult> BEST_FIRST = new Comparator<MonteCarloResult>() {
+        @Override
+        public int compare(MonteCarloResult a, MonteCarloResult b) {
+
+            int c = Double.compare(b.getWinRate(), a.getWinRate());
+            if (c == 0) {
+                c = Double.compare(b.getMeanTicks(), a.getMeanTicks());
+            }
+            if (c == 0) {
+                c = Double.compare(b.getMeanKills(), a.getMeanKills());
+            }
+            return c;
+        }
+    };
+
+    /**
+     * Plays the games.
+     */
+    private final MonteCarlo runner;
+
+    /**
+     * The number of games to play of each layout.
+     */
+    private final int rollouts;
+
+    /**
+     * The number of layouts kept from each round.
+     */
+    private final int beamWidth;
+
+    /**
+     * The seed of the first game of each layout.
+     */
+    private final long seed;
+
+    /**
+     * Finds the best opening buy for a corridor and prints it.
+     *
+     * @param args
+     *            the corridor length, then optionally the number of rollouts,
+     *            the beam width and the seed
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 1) {
+            System.out.println("Usage: Optimizer <corridor length> [rollouts] [beam width] [seed]");
+            return;
+        }
+
+        int rollouts = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_ROLLOUTS;
+        int beamWidth = args.length >= 3 ? Integer.parseInt(args[2]) : DEFAULT_BEAM_WIDTH;
+        long seed = args.length >= 4 ? Long.parseLong(args[3]) : 0L;
+
+        long start = System.nanoTime();
+        Optimizer optimizer = new Optimizer(new MonteCarlo(), rollouts, beamWidth, seed);
+        MonteCarloResult best = optimizer.optimise(Integer.parseInt(args[0]));
+        final double nanosPerSecond = 1e9;
+
+        System.out.println(best);
+        System.out.println("found in " + (System.nanoTime() - start) / nanosPerSecond + "s");
+    }
+
+    /**
+     * Searches for the opening buy that wins most often on a corridor of the
+     * given length, starting with its full purse.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @return the statistics of the best layout found, which include the
+     *         layout itself
+     */
+    public MonteCarloResult optimise(int corridorLength) {
+
+        int purse = Game.startingPurse(corridorLength);
+        List<Purchase> empty = new ArrayList<Purchase>();
+
+        MonteCarloResult best = this.runner.run(corridorLength, empty, this.rollouts, this.seed);
+        List<MonteCarloResult> beam = new ArrayList<MonteCarloResult>();
+        beam.add(best);
+
+        while (true) {
+
+            List<List<Purchase>> children = this.grow(beam, corridorLength, purse);
+            if (children.isEmpty()) {
+                break;
+            }
+
+            List<MonteCarloResult> results = this.runner.runAll(corridorLength, children, this.rollouts,
+                    this.seed);
+            results.sort(BEST_FIRST);
+
+            if (BEST_FIRST.compare(results.get(0), best) < 0) {
+                best = results.get(0);
+            }
+            beam = results.subList(0, Math.min(this.beamWidth, results.size()));
+        }
+        return best;
+    }
+
+    /**
+     * Makes every layout that adds one affordable tower to a layout in the
+     * beam, leaving out layouts that are the same towers in another order.
+     * Position 0 is never used, since a tower there can never hit anything.
+     *
+     * @param beam
+     *            the layouts kept from the last round
+     * @param corridorLength
+     *            the length of the corridor
+     * @param purse
+     *            the starting purse
+     * @return the new layouts
+     */
+    private List<List<Purchase>> grow(List<MonteCarloResult> beam, int corridorLength, int purse) {
+
+        List<List<Purchase>> children = new ArrayList<List<Purchase>>();
+        Set<String> seen = new HashSet<String>();
+
+        for (MonteCarloResult parent : beam) {
+
+            List<Purchase> layout = parent.getLayout();
+            boolean[] taken = new boolean[corridorLength];
+            int left = purse;
+
+            for (Purchase p : layout) {
+                taken[p.getPosition()] = true;
+                left -= Game.costOf(p.getType());
+            }
+
+            for (int type = Game.FIRST_TOWER; type < Game.CONTINUE; type++) {
+
+                if (Game.costOf(type) > left) {
+                    continue;
+                }
+                for (int pos = 1; pos < corridorLength; pos++) {
+
+                    if (taken[pos]) {
+                        continue;
+                    }
+                    List<Purchase> child = new ArrayList<Purchase>(layout);
+                    child.add(new Purchase(type, pos, 0));
+
+                    if (seen.add(key(child))) {
+                        children.add(child);
+                    }
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Describes a layout in a way that does not depend on the order of its
+     * towers.
+     *
+     * @param layout
+     *            the layout
+     * @return the same string for any layout of the same towers
+     */
+    private static String key(List<Purchase> layout) {
+
+        long[] towers = new long[layout.size()];
+
+        for (int i = 0; i < towers.length; i++) {
+            towers[i] = ((long) layout.get(i).getPosition() << Integer.SIZE) | layout.get(i).getType();
+        }
+        Arrays.sort(towers);
+        return Arrays.toString(towers);
+    }
+}
@@ -0,0 +1,320 @@
+package towerdefence;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Shares the work of firing a timestep's towers over a pool of threads, for
+ * games with many thousands of towers. The outcome is exactly that of firing
+ * them one after another on a single thread.
+ *
+ * Firing is done in three steps. First each tower finds the enemies in its
+ * range by binary search, which is most of the work and can be done for every
+ * tower at once. Then the game picks each tower's target, in the order the
+ * towers fire, so the random numbers are drawn in the same order as ever. Last
+ * the damage is done: the enemies are split into stripes of slots, the hits are
+ * sorted by stripe, keeping their firing order, and each stripe's hits are
+ * done by a task of its own. No two tasks write to the same enemy, and every
+ * enemy takes its hits in the same order as before, so no locks are needed and
+ * the result does not depend on how the threads are scheduled.
+ *
+ * This only works for targeting that does not look at the enemies' health,
+ * since otherwise a tower's target depends on the damage done by the towers
+ * before it; see TargetingPolicy.readsHealth.
+ *
+ * @author 170021928
+ *
+ */
+public class ParallelFire {
+
+    /**
+     * Constructs a firing step that runs on the given pool.
+     *
+     * @param pool
+     *            the pool to share the work over
+     */
+    public ParallelFire(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * The fewest towers firing in a timestep for them to be shared over the
+     * pool. Fewer than this are fired quicker on one thread than the pool can
+     * be woken; FireBenchmark compares the two either side of it.
+     */
+    public static final int THRESHOLD = 2048;
+
+    /**
+     * The number of towers a task looks up itself rather than splitting them
+     * further.
+     */
+    private static final int BATCH = 512;
+
+    /**
+     * The fewest enemies in a stripe.
+     */
+    private static final int STRIPE = 4096;
+
+    /**
+     * The pool the work is shared over.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The position of each firing tower, in firing order.
+     */
+    private int[] positions = new int[0];
+
+    /**
+     * The damage done by each firing tower.
+     */
+    private int[] damages = new int[0];
+
+    /**
+     * The slot of the first enemy in range of each firing tower.
+     */
+    private int[] from = new int[0];
+
+    /**
+     * The slot of the enemy each firing tower hits, or -1 if it holds its
+     * fire.
+     */
+    private int[] targets = new int[0];
+
+    /**
+     * The firing towers that hit an enemy, by their place in the firing order,
+     * sorted by the stripe their target is in and in firing order within it.
+     */
+    private int[] byStripe = new int[0];
+
+    /**
+     * Where each stripe's hits start in byStripe, with one more entry for the
+     * end of the last.
+     */
+    private int[] stripeStart = new int[1];
+
+    /**
+     * The number of towers firing.
+     */
+    private int size;
+
+    /**
+     * Returns the pool the work is shared over.
+     *
+     * @return the pool
+     */
+    public ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Starts a timestep with the given number of towers firing.
+     *
+     * @param firing
+     *            the number of towers firing
+     */
+    public void clear(int firing) {
+
+        if (this.positions.length < firing) {
+            int capacity = Math.max(firing, 2 * this.positions.length);
+            this.positions = Arrays.copyOf(this.positions, capacity);
+            this.damages = Arrays.copyOf(this.damages, capacity);
+            this.from = Arrays.copyOf(this.from, capacity);
+            this.targets = Arrays.copyOf(this.targets, capacity);
+            this.byStripe = Arrays.copyOf(this.byStripe, capacity);
+        }
+        this.size = firing;
+    }
+
+    /**
+     * Sets out a tower that is firing.
+     *
+     * @param f
+     *            its place in the firing order, from 0
+     * @param tower
+     *            the tower
+     */
+    public void load(int f, Tower tower) {
+        this.positions[f] = tower.getPosition();
+        this.damages[f] = tower.getDamage();
+    }
+
+    /**
+     * Finds the first enemy in range of every firing tower, over the pool.
+     *
+     * @param index
+     *            the enemies, reset for this timestep
+     */
+    public void findInRange(final EnemyIndex index) {
+
+        this.pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                findInRange(index, 0, ParallelFire.this.size);
+            }
+        });
+    }
+
+    /**
+     * Finds the first enemy in range of the firing towers from (inclusive) to
+     * to (exclusive), splitting them into tasks while there are too many for
+     * one.
+     *
+     * @param index
+     *            the enemies
+     * @param lo
+     *            the first tower
+     * @param hi
+     *            one past the last tower
+     */
+    private void findInRange(final EnemyIndex index, final int lo, final int hi) {
+
+        if (hi - lo <= BATCH) {
+            for (int f = lo; f < hi; f++) {
+                this.from[f] = index.inRangeFrom(this.positions[f]);
+            }
+            return;
+        }
+
+        final int mid = (lo + hi) >>> 1;
+        RecursiveAction.invokeAll(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                findInRange(index, lo, mid);
+            }
+        }, new RecursiveAction() {
+            @Override
+            protected void compute() {
+                findInRange(index, mid, hi);
+            }
+        });
+    }
+
+    /**
+     * Returns the slot of the first enemy in range of a firing tower.
+     *
+     * @param f
+     *            its place in the firing order
+     * @return the slot, or the number of enemies if none is in range
+     */
+    public int getFrom(int f) {
+        return this.from[f];
+    }
+
+    /**
+     * Sets the enemy a firing tower hits.
+     *
+     * @param f
+     *            its place in the firing order
+     * @param target
+     *            the slot of the enemy, or -1 if the tower holds its fire
+     */
+    public void setTarget(int f, int target) {
+        this.targets[f] = target;
+    }
+
+    /**
+     * Does every firing tower's damage to its target, over the pool if there
+     * are enemies enough for more than one stripe.
+     *
+     * @param enemies
+     *            the enemies
+     */
+    public void hit(final EnemyStore enemies) {
+
+        int count = enemies.size();
+        int stripes = Math.max(1, Math.min(this.pool.getParallelism(), count / STRIPE));
+        final int width = (count + stripes - 1) / stripes;
+
+        if (stripes == 1) {
+            for (int f = 0; f < this.size; f++) {
+                if (this.targets[f] >= 0) {
+                    enemies.hit(this.targets[f], this.damages[f]);
+                }
+            }
+            return;
+        }
+
+        this.sortByStripe(stripes, width);
+
+        RecursiveAction[] tasks = new RecursiveAction[stripes];
+        for (int s = 0; s < stripes; s++) {
+
+            final int lo = this.stripeStart[s];
+            final int hi = this.stripeStart[s + 1];
+            tasks[s] = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    hit(enemies, lo, hi);
+                }
+            };
+        }
+
+        this.pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Sorts the hits by the stripe their target is in, keeping them in firing
+     * order within each stripe: a counting sort, so it takes one pass over the
+     * towers to count each stripe's hits and another to place them.
+     *
+     * @param stripes
+     *            the number of stripes
+     * @param width
+     *            the number of slots in each stripe
+     */
+    private void sortByStripe(int stripes, int width) {
+
+        if (this.stripeStart.length < stripes + 1) {
+            this.stripeStart = new int[stripes + 1];
+        }
+        int[] start = this.stripeStart;
+        Arrays.fill(start, 0, stripes + 1, 0);
+
+        // count each stripe's hits one place along, so the running total
+        // gives where each stripe starts
+        for (int f = 0; f < this.size; f++) {
+            if (this.targets[f] >= 0) {
+                start[this.targets[f] / width + 1]++;
+            }
+        }
+        for (int s = 1; s <= stripes; s++) {
+            start[s] += start[s - 1];
+        }
+
+        // place each hit, moving its stripe's start along past it; afterwards
+        // each start has reached the next stripe's, so they are shifted back
+        for (int f = 0; f < this.size; f++) {
+            if (this.targets[f] >= 0) {
+                this.byStripe[start[this.targets[f] / width]++] = f;
+            }
+        }
+        System.arraycopy(start, 0, start, 1, stripes);
+        start[0] = 0;
+    }
+
+    /**
+     * Does the damage of the hits from (inclusive) to to (exclusive) in
+     * byStripe, which are the hits on one stripe in firing order.
+     *
+     * @param enemies
+     *            the enemies
+     * @param lo
+     *            the first hit
+     * @param hi
+     *            one past the last hit
+     */
+    private void hit(EnemyStore enemies, int lo, int hi) {
+
+        for (int h = lo; h < hi; h++) {
+            int f = this.byStripe[h];
+            enemies.hit(this.targets[f], this.damages[f]);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package towerdefence;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Java Flight Recorder event for one phase of a timestep: fire,
+ * updateEnemies or generateEnemies. Off unless a recording turns it on; see
+ * TickEvent.
+ *
+ * @author 170021928
+ *
+ */
+@Name("towerdefence.Phase")
+@Label("Game Tick Phase")
+@Description("One phase of a game's timestep")
+@Category("Tower Defence")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("0 ms")
+final class PhaseEvent extends Event {
+
+    /**
+     * The event's type, which tells whether any recording has it on without
+     * making an event to ask.
+     */
+    static final EventType TYPE = EventType.getEventType(PhaseEvent.class);
+
+    /**
+     * Constructs an event for a phase.
+     *
+     * @param phase
+     *            the name of the phase, e.g. "fire"
+     * @param timeStep
+     *            the timestep it is part of
+     */
+    PhaseEvent(String phase, int timeStep) {
+        this.phase = phase;
+        this.timeStep = timeStep;
+    }
+
+    /**
+     * The name of the phase, after the method that plays it.
+     */
+    @Label("Phase")
+    String phase;
+
+    /**
+     * The timestep the phase is part of.
+     */
+    @Label("Time Step")
+    int timeStep;
+}
@@ -0,0 +1,113 @@
+package towerdefence;
+
+import java.util.Comparator;
+
+/**
+ * A scripted tower purchase, used in place of the buyTowers menu when the game
+ * is run headless. It says which kind of tower to buy, where to put it and at
+ * which tick to buy it.
+ *
+ * @author 170021928
+ *
+ */
+public class Purchase {
+
+    /**
+     * Constructs a purchase.
+     *
+     * @param type
+     *            the kind of tower, as numbered on the buy menu, e.g.
+     *            Game.CANNON
+     * @param position
+     *            the position of the tower from 0 to corridorLength-1
+     * @param tick
+     *            the tick at which the tower is bought. Tick 0 is before the
+     *            first enemies arrive.
+     */
+    public Purchase(int type, int position, int tick) {
+        this.type = type;
+        this.position = position;
+        this.tick = tick;
+    }
+
+    /**
+     * Orders purchases by the tick at which they are made.
+     */
+    static final Comparator<Purchase> BY_TICK = new Comparator<Purchase>() {
+        @Override
+        public int compare(Purchase a, Purchase b) {
+            return Integer.compare(a.tick, b.tick);
+        }
+    };
+
+    /**
+     * Reads a purchase written as type:position or type:position:tick, where
+     * type is the number of the tower on the buyTowers menu. If no tick is
+     * given the tower is bought at tick 0.
+     *
+     * @param text
+     *            the purchase as text, e.g. "3:10" for a Cannon at 10
+     * @return the purchase
+     * @throws IllegalArgumentException
+     *             if the text is not of that form
+     */
+    public static Purchase parse(String text) {
+
+        String[] parts = text.split(":");
+
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("Expected type:position[:tick] but got " + text);
+        }
+        int tick = parts.length == 3 ? Integer.parseInt(parts[2]) : 0;
+
+        return new Purchase(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), tick);
+    }
+
+    /**
+     * The kind of tower to buy.
+     */
+    private final int type;
+
+    /**
+     * The position to place the tower at.
+     */
+    private final int position;
+
+    /**
+     * The tick at which to buy the tower.
+     */
+    private final int tick;
+
+    /**
+     * Returns the kind of tower to buy.
+     *
+     * @return the number of the tower on the buy menu, e.g. Game.CANNON
+     */
+    public int getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns the position to place the tower at.
+     *
+     * @return the tower position
+     */
+    public int getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Returns the tick at which to buy the tower.
+     *
+     * @return the tick of the purchase
+     */
+    public int getTick() {
+        return this.tick;
+    }
+
+    @Override
+    public String toString() {
+
+        return "type = " + this.type + " position = " + this.position + " tick = " + this.tick;
+    }
+}
@@ -10,27 +10,11 @@ package towerdefence;
 public class Rat extends Enemy {
 
   /**
-   * Constructs a Rat object. The Enemy super constructor takes 3 parameters:
-   * the health, the step and the symbol associated with the rat.
+   * Constructs a Rat object, with the health, step and symbol of the Rat
+   * in the unit file.
    */
   public Rat() {
-    super(HEALTH, STEP, SYMBOL);
+    super(UnitRegistry.enemy("Rat"));
   }
 
-  /**
-   * The starting health of the enemy.
-   */
-  private static final int HEALTH = 1;
-
-  /**
-   * How many steps the enemy may more forward each turn.
-   */
-  private static final double STEP = 2.0;
-
-  /**
-   * Symbol is a string of characters which represent the enemy when drawn on
-   * the map.
-   */
-  private static final String SYMBOL = "  ~> ";
-
 }
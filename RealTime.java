@@ -0,0 +1,212 @@
+package towerdefence;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+
+/**
+ * Plays a game in real time: the enemies keep moving at a fixed number of
+ * timesteps a second while the player decides what to buy. Run it from the
+ * command line thus:
+ *
+ * java -cp towerDefence.jar towerdefence.RealTime <corridor length> [ticks per
+ * second] [seed] [spectator port]
+ *
+ * The game runs on the main thread, paced by a TickScheduler, and is drawn by a
+ * Renderer. The player's typing is read on a thread of its own, which hands
+ * each purchase to the game through Game.submit, so the game never waits for
+ * the keyboard. When the game is over the scheduler's jitter and overrun
+ * counts are printed, with how long each phase of a timestep took. While it
+ * runs those timings are shown over JMX, and over HTTP if the metrics port is
+ * set; see MetricsExporter. If a spectator port is given, the game can be
+ * watched live through a SpectatorServer on that port.
+ *
+ * @author 170021928
+ *
+ */
+public class RealTime implements Runnable {
+
+    /**
+     * Constructs a reader that buys towers in the given game.
+     *
+     * @param game
+     *            the game to send purchases to
+     * @param in
+     *            where the player's commands are read from
+     */
+    public RealTime(Game game, BufferedReader in) {
+        this.game = game;
+        this.in = in;
+    }
+
+    /**
+     * The number of timesteps a second, if no other number is given.
+     */
+    public static final int DEFAULT_TICKS_PER_SECOND = 20;
+
+    /**
+     * The game purchases are sent to.
+     */
+    private final Game game;
+
+    /**
+     * Where commands are read from.
+     */
+    private final BufferedReader in;
+
+    /**
+     * Starts reading commands on a thread of its own. The thread does not keep
+     * the program running once the game is over.
+     */
+    public void start() {
+        Thread thread = new Thread(this, "input");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reads commands until the input ends. Each is a tower number and a
+     * position, e.g. "1 5" or "1:5".
+     */
+    @Override
+    public void run() {
+
+        try {
+            String line;
+            while ((line = this.in.readLine()) != null) {
+
+                String[] words = line.trim().split("[\\s:]+");
+                try {
+                    if (words.length != 2) {
+                        throw new NumberFormatException(line);
+                    }
+                    this.game.submit(Integer.parseInt(words[0]), Integer.parseInt(words[1]));
+                } catch (NumberFormatException e) {
+                    System.out.println("Sorry, that's not an option.");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Plays a game in real time on the console until it is won or lost.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @param seed
+     *            the seed for the game's random number generator
+     * @param ticksPerSecond
+     *            the number of timesteps a second
+     * @return the outcome of the game
+     */
+    public static SimulationResult play(int corridorLength, long seed, int ticksPerSecond) {
+        return play(corridorLength, seed, ticksPerSecond, null);
+    }
+
+    /**
+     * Plays a game in real time on the console until it is won or lost, while
+     * spectators watch.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @param seed
+     *            the seed for the game's random number generator
+     * @param ticksPerSecond
+     *            the number of timesteps a second
+     * @param spectators
+     *            a started server to send the game to, or null if nobody is to
+     *            watch
+     * @return the outcome of the game
+     * @throws UncheckedIOException
+     *             if the metrics port cannot be listened on
+     */
+    public static SimulationResult play(int corridorLength, long seed, int ticksPerSecond,
+            SpectatorServer spectators) {
+
+        Game game = Game.newHeadless(corridorLength, seed);
+        game.setSpectators(spectators);
+        game.setReplies(System.out);
+        TickScheduler scheduler = new TickScheduler(ticksPerSecond);
+        TickMetrics metrics = new TickMetrics(1);
+        game.setMetrics(metrics);
+
+        MetricsExporter exporter;
+        try {
+            exporter = MetricsExporter.export(metrics, "game " + seed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        System.out.println("Welcome to ANIMAL ADVANCE!");
+        System.out.println("SEED: " + seed);
+        System.out.println("PURSE: " + game.getPurse());
+        for (int type = Game.FIRST_TOWER; type < Game.CONTINUE; type++) {
+            System.out.println("Type " + type + " and a position to buy a " + UnitRegistry.describeTower(type));
+        }
+        System.out.println("Positions are from 0 to " + (corridorLength - 1) + ". The enemies will not wait!");
+
+        Map map = new Map(corridorLength);
+        map.setMetrics(metrics);
+        Renderer renderer = new Renderer(map, ticksPerSecond);
+        game.setRenderer(renderer);
+        renderer.start();
+        new RealTime(game, new BufferedReader(new InputStreamReader(System.in))).start();
+
+        try {
+            return game.playRealTime(scheduler, Game.DEFAULT_MAX_TICKS);
+        } finally {
+            renderer.stop();
+            map.close();
+            exporter.close();
+            System.out.println(scheduler);
+            System.out.println(game.getEnemyStore());
+            System.out.println(metrics);
+        }
+    }
+
+    /**
+     * Runs a game in real time from the command line.
+     *
+     * @param args
+     *            the corridor length, then optionally the ticks per second, the
+     *            seed and the spectator port
+     * @throws IOException
+     *             if the spectator port cannot be listened on
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1) {
+            System.out.println("Usage: RealTime <corridor length> [ticks per second] [seed] [spectator port]");
+            return;
+        }
+
+        int ticksPerSecond = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_TICKS_PER_SECOND;
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+
+        SpectatorServer spectators = null;
+        if (args.length >= 4) {
+            spectators = SpectatorServer.open(Integer.parseInt(args[3]));
+            spectators.start();
+            System.out.println("Spectators can watch on " + spectators.getAddress());
+        }
+
+        try {
+            SimulationResult result = play(Integer.parseInt(args[0]), seed, ticksPerSecond, spectators);
+            if (result.getOutcome() > 0) {
+                System.out.println("You won!");
+            } else if (result.getOutcome() < 0) {
+                System.out.println("You lost.");
+            } else {
+                System.out.println("Time's up.");
+            }
+        } finally {
+            if (spectators != null) {
+                spectators.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package towerdefence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Keeps track of when towers are next loaded and ready to fire, so that a
+ * timestep only looks at the towers that fire in it rather than asking every
+ * tower.
+ *
+ * A tower fires on the timesteps that are a multiple of its load time, so all
+ * towers with the same load time fire together. The wheel keeps one group for
+ * each load time in use, listing its towers in index order, and each group
+ * waits in a hashed timing wheel in the bucket for its next firing timestep,
+ * modulo the number of buckets. A group whose load time is longer than a turn
+ * of the wheel stays in its bucket until the turn it is due in. Collecting a
+ * timestep takes the groups in its bucket that are due and merges their towers
+ * into index order, which is the order the game has always fired them in.
+ *
+ * Load times can be changed at any point, e.g. when a tower is upgraded or
+ * slowed; the tower just moves to the group for its new load time. Towers are
+ * known by their index in the game's tower list.
+ *
+ * @author 170021928
+ *
+ */
+public class ReloadWheel {
+
+    /**
+     * The towers with one load time.
+     */
+    private static final class Group {
+
+        /**
+         * Constructs an empty group.
+         *
+         * @param loadTime
+         *            the load time of its towers
+         */
+        Group(int loadTime) {
+            this.loadTime = loadTime;
+        }
+
+        /**
+         * The load time of the group's towers.
+         */
+        final int loadTime;
+
+        /**
+         * The towers, in index order. Only the first size are in use.
+         */
+        int[] towers = new int[4];
+
+        /**
+         * The number of towers.
+         */
+        int size;
+
+        /**
+         * The timestep the group next fires at.
+         */
+        int nextFire;
+    }
+
+    /**
+     * The number of buckets. A power of two, so a timestep's bucket is a mask
+     * of it.
+     */
+    private static final int SLOTS = 64;
+
+    /**
+     * The groups waiting in each bucket.
+     */
+    private final ArrayList<ArrayList<Group>> buckets = new ArrayList<ArrayList<Group>>(SLOTS);
+
+    /**
+     * The group for each load time in use.
+     */
+    private final HashMap<Integer, Group> groups = new HashMap<Integer, Group>();
+
+    /**
+     * The load time of each tower.
+     */
+    private int[] loadTimes = new int[0];
+
+    /**
+     * The number of towers.
+     */
+    private int towers;
+
+    /**
+     * The last timestep whose towers have been collected.
+     */
+    private int current;
+
+    /**
+     * The towers firing at the last timestep collected, in index order.
+     */
+    private int[] firing = new int[0];
+
+    /**
+     * Where groups are merged into before being copied back to firing.
+     */
+    private int[] merged = new int[0];
+
+    /**
+     * Constructs an empty wheel, starting before the first timestep.
+     */
+    public ReloadWheel() {
+        for (int i = 0; i < SLOTS; i++) {
+            this.buckets.add(new ArrayList<Group>());
+        }
+    }
+
+    /**
+     * Forgets every tower and starts again after the given timestep. The groups
+     * are kept for reuse, so that going back to an earlier point of a game
+     * allocates nothing.
+     *
+     * @param timeStep
+     *            the last timestep already played; the next collected is the
+     *            one after
+     */
+    public void reset(int timeStep) {
+
+        for (ArrayList<Group> bucket : this.buckets) {
+            bucket.clear();
+        }
+        this.towers = 0;
+        this.current = timeStep;
+
+        for (Group group : this.groups.values()) {
+            group.size = 0;
+            this.schedule(group, this.nextMultiple(group.loadTime));
+        }
+    }
+
+    /**
+     * Adds a tower, which first fires at the next timestep after the current
+     * one that is a multiple of its load time. Towers must be added in index
+     * order.
+     *
+     * @param loadTime
+     *            the number of timesteps between shots, at least 1
+     * @return the index of the tower
+     */
+    public int add(int loadTime) {
+
+        if (this.towers == this.loadTimes.length) {
+            int capacity = Math.max(4, 2 * this.towers);
+            this.loadTimes = Arrays.copyOf(this.loadTimes, capacity);
+            this.firing = Arrays.copyOf(this.firing, capacity);
+            this.merged = Arrays.copyOf(this.merged, capacity);
+        }
+        int tower = this.towers++;
+        this.loadTimes[tower] = loadTime;
+        this.insert(this.groupFor(loadTime), tower);
+        return tower;
+    }
+
+    /**
+     * Changes the load time of a tower. It next fires at the next timestep that
+     * is a multiple of the new load time.
+     *
+     * @param tower
+     *            the index of the tower
+     * @param loadTime
+     *            the number of timesteps between shots, at least 1
+     */
+    public void setLoadTime(int tower, int loadTime) {
+
+        if (this.loadTimes[tower] == loadTime) {
+            return;
+        }
+        Group from = this.groups.get(this.loadTimes[tower]);
+        int at = Arrays.binarySearch(from.towers, 0, from.size, tower);
+        System.arraycopy(from.towers, at + 1, from.towers, at, from.size - at - 1);
+        from.size--;
+
+        this.loadTimes[tower] = loadTime;
+        this.insert(this.groupFor(loadTime), tower);
+    }
+
+    /**
+     * Finds the group for a load time, making it if there is none.
+     *
+     * @param loadTime
+     *            the load time
+     * @return the group
+     */
+    private Group groupFor(int loadTime) {
+
+        Group group = this.groups.get(loadTime);
+        if (group == null) {
+            group = new Group(loadTime);
+            this.groups.put(loadTime, group);
+            this.schedule(group, this.nextMultiple(loadTime));
+        }
+        return group;
+    }
+
+    /**
+     * Puts a tower into a group, keeping the group in index order.
+     *
+     * @param group
+     *            the group
+     * @param tower
+     *            the index of the tower
+     */
+    private void insert(Group group, int tower) {
+
+        if (group.size == group.towers.length) {
+            group.towers = Arrays.copyOf(group.towers, 2 * group.size);
+        }
+        int at = group.size;
+        while (at > 0 && group.towers[at - 1] > tower) {
+            at--;
+        }
+        System.arraycopy(group.towers, at, group.towers, at + 1, group.size - at);
+        group.towers[at] = tower;
+        group.size++;
+    }
+
+    /**
+     * Returns the first timestep after the current one that is a multiple of a
+     * load time.
+     *
+     * @param loadTime
+     *            the load time
+     * @return the timestep
+     */
+    private int nextMultiple(int loadTime) {
+        return (this.current / loadTime + 1) * loadTime;
+    }
+
+    /**
+     * Puts a group in the bucket for the timestep it next fires at.
+     *
+     * @param group
+     *            the group
+     * @param timeStep
+     *            the timestep it fires at
+     */
+    private void schedule(Group group, int timeStep) {
+        group.nextFire = timeStep;
+        this.buckets.get(timeStep & (SLOTS - 1)).add(group);
+    }
+
+    /**
+     * Collects the towers that fire at the next timestep, and reloads them for
+     * their next shot. The timesteps must be collected one after another.
+     *
+     * @param timeStep
+     *            the timestep, one after the last collected
+     * @return the number of towers firing; their indexes are given by
+     *         getFiring
+     */
+    public int collect(int timeStep) {
+
+        this.current = timeStep;
+
+        ArrayList<Group> bucket = this.buckets.get(timeStep & (SLOTS - 1));
+        int fire = 0;
+
+        // take out the groups due now, and leave those due on a later turn
+        for (int i = bucket.size() - 1; i >= 0; i--) {
+
+            Group group = bucket.get(i);
+            if (group.nextFire != timeStep) {
+                continue;
+            }
+            bucket.set(i, bucket.get(bucket.size() - 1));
+            bucket.remove(bucket.size() - 1);
+            this.schedule(group, timeStep + group.loadTime);
+
+            fire = this.merge(fire, group);
+        }
+        return fire;
+    }
+
+    /**
+     * Merges a group's towers into those already firing, keeping them in
+     * index order.
+     *
+     * @param fire
+     *            the number of towers already firing
+     * @param group
+     *            the group to add
+     * @return the number of towers now firing
+     */
+    private int merge(int fire, Group group) {
+
+        if (fire == 0) {
+            System.arraycopy(group.towers, 0, this.firing, 0, group.size);
+            return group.size;
+        }
+
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < fire && j < group.size) {
+            if (this.firing[i] < group.towers[j]) {
+                this.merged[k++] = this.firing[i++];
+            } else {
+                this.merged[k++] = group.towers[j++];
+            }
+        }
+        while (i < fire) {
+            this.merged[k++] = this.firing[i++];
+        }
+        while (j < group.size) {
+            this.merged[k++] = group.towers[j++];
+        }
+
+        int[] swap = this.firing;
+        this.firing = this.merged;
+        this.merged = swap;
+        return k;
+    }
+
+    /**
+     * Returns a tower firing at the last timestep collected.
+     *
+     * @param i
+     *            which of the firing towers, from 0
+     * @return the index of the tower
+     */
+    public int getFiring(int i) {
+        return this.firing[i];
+    }
+}
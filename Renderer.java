@@ -0,0 +1,174 @@
+package towerdefence;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Draws frames on a thread of its own, so that however slow the terminal is,
+ * the game never waits for it. The game publishes frames into a single slot;
+ * each new frame replaces one that has not been drawn yet, so the renderer
+ * always draws the latest and simply drops any it could not keep up with. It
+ * draws no more than a set number of frames a second.
+ *
+ * @author 170021928
+ *
+ */
+public class Renderer implements Runnable {
+
+    /**
+     * Constructs a renderer that draws on the given map.
+     *
+     * @param map
+     *            the map to draw frames on. Only the render thread uses it
+     *            once the renderer has started.
+     * @param maxFps
+     *            the most frames to draw each second
+     */
+    public Renderer(Map map, int maxFps) {
+        this.map = map;
+        this.frameNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, maxFps);
+    }
+
+    /**
+     * The map frames are drawn on.
+     */
+    private final Map map;
+
+    /**
+     * The least time between two frames being drawn, in nanoseconds.
+     */
+    private final long frameNanos;
+
+    /**
+     * The latest frame not yet drawn, or null if there is none.
+     */
+    private final AtomicReference<Frame> latest = new AtomicReference<Frame>();
+
+    /**
+     * The render thread, once started.
+     */
+    private Thread thread;
+
+    /**
+     * Set to ask the render thread to finish.
+     */
+    private volatile boolean stopping;
+
+    /**
+     * The number of frames published.
+     */
+    private volatile long published;
+
+    /**
+     * The number of frames drawn.
+     */
+    private volatile long drawn;
+
+    /**
+     * Starts the render thread.
+     */
+    public void start() {
+        this.thread = new Thread(this, "renderer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Hands a frame to the renderer, replacing any frame it has not drawn yet.
+     * Never waits. Only the game thread may call this.
+     *
+     * @param frame
+     *            the frame to draw
+     */
+    public void publish(Frame frame) {
+        this.latest.set(frame);
+        this.published++;
+        LockSupport.unpark(this.thread);
+    }
+
+    /**
+     * Waits for the render thread to draw the last frame published, then stops
+     * it.
+     */
+    public void stop() {
+
+        this.stopping = true;
+        LockSupport.unpark(this.thread);
+
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of frames published.
+     *
+     * @return frames published
+     */
+    public long getPublished() {
+        return this.published;
+    }
+
+    /**
+     * Returns the number of frames drawn.
+     *
+     * @return frames drawn
+     */
+    public long getDrawn() {
+        return this.drawn;
+    }
+
+    /**
+     * Returns the number of frames dropped because a newer one replaced them
+     * before they could be drawn.
+     *
+     * @return frames dropped
+     */
+    public long getDropped() {
+        return this.published - this.drawn;
+    }
+
+    /**
+     * Draws the latest frame whenever there is one, waiting between frames so
+     * as not to go over the frame rate.
+     */
+    @Override
+    public void run() {
+
+        long next = System.nanoTime();
+
+        while (true) {
+
+            // read the flag first, so a frame published just before stopping
+            // is still drawn
+            boolean last = this.stopping;
+            Frame frame = this.latest.getAndSet(null);
+
+            if (frame != null) {
+
+                long wait;
+                while (!this.stopping && (wait = next - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+
+                // a newer frame may have arrived while waiting
+                Frame newer = this.latest.getAndSet(null);
+                if (newer != null) {
+                    frame = newer;
+                }
+
+                this.map.print(frame);
+                this.drawn++;
+                next = System.nanoTime() + this.frameNanos;
+
+            } else if (last) {
+                return;
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+}
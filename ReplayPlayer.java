@@ -0,0 +1,336 @@
+package towerdefence;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plays back a game recorded by ReplayRecorder. The file is mapped into memory
+ * and read once to find the purchases and keyframes; after that the game can be
+ * replayed headless at full speed, or the state at any tick can be had by
+ * loading the last keyframe before it and playing on from there. Run it from
+ * the command line thus:
+ *
+ * java -cp towerDefence.jar towerdefence.ReplayPlayer <replay file> <tick>
+ *
+ * which replays the whole game and prints the result, then, if a tick is
+ * given, draws the map as it was at that tick.
+ *
+ * @author 170021928
+ *
+ */
+public class ReplayPlayer {
+
+    /**
+     * Constructs a player for a mapped replay file, reading its header and
+     * finding its records.
+     *
+     * @param data
+     *            the contents of the replay file
+     */
+    private ReplayPlayer(ByteBuffer data) {
+
+        this.data = data;
+
+        if (data.getInt() != ReplayRecorder.MAGIC || data.getShort() != ReplayRecorder.VERSION) {
+            throw new IllegalArgumentException("Not a replay file, or a replay from another version");
+        }
+        this.corridorLength = data.getInt();
+        this.lanes = data.getInt();
+        this.seed = data.getLong();
+        this.keyframeInterval = data.getInt();
+
+        int policy = data.get();
+        if (policy < 0 || policy >= ReplayRecorder.POLICIES.length) {
+            throw new IllegalArgumentException("Damaged replay file: no targeting policy " + policy);
+        }
+        this.targeting = ReplayRecorder.POLICIES[policy];
+        this.difficulty = new DifficultyCurve(data.getInt(), data.getInt(), data.getInt());
+
+        while (data.hasRemaining()) {
+
+            byte kind = data.get();
+
+            if (kind == ReplayRecorder.PURCHASE) {
+                int tick = data.getInt();
+                int type = data.get();
+                this.script.add(new Purchase(type, data.getInt(), tick));
+
+            } else if (kind == ReplayRecorder.KEYFRAME) {
+                int tick = data.getInt();
+                int length = data.getInt();
+                this.addKeyframe(tick, data.position());
+                data.position(data.position() + length);
+
+            } else {
+                throw new IllegalArgumentException("Damaged replay file at byte " + (data.position() - 1));
+            }
+        }
+    }
+
+    /**
+     * The contents of the replay file.
+     */
+    private final ByteBuffer data;
+
+    /**
+     * The corridor length of the recorded game.
+     */
+    private final int corridorLength;
+
+    /**
+     * The number of lanes in the recorded game.
+     */
+    private final int lanes;
+
+    /**
+     * The seed of the recorded game.
+     */
+    private final long seed;
+
+    /**
+     * The number of timesteps between keyframes.
+     */
+    private final int keyframeInterval;
+
+    /**
+     * How the recorded game's towers picked their targets.
+     */
+    private final TargetingPolicy targeting;
+
+    /**
+     * How likely the recorded game's enemies were to spawn.
+     */
+    private final DifficultyCurve difficulty;
+
+    /**
+     * The towers bought during the game.
+     */
+    private final List<Purchase> script = new ArrayList<Purchase>();
+
+    /**
+     * The tick of each keyframe, in the order they appear in the file.
+     */
+    private int[] keyframeTicks = new int[0];
+
+    /**
+     * Where the state of each keyframe starts in the file.
+     */
+    private int[] keyframeOffsets = new int[0];
+
+    /**
+     * The number of keyframes.
+     */
+    private int keyframes;
+
+    /**
+     * Replays a game and prints the result, then draws the map at a tick if one
+     * is given.
+     *
+     * @param args
+     *            the replay file, then optionally a tick
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1) {
+            System.out.println("Usage: ReplayPlayer <replay file> [tick]");
+            return;
+        }
+
+        ReplayPlayer player = open(Paths.get(args[0]));
+        System.out.println(player.play());
+
+        if (args.length >= 2) {
+            Game game = player.seek(Integer.parseInt(args[1]));
+            Map map = new Map(player.getCorridorLength(), player.getLanes(), false,
+                    new OutputStreamWriter(System.out));
+            map.print(game.toFrame());
+        }
+    }
+
+    /**
+     * Opens a replay file.
+     *
+     * @param file
+     *            the replay file
+     * @return a player for it
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static ReplayPlayer open(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ReplayPlayer(data);
+        }
+    }
+
+    /**
+     * Returns the corridor length of the recorded game.
+     *
+     * @return the corridor length
+     */
+    public int getCorridorLength() {
+        return this.corridorLength;
+    }
+
+    /**
+     * Returns the number of lanes in the recorded game.
+     *
+     * @return the number of lanes
+     */
+    public int getLanes() {
+        return this.lanes;
+    }
+
+    /**
+     * Returns the seed of the recorded game.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Returns the number of timesteps between keyframes.
+     *
+     * @return the keyframe interval
+     */
+    public int getKeyframeInterval() {
+        return this.keyframeInterval;
+    }
+
+    /**
+     * Returns how the recorded game's towers picked their targets.
+     *
+     * @return the targeting policy
+     */
+    public TargetingPolicy getTargeting() {
+        return this.targeting;
+    }
+
+    /**
+     * Returns how likely the recorded game's enemies were to spawn.
+     *
+     * @return the difficulty curve
+     */
+    public DifficultyCurve getDifficulty() {
+        return this.difficulty;
+    }
+
+    /**
+     * Returns the towers bought during the game.
+     *
+     * @return the purchases, in the order they were made
+     */
+    public List<Purchase> getScript() {
+        return this.script;
+    }
+
+    /**
+     * Replays the whole game headless, from the start.
+     *
+     * @return the result of the game
+     */
+    public SimulationResult play() {
+        return this.newGame().play(this.script, Game.DEFAULT_MAX_TICKS);
+    }
+
+    /**
+     * Returns a headless game as it was once the given number of timesteps had
+     * been played, including the purchases made at that tick. It starts from
+     * the last keyframe at or before the tick, so only the timesteps after the
+     * keyframe are played. If the game ended before the tick, it is returned
+     * as it was when it ended. It can be played on with Game.resume.
+     *
+     * @param tick
+     *            the number of timesteps to have been played
+     * @return the game at that tick
+     */
+    public Game seek(int tick) {
+
+        Game game = this.newGame();
+        int keyframe = this.keyframeBefore(tick);
+
+        if (keyframe < 0) {
+            game.play(this.script, tick);
+        } else {
+            game.setScript(this.script);
+            ByteBuffer state = this.data.duplicate();
+            state.position(this.keyframeOffsets[keyframe]);
+            game.loadState(state);
+            game.resume(tick);
+        }
+        return game;
+    }
+
+    /**
+     * Makes a headless game set up as the recorded one was, ready to play from
+     * the start.
+     *
+     * @return the game
+     */
+    private Game newGame() {
+
+        Game game = Game.newHeadless(this.corridorLength, this.seed, this.lanes);
+        game.setTargeting(this.targeting);
+        game.setDifficulty(this.difficulty);
+        return game;
+    }
+
+    /**
+     * Finds the last keyframe at or before the given tick.
+     *
+     * @param tick
+     *            the tick
+     * @return the number of the keyframe, or -1 if there is none
+     */
+    private int keyframeBefore(int tick) {
+
+        int lo = 0;
+        int hi = this.keyframes;
+
+        // keyframes are written in tick order, so binary search for the first
+        // keyframe after the tick
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.keyframeTicks[mid] <= tick) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+
+    /**
+     * Notes where a keyframe is.
+     *
+     * @param tick
+     *            the tick of the keyframe
+     * @param offset
+     *            where its state starts in the file
+     */
+    private void addKeyframe(int tick, int offset) {
+
+        if (this.keyframes == this.keyframeTicks.length) {
+            int cap = Math.max(1, 2 * this.keyframes);
+            this.keyframeTicks = Arrays.copyOf(this.keyframeTicks, cap);
+            this.keyframeOffsets = Arrays.copyOf(this.keyframeOffsets, cap);
+        }
+        this.keyframeTicks[this.keyframes] = tick;
+        this.keyframeOffsets[this.keyframes] = offset;
+        this.keyframes++;
+    }
+}
@@ -0,0 +1,341 @@
+package towerdefence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records a game to a replay file as it is played, so that it can be played
+ * back exactly with ReplayPlayer. A game is decided entirely by its corridor
+ * length, its lanes, its seed, how its towers pick their targets, its
+ * difficulty curve and the towers bought, so that is nearly all the file
+ * holds: a header, then a small record for each tower bought. Every so
+ * often the whole state of the game is written as a keyframe too, so a player
+ * can jump to any point of a long game without playing it all from the start.
+ *
+ * The file is laid out as:
+ *
+ * header: int MAGIC, short VERSION, int corridor length, int lanes, long seed,
+ * int keyframe interval, byte targeting policy (its place in POLICIES), int
+ * initial inverse spawn rate, int minimum inverse spawn rate, int ramp ticks
+ *
+ * purchase: byte PURCHASE, int tick, byte type, int position
+ *
+ * keyframe: byte KEYFRAME, int tick, int length, then length bytes of state as
+ * written by Game.saveState
+ *
+ * @author 170021928
+ *
+ */
+public class ReplayRecorder {
+
+    /**
+     * Constructs a recorder writing to an open channel.
+     *
+     * @param channel
+     *            the channel of the replay file
+     * @param keyframeInterval
+     *            the number of timesteps between keyframes
+     * @param targeting
+     *            how the game's towers pick their targets
+     * @param difficulty
+     *            how likely the game's enemies are to spawn
+     */
+    private ReplayRecorder(FileChannel channel, int keyframeInterval, TargetingPolicy targeting,
+            DifficultyCurve difficulty) {
+        this.channel = channel;
+        this.keyframeInterval = keyframeInterval;
+        this.targeting = targeting;
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * The first four bytes of every replay file: "TDRP".
+     */
+    static final int MAGIC = 0x54445250;
+
+    /**
+     * The version of the file layout.
+     */
+    static final short VERSION = 6;
+
+    /**
+     * The targeting policies a replay can record, by the number it records
+     * them as. A game with a policy of its own cannot be recorded, as there
+     * would be no way to play it back.
+     */
+    static final TargetingPolicy[] POLICIES = {TargetingPolicy.RANDOM_IN_RANGE, TargetingPolicy.NEAREST_TO_CASTLE,
+        TargetingPolicy.LOWEST_HP, TargetingPolicy.HIGHEST_HP};
+
+    /**
+     * Record kind for a tower purchase.
+     */
+    static final byte PURCHASE = 1;
+
+    /**
+     * Record kind for a keyframe.
+     */
+    static final byte KEYFRAME = 2;
+
+    /**
+     * The number of timesteps between keyframes, if no other interval is given.
+     */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+
+    /**
+     * The size of the write buffer to begin with. It grows if a keyframe does
+     * not fit.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The channel of the replay file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The number of timesteps between keyframes.
+     */
+    private final int keyframeInterval;
+
+    /**
+     * How the recorded game's towers pick their targets.
+     */
+    private final TargetingPolicy targeting;
+
+    /**
+     * How likely the recorded game's enemies are to spawn.
+     */
+    private final DifficultyCurve difficulty;
+
+    /**
+     * Records waiting to be written to the file.
+     */
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * Creates a replay file, replacing any file already there, and writes its
+     * header.
+     *
+     * @param file
+     *            the file to record to
+     * @param corridorLength
+     *            the corridor length of the game
+     * @param seed
+     *            the seed of the game
+     * @return the recorder
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public static ReplayRecorder create(Path file, int corridorLength, long seed) throws IOException {
+        return create(file, corridorLength, Game.DEFAULT_LANES, seed, DEFAULT_KEYFRAME_INTERVAL,
+                TargetingPolicy.RANDOM_IN_RANGE, DifficultyCurve.DEFAULT);
+    }
+
+    /**
+     * Creates a replay file with keyframes at the given interval, replacing any
+     * file already there, and writes its header, for a game whose towers pick
+     * their targets at random and whose enemies spawn as they always have.
+     *
+     * @param file
+     *            the file to record to
+     * @param corridorLength
+     *            the corridor length of the game
+     * @param lanes
+     *            the number of lanes in the game
+     * @param seed
+     *            the seed of the game
+     * @param keyframeInterval
+     *            the number of timesteps between keyframes
+     * @return the recorder
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public static ReplayRecorder create(Path file, int corridorLength, int lanes, long seed, int keyframeInterval)
+            throws IOException {
+        return create(file, corridorLength, lanes, seed, keyframeInterval, TargetingPolicy.RANDOM_IN_RANGE,
+                DifficultyCurve.DEFAULT);
+    }
+
+    /**
+     * Creates a replay file with keyframes at the given interval, replacing any
+     * file already there, and writes its header.
+     *
+     * @param file
+     *            the file to record to
+     * @param corridorLength
+     *            the corridor length of the game
+     * @param lanes
+     *            the number of lanes in the game
+     * @param seed
+     *            the seed of the game
+     * @param keyframeInterval
+     *            the number of timesteps between keyframes
+     * @param targeting
+     *            how the game's towers pick their targets, one of POLICIES
+     * @param difficulty
+     *            how likely the game's enemies are to spawn
+     * @return the recorder
+     * @throws IOException
+     *             if the file cannot be created
+     * @throws IllegalArgumentException
+     *             if the targeting policy is not one a replay can record
+     */
+    public static ReplayRecorder create(Path file, int corridorLength, int lanes, long seed, int keyframeInterval,
+            TargetingPolicy targeting, DifficultyCurve difficulty) throws IOException {
+
+        byte policy = policyId(targeting);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ReplayRecorder recorder = new ReplayRecorder(channel, Math.max(1, keyframeInterval), targeting, difficulty);
+
+        recorder.buffer.putInt(MAGIC);
+        recorder.buffer.putShort(VERSION);
+        recorder.buffer.putInt(corridorLength);
+        recorder.buffer.putInt(lanes);
+        recorder.buffer.putLong(seed);
+        recorder.buffer.putInt(recorder.keyframeInterval);
+        recorder.buffer.put(policy);
+        recorder.buffer.putInt(difficulty.getInitialInverseRate());
+        recorder.buffer.putInt(difficulty.getMinimumInverseRate());
+        recorder.buffer.putInt(difficulty.getRampTicks());
+
+        return recorder;
+    }
+
+    /**
+     * Returns the number a replay records a targeting policy as.
+     *
+     * @param targeting
+     *            the policy
+     * @return its place in POLICIES
+     * @throws IllegalArgumentException
+     *             if it is not one of POLICIES
+     */
+    static byte policyId(TargetingPolicy targeting) {
+
+        for (int p = 0; p < POLICIES.length; p++) {
+            if (POLICIES[p] == targeting) {
+                return (byte) p;
+            }
+        }
+        throw new IllegalArgumentException("Only the targeting policies in TargetingPolicy can be recorded");
+    }
+
+    /**
+     * Returns how the recorded game's towers pick their targets.
+     *
+     * @return the targeting policy
+     */
+    public TargetingPolicy getTargeting() {
+        return this.targeting;
+    }
+
+    /**
+     * Returns how likely the recorded game's enemies are to spawn.
+     *
+     * @return the difficulty curve
+     */
+    public DifficultyCurve getDifficulty() {
+        return this.difficulty;
+    }
+
+    /**
+     * Returns the number of timesteps between keyframes.
+     *
+     * @return the keyframe interval
+     */
+    public int getKeyframeInterval() {
+        return this.keyframeInterval;
+    }
+
+    /**
+     * Records a tower purchase.
+     *
+     * @param tick
+     *            the tick the tower was bought at
+     * @param type
+     *            the kind of tower
+     * @param position
+     *            the position of the tower
+     */
+    void purchase(int tick, int type, int position) {
+
+        final int size = 1 + Integer.BYTES + 1 + Integer.BYTES;
+        this.reserve(size);
+
+        this.buffer.put(PURCHASE);
+        this.buffer.putInt(tick);
+        this.buffer.put((byte) type);
+        this.buffer.putInt(position);
+    }
+
+    /**
+     * Records the whole state of a game as a keyframe, and writes out
+     * everything recorded so far.
+     *
+     * @param game
+     *            the game being recorded
+     */
+    void keyframe(Game game) {
+
+        int length = game.stateSize();
+        this.reserve(1 + 2 * Integer.BYTES + length);
+
+        this.buffer.put(KEYFRAME);
+        this.buffer.putInt(game.getTicks());
+        this.buffer.putInt(length);
+        game.saveState(this.buffer);
+
+        this.flush();
+    }
+
+    /**
+     * Writes out everything recorded and closes the file.
+     */
+    public void close() {
+
+        this.flush();
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Makes sure the buffer has room for a record of the given size, writing
+     * out what it holds or growing it if need be.
+     *
+     * @param size
+     *            the size of the record in bytes
+     */
+    private void reserve(int size) {
+
+        if (this.buffer.remaining() < size) {
+            this.flush();
+        }
+        if (this.buffer.capacity() < size) {
+            this.buffer = ByteBuffer.allocateDirect(Math.max(size, 2 * this.buffer.capacity()));
+        }
+    }
+
+    /**
+     * Writes out everything in the buffer.
+     */
+    private void flush() {
+
+        this.buffer.flip();
+        try {
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.buffer.clear();
+    }
+}
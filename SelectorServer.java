@@ -0,0 +1,205 @@
+package towerdefence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.util.Iterator;
+
+/**
+ * What GameServer and SpectatorServer have in common: a channel listening on a
+ * TCP port or a Unix domain socket, and one thread that serves every
+ * connection with a Selector until the server is closed. The server says how
+ * to accept a connection, serve one whose channel is ready and disconnect
+ * one; this class runs the loop around them and cleans up once it stops.
+ *
+ * @author 170021928
+ *
+ */
+abstract class SelectorServer implements Runnable, Closeable {
+
+    /**
+     * Constructs a server that takes connections on a channel already bound.
+     *
+     * @param channel
+     *            the channel to accept connections on
+     * @throws IOException
+     *             if the selector cannot be opened
+     */
+    SelectorServer(ServerSocketChannel channel) throws IOException {
+        this.channel = channel;
+        this.selector = Selector.open();
+
+        channel.configureBlocking(false);
+        channel.register(this.selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * The channel connections are accepted on.
+     */
+    final ServerSocketChannel channel;
+
+    /**
+     * Waits for the channels that are ready.
+     */
+    final Selector selector;
+
+    /**
+     * True until the server is closed.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Opens a channel listening on the given address: a TCP port, or a Unix
+     * domain socket path, which must not exist yet.
+     *
+     * @param address
+     *            the address to listen on
+     * @param backlog
+     *            the most connections waiting to be accepted, or 0 for the
+     *            system's default
+     * @return the channel, bound
+     * @throws IOException
+     *             if the address cannot be listened on
+     */
+    static ServerSocketChannel bind(SocketAddress address, int backlog) throws IOException {
+
+        ServerSocketChannel channel = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        try {
+            channel.bind(address, backlog);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the address the server is listening on, e.g. to find the port
+     * when it was opened on port 0.
+     *
+     * @return the address
+     * @throws IOException
+     *             if the channel has been closed
+     */
+    public SocketAddress getAddress() throws IOException {
+        return this.channel.getLocalAddress();
+    }
+
+    /**
+     * Serves connections until the server is closed.
+     */
+    @Override
+    public void run() {
+
+        try {
+            while (this.running) {
+
+                this.selector.select();
+
+                Iterator<SelectionKey> ready = this.selector.selectedKeys().iterator();
+                while (ready.hasNext()) {
+
+                    SelectionKey key = ready.next();
+                    ready.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        this.accept();
+                        continue;
+                    }
+
+                    try {
+                        this.serve(key);
+                    } catch (IOException e) {
+                        // the connection has gone; the others are served on
+                        this.disconnect(key);
+                    }
+                }
+
+                this.selected();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.shutDown();
+        }
+    }
+
+    /**
+     * Accepts every connection waiting.
+     *
+     * @throws IOException
+     *             if the server's channel fails
+     */
+    abstract void accept() throws IOException;
+
+    /**
+     * Reads from or writes to a connection whose channel is ready.
+     *
+     * @param key
+     *            the connection's key
+     * @throws IOException
+     *             if the connection's channel fails, which disconnects it
+     */
+    abstract void serve(SelectionKey key) throws IOException;
+
+    /**
+     * Closes a connection.
+     *
+     * @param key
+     *            the connection's key
+     */
+    abstract void disconnect(SelectionKey key);
+
+    /**
+     * Closes every connection, as the server stops.
+     */
+    abstract void disconnectAll();
+
+    /**
+     * Does whatever else the server thread has to do after each round of
+     * ready channels. Nothing, unless a server says otherwise.
+     */
+    void selected() {
+    }
+
+    /**
+     * Stops the server. It finishes the round of ready channels in hand, then
+     * disconnects everyone and stops listening.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    /**
+     * Closes every connection, the selector and the server's channel, and
+     * removes a Unix domain socket's file.
+     */
+    private void shutDown() {
+
+        this.disconnectAll();
+        try {
+            SocketAddress address = this.channel.getLocalAddress();
+            this.selector.close();
+            this.channel.close();
+            if (address instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            }
+        } catch (IOException e) {
+            // nothing more can be done
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package towerdefence;
+
+import java.io.StringWriter;
+
+/**
+ * One player's game on a GameServer. The player sends lines of text and gets
+ * lines back, following the same menu as buyTowers: a tower number, then a
+ * position, or 4 to play the next timestep. The number and position may also
+ * come on one line, e.g. "2 7" or "2:7". Besides the menu, "map" draws the
+ * corridor, "menu" shows the options again and "quit" leaves the game.
+ *
+ * A session does no input or output itself: the server hands it each line and
+ * sends back what it returns, so the session holds nothing but the game and
+ * where the player is in the menu.
+ *
+ * @author 170021928
+ *
+ */
+public class Session {
+
+    /**
+     * Constructs a session for the given game, which should be headless and
+     * not yet begun.
+     *
+     * @param game
+     *            the player's game
+     */
+    public Session(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * The player's game.
+     */
+    private final Game game;
+
+    /**
+     * The tower the player has chosen and is to give a position for, or 0 if
+     * none.
+     */
+    private int choice;
+
+    /**
+     * True once the first enemies have arrived.
+     */
+    private boolean begun;
+
+    /**
+     * True once the game has been won or lost, or the player has quit.
+     */
+    private boolean over;
+
+    /**
+     * Returns the game being played.
+     *
+     * @return the game
+     */
+    public Game getGame() {
+        return this.game;
+    }
+
+    /**
+     * Tells whether the session has finished, so the player can be sent
+     * whatever is left and disconnected.
+     *
+     * @return true if the game is over or the player quit
+     */
+    public boolean isOver() {
+        return this.over;
+    }
+
+    /**
+     * Returns the lines to send a player who has just connected.
+     *
+     * @return the welcome and the menu
+     */
+    public String greet() {
+        return "Welcome to ANIMAL ADVANCE!\nSEED: " + this.game.getSeed() + "\n" + this.menu();
+    }
+
+    /**
+     * Returns the purse and the menu options.
+     *
+     * @return the menu, a line for each option
+     */
+    private String menu() {
+
+        StringBuilder text = new StringBuilder("PURSE: ").append(this.game.getPurse()).append('\n');
+        for (String option : Game.MENU) {
+            text.append(option).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Acts on a line from the player.
+     *
+     * @param line
+     *            the line, without its line ending
+     * @return the reply, which is empty or ends in a line ending
+     */
+    public String handle(String line) {
+
+        if (this.over) {
+            return "";
+        }
+
+        String[] words = line.trim().split("[\\s:]+");
+
+        switch (words[0].toLowerCase()) {
+            case "":
+                return "";
+            case "quit":
+                this.over = true;
+                return "Bye.\n";
+            case "map":
+                return this.map();
+            case "menu":
+                return this.menu();
+            default:
+                break;
+        }
+
+        try {
+            int number = Integer.parseInt(words[0]);
+
+            if (this.choice != 0) {
+                return this.place(number);
+            }
+            if (number == Game.CONTINUE) {
+                return this.turn();
+            }
+            if (number < Game.FIRST_TOWER || number > Game.CONTINUE) {
+                return "Sorry, that's not an option.\n";
+            }
+            if (Game.createTower(number, 0).getCost() > this.game.getPurse()) {
+                return "You don't have enough money for that. Choose another option.\n";
+            }
+
+            this.choice = number;
+            if (words.length >= 2) {
+                return this.place(Integer.parseInt(words[1]));
+            }
+            return this.askPosition();
+
+        } catch (NumberFormatException e) {
+            return "Give me a number, please.\n";
+        }
+    }
+
+    /**
+     * Returns the line asking for the position of the chosen tower.
+     *
+     * @return the question
+     */
+    private String askPosition() {
+        return "Choose tower position from 0 to " + (this.game.getCorridorLength() - 1) + "\n";
+    }
+
+    /**
+     * Buys the chosen tower at the given position. If the position is taken,
+     * asks again, as buyTowers does.
+     *
+     * @param pos
+     *            the position
+     * @return the reply
+     */
+    private String place(int pos) {
+
+        if (this.game.nextFreePosition(pos) != pos) {
+            return "You cannot place two towers in the same location.\n" + this.askPosition();
+        }
+
+        int type = this.choice;
+        this.choice = 0;
+
+        if (!this.game.buy(type, pos)) {
+            return "You don't have enough money for that. Choose another option.\n";
+        }
+        return "Bought. PURSE: " + this.game.getPurse() + "\n";
+    }
+
+    /**
+     * Plays the next timestep, bringing on the first enemies if they have not
+     * arrived yet.
+     *
+     * @return how the game stands
+     */
+    private String turn() {
+
+        if (!this.begun) {
+            this.begun = true;
+            this.game.begin();
+        }
+
+        int outcome = this.game.playTurn();
+
+        String status = "TICK: " + this.game.getTicks() + " PURSE: " + this.game.getPurse() + " ENEMIES: "
+                + this.game.getEnemyStore().size() + " KILLS: " + this.game.getKills() + "\n";
+
+        if (outcome != 0) {
+            this.over = true;
+            return status + (outcome > 0 ? "You won!\n" : "You lost.\n");
+        }
+        if (this.game.getTicks() >= Game.DEFAULT_MAX_TICKS) {
+            this.over = true;
+            return status + "Time's up.\n";
+        }
+        return status;
+    }
+
+    /**
+     * Draws the corridor around the enemy nearest the castle.
+     *
+     * @return the map, without colour
+     */
+    private String map() {
+
+        StringWriter text = new StringWriter();
+        new Map(this.game.getCorridorLength(), this.game.getLanes(), false, text).print(this.game.toFrame());
+        return text.toString();
+    }
+}
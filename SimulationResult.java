@@ -0,0 +1,121 @@
+package towerdefence;
+
+/**
+ * The outcome of a game played headless: whether it was won or lost, how long
+ * it lasted, and how the player ended up.
+ *
+ * @author 170021928
+ *
+ */
+public class SimulationResult {
+
+    /**
+     * Constructs a result.
+     *
+     * @param seed
+     *            the seed the game was played from
+     * @param outcome
+     *            1 if the game was won, -1 if it was lost, or 0 if it was
+     *            called off before either happened
+     * @param ticks
+     *            the number of timesteps survived
+     * @param coins
+     *            the coins left in the purse at the end
+     * @param kills
+     *            the number of enemies killed
+     */
+    SimulationResult(long seed, int outcome, int ticks, int coins, int kills) {
+        this.seed = seed;
+        this.outcome = outcome;
+        this.ticks = ticks;
+        this.coins = coins;
+        this.kills = kills;
+    }
+
+    /**
+     * The seed the game was played from.
+     */
+    private final long seed;
+
+    /**
+     * 1 if the game was won, -1 if it was lost, 0 if it was called off.
+     */
+    private final int outcome;
+
+    /**
+     * The number of timesteps survived.
+     */
+    private final int ticks;
+
+    /**
+     * The coins left in the purse at the end of the game.
+     */
+    private final int coins;
+
+    /**
+     * The number of enemies killed.
+     */
+    private final int kills;
+
+    /**
+     * Returns the seed the game was played from. Playing the same script from
+     * this seed gives the same result again.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Returns the outcome of the game, as given by Game.endGame.
+     *
+     * @return 1 if won, -1 if lost, 0 if called off
+     */
+    public int getOutcome() {
+        return this.outcome;
+    }
+
+    /**
+     * Returns whether the game was won.
+     *
+     * @return true if every enemy was killed
+     */
+    public boolean isWon() {
+        return this.outcome > 0;
+    }
+
+    /**
+     * Returns the number of timesteps survived.
+     *
+     * @return ticks survived
+     */
+    public int getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * Returns the coins left in the purse at the end of the game.
+     *
+     * @return coins left
+     */
+    public int getCoins() {
+        return this.coins;
+    }
+
+    /**
+     * Returns the number of enemies killed.
+     *
+     * @return kills
+     */
+    public int getKills() {
+        return this.kills;
+    }
+
+    @Override
+    public String toString() {
+
+        return "seed = " + this.seed + " outcome = " + this.outcome + " ticks = " + this.ticks + " coins = " + this.coins + " kills = "
+                + this.kills;
+    }
+}
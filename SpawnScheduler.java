@@ -0,0 +1,275 @@
+package towerdefence;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decides when and where enemies spawn. Rather than rolling for every lane on
+ * every timestep, it draws, once per enemy, the timestep at which its lane
+ * spawns next (see DifficultyCurve), so spawning costs in proportion to the
+ * enemies spawned rather than to the lanes times the timesteps, which matters
+ * on wide maps and in long games.
+ *
+ * Each lane waits in a hashed timing wheel, as towers do in the ReloadWheel,
+ * in the bucket for its next spawn modulo the number of buckets; a lane whose
+ * wait is longer than a turn of the wheel stays in its bucket until the turn
+ * it is due in. Collecting a timestep takes the lanes due from its bucket in
+ * the order they were put there, and each then draws the kind of its enemy and
+ * its next spawn from the game's random number generator in that order. The
+ * order of every bucket is saved with the game, so a seed always plays out the
+ * same, even from a saved state, without sorting the lanes each timestep.
+ *
+ * @author 170021928
+ *
+ */
+public class SpawnScheduler {
+
+    /**
+     * Constructs a scheduler for the given number of lanes, none of them yet
+     * due to spawn; see start.
+     *
+     * @param lanes
+     *            the number of lanes
+     */
+    public SpawnScheduler(int lanes) {
+        this.next = new int[lanes];
+        this.due = new int[lanes];
+        for (int b = 0; b < SLOTS; b++) {
+            this.buckets[b] = new int[4];
+        }
+    }
+
+    /**
+     * The number of buckets. A power of two, so a timestep's bucket is a mask
+     * of it.
+     */
+    private static final int SLOTS = 64;
+
+    /**
+     * The kind of enemy each draw from 0 to the total of the spawn weights
+     * picks, by draw.
+     */
+    private static final byte[] KINDS = kinds();
+
+    /**
+     * The timestep at which each lane spawns next.
+     */
+    private final int[] next;
+
+    /**
+     * The lanes waiting in each bucket. Only the first of each are in use, as
+     * many as the bucket's size.
+     */
+    private final int[][] buckets = new int[SLOTS][];
+
+    /**
+     * The number of lanes waiting in each bucket.
+     */
+    private final int[] sizes = new int[SLOTS];
+
+    /**
+     * The lanes due at the last timestep collected, in the order they spawn.
+     */
+    private final int[] due;
+
+    /**
+     * Draws the first spawn of every lane, from the given timestep on.
+     *
+     * @param timeStep
+     *            the first timestep a lane may spawn on
+     * @param curve
+     *            the difficulty curve
+     * @param random
+     *            the game's random number generator
+     */
+    public void start(int timeStep, DifficultyCurve curve, GameRandom random) {
+
+        Arrays.fill(this.sizes, 0);
+        for (int lane = 0; lane < this.next.length; lane++) {
+            this.schedule(lane, timeStep, curve, random);
+        }
+    }
+
+    /**
+     * Returns the number of lanes.
+     *
+     * @return the lanes
+     */
+    public int getLanes() {
+        return this.next.length;
+    }
+
+    /**
+     * Takes the lanes due to spawn at the given timestep out of the wheel.
+     * Timesteps must be collected in order, none skipped. Each lane collected
+     * must be scheduled again once it has spawned.
+     *
+     * @param timeStep
+     *            the timestep
+     * @return the number of lanes due; see getDue
+     */
+    public int collect(int timeStep) {
+
+        int b = timeStep & (SLOTS - 1);
+        int[] bucket = this.buckets[b];
+        int kept = 0;
+        int count = 0;
+
+        for (int i = 0; i < this.sizes[b]; i++) {
+            int lane = bucket[i];
+            if (this.next[lane] <= timeStep) {
+                this.due[count++] = lane;
+            } else {
+                bucket[kept++] = lane;
+            }
+        }
+        this.sizes[b] = kept;
+        return count;
+    }
+
+    /**
+     * Returns a lane due at the last timestep collected.
+     *
+     * @param i
+     *            from 0 to one less than the number collect returned
+     * @return the lane
+     */
+    public int getDue(int i) {
+        return this.due[i];
+    }
+
+    /**
+     * Draws the next spawn of a lane and puts it back in the wheel.
+     *
+     * @param lane
+     *            the lane, not in the wheel
+     * @param from
+     *            the first timestep it may spawn on
+     * @param curve
+     *            the difficulty curve
+     * @param random
+     *            the game's random number generator
+     */
+    public void schedule(int lane, int from, DifficultyCurve curve, GameRandom random) {
+
+        // taken from 1 so it is never 0
+        this.next[lane] = curve.spawnTick(from, 1.0 - random.nextDouble());
+        this.put(lane);
+    }
+
+    /**
+     * Draws the kind of a new enemy, each in proportion to its spawn weight in
+     * the unit file.
+     *
+     * @param random
+     *            the game's random number generator
+     * @return the type number of the enemy
+     */
+    public static byte nextKind(GameRandom random) {
+        return KINDS[random.nextInt(KINDS.length)];
+    }
+
+    /**
+     * Returns the timestep at which a lane spawns next.
+     *
+     * @param lane
+     *            the lane
+     * @return the timestep
+     */
+    public int getNext(int lane) {
+        return this.next[lane];
+    }
+
+    /**
+     * Returns the number of bytes saveState writes.
+     *
+     * @return the size of the saved state
+     */
+    int stateSize() {
+        return Integer.BYTES * (SLOTS + 2 * this.next.length);
+    }
+
+    /**
+     * Writes the next spawn of every lane to the buffer, then the lanes
+     * waiting in each bucket in order.
+     *
+     * @param out
+     *            the buffer to write to, with at least stateSize() bytes free
+     */
+    void saveState(ByteBuffer out) {
+
+        for (int t : this.next) {
+            out.putInt(t);
+        }
+        for (int b = 0; b < SLOTS; b++) {
+            out.putInt(this.sizes[b]);
+            for (int i = 0; i < this.sizes[b]; i++) {
+                out.putInt(this.buckets[b][i]);
+            }
+        }
+    }
+
+    /**
+     * Replaces every lane's next spawn and place in the wheel with those
+     * written by saveState for the same number of lanes. The buckets are kept
+     * for reuse, so going back to an earlier point of a game allocates nothing
+     * once they have grown.
+     *
+     * @param in
+     *            the buffer to read from
+     */
+    void loadState(ByteBuffer in) {
+
+        for (int lane = 0; lane < this.next.length; lane++) {
+            this.next[lane] = in.getInt();
+        }
+        for (int b = 0; b < SLOTS; b++) {
+            int size = in.getInt();
+            if (this.buckets[b].length < size) {
+                this.buckets[b] = new int[size];
+            }
+            for (int i = 0; i < size; i++) {
+                this.buckets[b][i] = in.getInt();
+            }
+            this.sizes[b] = size;
+        }
+    }
+
+    /**
+     * Puts a lane into the bucket for its next spawn.
+     *
+     * @param lane
+     *            the lane
+     */
+    private void put(int lane) {
+
+        int b = this.next[lane] & (SLOTS - 1);
+        if (this.sizes[b] == this.buckets[b].length) {
+            this.buckets[b] = Arrays.copyOf(this.buckets[b], 2 * this.sizes[b]);
+        }
+        this.buckets[b][this.sizes[b]++] = lane;
+    }
+
+    /**
+     * Lays out the kinds of enemy for nextKind: each kind as many times as its
+     * spawn weight, in the order of the unit file.
+     *
+     * @return the kind for each draw
+     */
+    private static byte[] kinds() {
+
+        int total = 0;
+        for (int t = 0; t < UnitRegistry.enemyCount(); t++) {
+            total += UnitRegistry.enemy(t).getSpawnWeight();
+        }
+
+        byte[] kinds = new byte[total];
+        int k = 0;
+        for (int t = 0; t < UnitRegistry.enemyCount(); t++) {
+            for (int w = 0; w < UnitRegistry.enemy(t).getSpawnWeight(); w++) {
+                kinds[k++] = (byte) t;
+            }
+        }
+        return kinds;
+    }
+}
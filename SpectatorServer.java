@@ -0,0 +1,548 @@
+package towerdefence;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets spectators watch a game live over a TCP port or a Unix domain socket. A
+ * spectator who connects is sent a keyframe of every tower and enemy, then a
+ * delta after every timestep, in the format written by DeltaEncoder.
+ * Spectators only listen; anything they send is ignored.
+ *
+ * The game thread encodes each timestep once, into a direct buffer taken from a
+ * pool, whatever the number of spectators, and hands it to the server's own
+ * thread. That thread serves every spectator with a Selector, writing each one
+ * a read-only duplicate of the same buffer, so the bytes are never copied per
+ * spectator. A buffer goes back to the pool once every spectator it was
+ * queued for has been sent it.
+ *
+ * A spectator who falls too far behind has their backlog dropped, and is sent
+ * a fresh keyframe to start again from. While nobody is watching, nothing is
+ * encoded at all.
+ *
+ * @author 170021928
+ *
+ */
+public class SpectatorServer extends SelectorServer {
+
+    /**
+     * Constructs a server that takes spectators on a channel already bound.
+     *
+     * @param channel
+     *            the channel to accept spectators on
+     * @throws IOException
+     *             if the selector cannot be opened
+     */
+    public SpectatorServer(ServerSocketChannel channel) throws IOException {
+        super(channel);
+    }
+
+    /**
+     * The most messages queued for a spectator before they are taken to have
+     * fallen behind.
+     */
+    private static final int MAX_BACKLOG = 64;
+
+    /**
+     * The size of the first buffers made for the pool.
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * An encoded message, shared by every spectator it is queued for.
+     */
+    private static final class Message {
+
+        /**
+         * Constructs a message.
+         *
+         * @param data
+         *            the encoded bytes, ready to read
+         * @param keyframe
+         *            true for a keyframe
+         * @param everyone
+         *            true if every spectator is to be sent it
+         */
+        Message(ByteBuffer data, boolean keyframe, boolean everyone) {
+            this.data = data;
+            this.keyframe = keyframe;
+            this.everyone = everyone;
+        }
+
+        /**
+         * The encoded bytes, from position to limit. Never written to while
+         * the message is being sent.
+         */
+        final ByteBuffer data;
+
+        /**
+         * True for a keyframe, false for a delta.
+         */
+        final boolean keyframe;
+
+        /**
+         * True if every spectator is to be sent it, not only those waiting for
+         * a keyframe or only those following the deltas.
+         */
+        final boolean everyone;
+
+        /**
+         * The number of spectators it is queued for and who have not yet been
+         * sent all of it. Only the server thread uses this.
+         */
+        int refs;
+    }
+
+    /**
+     * A connected spectator.
+     */
+    private static final class Spectator {
+
+        /**
+         * Constructs a spectator who has just connected.
+         *
+         * @param channel
+         *            the spectator's channel
+         */
+        Spectator(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * The spectator's channel.
+         */
+        final SocketChannel channel;
+
+        /**
+         * The messages queued for the spectator, oldest first.
+         */
+        final ArrayDeque<Message> queue = new ArrayDeque<Message>();
+
+        /**
+         * The part of the oldest message still to be written, or null if none
+         * of it has been written yet.
+         */
+        ByteBuffer writing;
+
+        /**
+         * True once the spectator has been sent a keyframe, so the deltas that
+         * follow make sense to them.
+         */
+        boolean following;
+    }
+
+    /**
+     * Where whatever spectators send is read into and thrown away.
+     */
+    private final ByteBuffer scratch = ByteBuffer.allocate(256);
+
+    /**
+     * The spectators connected. Only the server thread uses this.
+     */
+    private final List<Spectator> spectators = new ArrayList<Spectator>();
+
+    /**
+     * The number of spectators connected, for the game thread to read.
+     */
+    private volatile int watching;
+
+    /**
+     * The messages encoded by the game thread and not yet queued for the
+     * spectators.
+     */
+    private final ConcurrentLinkedQueue<Message> outbox = new ConcurrentLinkedQueue<Message>();
+
+    /**
+     * The buffers that no spectator is being sent, for the game thread to
+     * encode into.
+     */
+    private final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    /**
+     * Set by the server thread when a spectator needs a keyframe.
+     */
+    private final AtomicBoolean keyframeWanted = new AtomicBoolean();
+
+    /**
+     * Finds what has changed from one timestep to the next. Only the game
+     * thread uses this.
+     */
+    private final DeltaEncoder encoder = new DeltaEncoder();
+
+    /**
+     * True if the encoder's last state is not the game's last timestep, e.g.
+     * because nobody was watching or the game was restored, so the next message
+     * must be a keyframe for everyone. Only the game thread uses this.
+     */
+    private boolean stale = true;
+
+    /**
+     * The number of messages encoded.
+     */
+    private volatile long encoded;
+
+    /**
+     * Opens a server on the given address; see SelectorServer.bind.
+     *
+     * @param address
+     *            the address to listen on
+     * @return the server, ready to run
+     * @throws IOException
+     *             if the address cannot be listened on
+     */
+    public static SpectatorServer open(SocketAddress address) throws IOException {
+
+        ServerSocketChannel channel = bind(address, 0);
+        try {
+            return new SpectatorServer(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a server on a TCP port of this machine.
+     *
+     * @param port
+     *            the port, or 0 for any free port
+     * @return the server, ready to run
+     * @throws IOException
+     *             if the port cannot be listened on
+     */
+    public static SpectatorServer open(int port) throws IOException {
+        return open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Starts serving spectators on a thread of its own. The thread does not
+     * keep the program running once the game is over.
+     */
+    public void start() {
+        Thread thread = new Thread(this, "spectators");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the number of spectators connected.
+     *
+     * @return the number of spectators
+     */
+    public int getWatching() {
+        return this.watching;
+    }
+
+    /**
+     * Returns the number of keyframes and deltas encoded.
+     *
+     * @return the number of messages
+     */
+    public long getEncoded() {
+        return this.encoded;
+    }
+
+    /**
+     * Encodes the game as it stands after a timestep and hands it to the
+     * spectators. Never waits for them. Only the game thread may call this.
+     *
+     * @param timeStep
+     *            the timestep
+     * @param enemies
+     *            the enemies
+     * @param towers
+     *            the towers
+     */
+    void publish(int timeStep, EnemyStore enemies, List<Tower> towers) {
+
+        if (this.watching == 0) {
+            this.stale = true;
+            return;
+        }
+
+        if (this.stale) {
+            this.keyframeWanted.set(false);
+            this.post(timeStep, enemies, towers, true, true);
+            this.stale = false;
+        } else {
+            this.post(timeStep, enemies, towers, false, false);
+            if (this.keyframeWanted.getAndSet(false)) {
+                this.post(timeStep, enemies, towers, true, false);
+            }
+        }
+        this.selector.wakeup();
+    }
+
+    /**
+     * Tells the server that the game has jumped, e.g. back to a saved state,
+     * so the next message is a keyframe for everyone. Only the game thread may
+     * call this.
+     */
+    void restart() {
+        this.stale = true;
+    }
+
+    /**
+     * Encodes a message into a buffer from the pool and puts it in the outbox.
+     *
+     * @param timeStep
+     *            the timestep
+     * @param enemies
+     *            the enemies
+     * @param towers
+     *            the towers
+     * @param keyframe
+     *            true for a keyframe, false for a delta
+     * @param everyone
+     *            true if every spectator is to be sent it
+     */
+    private void post(int timeStep, EnemyStore enemies, List<Tower> towers, boolean keyframe, boolean everyone) {
+
+        int size = keyframe ? this.encoder.keyframeSize(enemies, towers) : this.encoder.deltaSize(enemies, towers);
+
+        ByteBuffer buffer = this.pool.poll();
+        if (buffer == null || buffer.capacity() < size) {
+            int capacity = Math.max(size, buffer == null ? BUFFER_SIZE : 2 * buffer.capacity());
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        buffer.clear();
+
+        if (keyframe) {
+            this.encoder.keyframe(buffer, timeStep, enemies, towers);
+        } else {
+            this.encoder.delta(buffer, timeStep, enemies, towers);
+        }
+        buffer.flip();
+
+        this.outbox.offer(new Message(buffer, keyframe, everyone));
+        this.encoded++;
+    }
+
+    /**
+     * Throws away what a spectator sends, and sends them what is queued for
+     * them.
+     */
+    @Override
+    void serve(SelectionKey key) throws IOException {
+
+        Spectator spectator = (Spectator) key.attachment();
+        if (key.isReadable()) {
+            this.discard(key, spectator);
+        }
+        if (key.isValid() && key.isWritable()) {
+            this.flush(key, spectator);
+        }
+    }
+
+    /**
+     * Queues whatever the game thread has sent since the last round.
+     */
+    @Override
+    void selected() {
+        this.deliver();
+    }
+
+    /**
+     * Accepts every spectator waiting to connect, and asks the game thread
+     * for a keyframe for them.
+     *
+     * @throws IOException
+     *             if the server's channel fails
+     */
+    @Override
+    void accept() throws IOException {
+
+        SocketChannel client;
+
+        while ((client = this.channel.accept()) != null) {
+            client.configureBlocking(false);
+            Spectator spectator = new Spectator(client);
+            client.register(this.selector, SelectionKey.OP_READ, spectator);
+            this.spectators.add(spectator);
+            this.watching++;
+            this.keyframeWanted.set(true);
+        }
+    }
+
+    /**
+     * Reads and throws away whatever a spectator has sent, and notices when
+     * they have gone.
+     *
+     * @param key
+     *            the spectator's key
+     * @param spectator
+     *            the spectator
+     * @throws IOException
+     *             if the spectator's channel fails
+     */
+    private void discard(SelectionKey key, Spectator spectator) throws IOException {
+
+        int n;
+        while ((n = spectator.channel.read(this.scratch)) > 0) {
+            this.scratch.clear();
+        }
+        this.scratch.clear();
+        if (n < 0) {
+            this.disconnect(key, spectator);
+        }
+    }
+
+    /**
+     * Queues the messages from the outbox for the spectators they are meant
+     * for, and starts sending them.
+     */
+    private void deliver() {
+
+        Message message;
+
+        while ((message = this.outbox.poll()) != null) {
+
+            for (int s = 0; s < this.spectators.size(); s++) {
+
+                Spectator spectator = this.spectators.get(s);
+
+                if (spectator.queue.size() >= MAX_BACKLOG) {
+                    this.fallBehind(spectator);
+                }
+                if (message.everyone || message.keyframe != spectator.following) {
+                    if (message.keyframe) {
+                        spectator.following = true;
+                    }
+                    spectator.queue.add(message);
+                    message.refs++;
+                }
+            }
+            if (message.refs == 0) {
+                this.pool.offer(message.data);
+            }
+        }
+
+        for (int s = this.spectators.size() - 1; s >= 0; s--) {
+            Spectator spectator = this.spectators.get(s);
+            SelectionKey key = spectator.channel.keyFor(this.selector);
+            try {
+                this.flush(key, spectator);
+            } catch (IOException e) {
+                this.disconnect(key, spectator);
+            }
+        }
+    }
+
+    /**
+     * Drops the backlog of a spectator who is not keeping up, and asks for a
+     * keyframe for them to start again from. A message part-way through being
+     * written is kept, so the stream is not cut off mid-message.
+     *
+     * @param spectator
+     *            the spectator
+     */
+    private void fallBehind(Spectator spectator) {
+
+        Message partial = spectator.writing != null ? spectator.queue.pollFirst() : null;
+
+        while (!spectator.queue.isEmpty()) {
+            this.release(spectator.queue.pollFirst());
+        }
+        if (partial != null) {
+            spectator.queue.add(partial);
+        }
+        spectator.following = false;
+        this.keyframeWanted.set(true);
+    }
+
+    /**
+     * Writes as much of a spectator's queue as their channel will take.
+     *
+     * @param key
+     *            the spectator's key
+     * @param spectator
+     *            the spectator
+     * @throws IOException
+     *             if the spectator's channel fails
+     */
+    private void flush(SelectionKey key, Spectator spectator) throws IOException {
+
+        if (key == null || !key.isValid()) {
+            return;
+        }
+
+        while (!spectator.queue.isEmpty()) {
+
+            if (spectator.writing == null) {
+                spectator.writing = spectator.queue.peekFirst().data.asReadOnlyBuffer();
+            }
+            spectator.channel.write(spectator.writing);
+
+            if (spectator.writing.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            spectator.writing = null;
+            this.release(spectator.queue.pollFirst());
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Notes that one more spectator is done with a message, and returns its
+     * buffer to the pool once they all are.
+     *
+     * @param message
+     *            the message
+     */
+    private void release(Message message) {
+        if (--message.refs == 0) {
+            this.pool.offer(message.data);
+        }
+    }
+
+    /**
+     * Closes a spectator's connection and lets go of their queue.
+     *
+     * @param key
+     *            the spectator's key
+     * @param spectator
+     *            the spectator
+     */
+    private void disconnect(SelectionKey key, Spectator spectator) {
+
+        if (!this.spectators.remove(spectator)) {
+            return;
+        }
+        key.cancel();
+        this.watching--;
+        while (!spectator.queue.isEmpty()) {
+            this.release(spectator.queue.pollFirst());
+        }
+        try {
+            spectator.channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+
+    @Override
+    void disconnect(SelectionKey key) {
+        this.disconnect(key, (Spectator) key.attachment());
+    }
+
+    @Override
+    void disconnectAll() {
+
+        for (int s = this.spectators.size() - 1; s >= 0; s--) {
+            Spectator spectator = this.spectators.get(s);
+            this.disconnect(spectator.channel.keyFor(this.selector), spectator);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package towerdefence;
+
+/**
+ * Decides which of the enemies in range a tower fires at. Every policy works
+ * from the EnemyIndex, so choosing a target never means looking at every enemy.
+ *
+ * @author 170021928
+ *
+ */
+public interface TargetingPolicy {
+
+    /**
+     * Picks any enemy in range, each equally likely. This is how the game has
+     * always played.
+     */
+    TargetingPolicy RANDOM_IN_RANGE = new TargetingPolicy() {
+        @Override
+        public int choose(EnemyIndex index, int from, GameRandom random) {
+            return from + random.nextInt(index.size() - from);
+        }
+
+        @Override
+        public boolean readsHealth() {
+            return false;
+        }
+    };
+
+    /**
+     * Picks the enemy in range that is closest to the castle.
+     */
+    TargetingPolicy NEAREST_TO_CASTLE = new TargetingPolicy() {
+        @Override
+        public int choose(EnemyIndex index, int from, GameRandom random) {
+            return from;
+        }
+
+        @Override
+        public boolean readsHealth() {
+            return false;
+        }
+    };
+
+    /**
+     * Picks the enemy in range with the least health, of those not already
+     * killed by the towers that fired before it this timestep.
+     */
+    TargetingPolicy LOWEST_HP = new TargetingPolicy() {
+        @Override
+        public int choose(EnemyIndex index, int from, GameRandom random) {
+            return index.lowestHealth(from);
+        }
+    };
+
+    /**
+     * Picks the enemy in range with the most health.
+     */
+    TargetingPolicy HIGHEST_HP = new TargetingPolicy() {
+        @Override
+        public int choose(EnemyIndex index, int from, GameRandom random) {
+            return index.highestHealth(from);
+        }
+    };
+
+    /**
+     * Chooses the enemy a tower fires at.
+     *
+     * @param index
+     *            the enemies, sorted by position from highest to lowest
+     * @param from
+     *            the index of the first enemy in range; every enemy from here
+     *            to the end of the index is in range, and there is at least one
+     * @param random
+     *            the game's random number generator
+     * @return the index of the enemy to fire at
+     */
+    int choose(EnemyIndex index, int from, GameRandom random);
+
+    /**
+     * Tells whether the policy looks at the enemies' health. If it does, a
+     * tower's target depends on the damage done by the towers that fired
+     * before it in the same timestep, so the towers must look for their
+     * targets one after another. If not, they can look for them all at once.
+     * A policy is taken to look at health unless it says otherwise.
+     *
+     * @return true if the choice depends on the enemies' health
+     */
+    default boolean readsHealth() {
+        return true;
+    }
+}
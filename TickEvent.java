@@ -0,0 +1,94 @@
+package towerdefence;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Java Flight Recorder event for one timestep of a game, i.e. one call of
+ * Game.advance, with a PhaseEvent for each phase inside it. With them in a
+ * recording, a slow timestep shows up on the same timeline as the garbage
+ * collections, allocations and lock waits around it.
+ *
+ * Like the phase events, it is off unless a recording turns it on, and then
+ * only timesteps over its threshold are recorded. The settings file
+ * towerdefence.jfc turns both on alongside the JDK's own settings, e.g. for a
+ * running server:
+ *
+ * jcmd <pid> JFR.start settings=default settings=towerdefence.jfc filename=game.jfr
+ *
+ * While they are off, a timestep pays for a check of TYPE and PhaseEvent.TYPE
+ * and nothing more: no event is made unless one of them is on.
+ *
+ * @author 170021928
+ *
+ */
+@Name("towerdefence.Tick")
+@Label("Game Tick")
+@Description("One timestep of a game: its towers firing, enemies moving and new enemies spawning")
+@Category("Tower Defence")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("0 ms")
+final class TickEvent extends Event {
+
+    /**
+     * The event's type, which tells whether any recording has it on without
+     * making an event to ask.
+     */
+    static final EventType TYPE = EventType.getEventType(TickEvent.class);
+
+    /**
+     * The timestep played.
+     */
+    @Label("Time Step")
+    int timeStep;
+
+    /**
+     * The seed of the game, which tells its games apart.
+     */
+    @Label("Seed")
+    long seed;
+
+    /**
+     * The number of enemies alive at the end of the timestep.
+     */
+    @Label("Enemies")
+    int enemies;
+
+    /**
+     * The number of towers.
+     */
+    @Label("Towers")
+    int towers;
+
+    /**
+     * The number of towers that fired.
+     */
+    @Label("Shots Fired")
+    int shots;
+
+    /**
+     * The number of shots that hit an enemy.
+     */
+    @Label("Hits")
+    int hits;
+
+    /**
+     * The number of enemies killed.
+     */
+    @Label("Kills")
+    int kills;
+
+    /**
+     * The number of enemies spawned.
+     */
+    @Label("Spawns")
+    int spawns;
+}
@@ -0,0 +1,406 @@
+package towerdefence;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of where the time goes in a running game: how long each phase of
+ * a timestep takes, as a LatencyHistogram per phase, and counts of shots,
+ * hits, kills, spawns and breaches, and of the enemies and towers in play. A
+ * game given one with Game.setMetrics times its phases and counts as it plays;
+ * a map given one with Map.setMetrics times its drawing. MetricsExporter shows
+ * them over JMX and HTTP.
+ *
+ * A headless timestep can take well under a microsecond, not much more than a
+ * few reads of the clock, so only one timestep in timeEvery is timed. The
+ * game counts every timestep's shots and so on in fields of its own, and
+ * hands them over on the timed ones and when it ends, so the rest cost a few
+ * additions. The game thread records without locks or atomic operations: the
+ * counts are plain fields, and each report ends by setting the number of
+ * timesteps, which publishes everything recorded before it. Readers on other
+ * threads read that first, so they see everything up to the last report. A
+ * game with no metrics times nothing and reports nothing.
+ *
+ * Many games may share one, as the games of a GameServer do, so long as they
+ * are all played on the same thread; only the map may draw on another.
+ *
+ * @author 170021928
+ *
+ */
+public class TickMetrics implements TickMetricsMBean {
+
+    /**
+     * The phase in which the towers fire.
+     */
+    public static final int FIRE = 0;
+
+    /**
+     * The phase in which the enemies move and the dead are taken away.
+     */
+    public static final int UPDATE = 1;
+
+    /**
+     * The phase in which new enemies spawn.
+     */
+    public static final int SPAWN = 2;
+
+    /**
+     * The check of whether the game is won or lost.
+     */
+    public static final int END = 3;
+
+    /**
+     * The drawing of the map.
+     */
+    public static final int DRAW = 4;
+
+    /**
+     * The number of timesteps per timed one if no other is given, for games
+     * played headless: plenty of timings a second from a busy run, yet few
+     * enough that timesteps of a few hundred nanoseconds are slowed by about
+     * 1% at most.
+     */
+    public static final int DEFAULT_TIME_EVERY = 64;
+
+    /**
+     * The name of each phase, after the method it times.
+     */
+    private static final String[] PHASES = {"fire", "updateEnemies", "generateEnemies", "endGame", "print"};
+
+    /**
+     * The quantiles the report gives for each phase.
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * How long each phase took.
+     */
+    private final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+
+    /**
+     * The number of timesteps played. Set last of all in each report, and read
+     * first by readers.
+     */
+    private final AtomicLong ticks = new AtomicLong();
+
+    /**
+     * One timestep in this many is timed.
+     */
+    private final int timeEvery;
+
+    /**
+     * The number of shots.
+     */
+    private long shots;
+
+    /**
+     * The number of shots that hit.
+     */
+    private long hits;
+
+    /**
+     * The number of enemies killed.
+     */
+    private long kills;
+
+    /**
+     * The number of enemies spawned.
+     */
+    private long spawns;
+
+    /**
+     * The number of breaches.
+     */
+    private long breaches;
+
+    /**
+     * The number of enemies alive in every game.
+     */
+    private long enemies;
+
+    /**
+     * The number of towers in every game.
+     */
+    private long towers;
+
+    /**
+     * Constructs metrics with nothing recorded, that time one timestep in
+     * DEFAULT_TIME_EVERY.
+     */
+    public TickMetrics() {
+        this(DEFAULT_TIME_EVERY);
+    }
+
+    /**
+     * Constructs metrics with nothing recorded.
+     *
+     * @param timeEvery
+     *            one timestep in this many is timed, e.g. 1 to time them all
+     *            when a game is paced in real time
+     * @throws IllegalArgumentException
+     *             if timeEvery is not positive
+     */
+    public TickMetrics(int timeEvery) {
+
+        if (timeEvery < 1) {
+            throw new IllegalArgumentException("Expected timeEvery > 0 but got " + timeEvery);
+        }
+        this.timeEvery = timeEvery;
+        for (int p = 0; p < this.phases.length; p++) {
+            this.phases[p] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Returns how often a game's timesteps are timed.
+     *
+     * @return one timestep in this many is timed
+     */
+    public int getTimeEvery() {
+        return this.timeEvery;
+    }
+
+    /**
+     * Records how long a phase took.
+     *
+     * @param phase
+     *            the phase, e.g. FIRE
+     * @param nanos
+     *            the time it took, in nanoseconds
+     */
+    void record(int phase, long nanos) {
+        this.phases[phase].record(nanos);
+    }
+
+    /**
+     * Records a game lost to a breach. The game reports straight after.
+     */
+    void breached() {
+        this.breaches++;
+    }
+
+    /**
+     * Adds what a game has counted since it last reported, and publishes it,
+     * and everything recorded before it, to readers. Only the game thread
+     * sets the number of timesteps, so it needs no atomic add, and a lazy set
+     * orders it after the rest without a memory fence.
+     *
+     * @param ticks
+     *            the timesteps played
+     * @param fired
+     *            the towers that fired
+     * @param hit
+     *            the shots that hit an enemy
+     * @param killed
+     *            the enemies killed
+     * @param spawned
+     *            the enemies spawned
+     * @param enemyChange
+     *            the change in the number of enemies alive
+     * @param towerChange
+     *            the change in the number of towers
+     */
+    void report(int ticks, int fired, int hit, int killed, int spawned, int enemyChange, int towerChange) {
+
+        this.shots += fired;
+        this.hits += hit;
+        this.kills += killed;
+        this.spawns += spawned;
+        this.enemies += enemyChange;
+        this.towers += towerChange;
+        this.ticks.lazySet(this.ticks.get() + ticks);
+    }
+
+    @Override
+    public long getTicks() {
+        return this.ticks.get();
+    }
+
+    @Override
+    public long getShots() {
+        this.published();
+        return this.shots;
+    }
+
+    @Override
+    public long getHits() {
+        this.published();
+        return this.hits;
+    }
+
+    @Override
+    public long getKills() {
+        this.published();
+        return this.kills;
+    }
+
+    @Override
+    public long getSpawns() {
+        this.published();
+        return this.spawns;
+    }
+
+    @Override
+    public long getBreaches() {
+        this.published();
+        return this.breaches;
+    }
+
+    @Override
+    public long getEnemies() {
+        this.published();
+        return this.enemies;
+    }
+
+    @Override
+    public long getTowers() {
+        this.published();
+        return this.towers;
+    }
+
+    @Override
+    public String[] getPhases() {
+        return PHASES.clone();
+    }
+
+    @Override
+    public long[] getPhaseCounts() {
+
+        long[] counts = new long[PHASES.length];
+        this.published();
+        for (int p = 0; p < counts.length; p++) {
+            counts[p] = this.phases[p].getCount();
+        }
+        return counts;
+    }
+
+    @Override
+    public double[] getPhaseMeanNanos() {
+
+        double[] means = new double[PHASES.length];
+        this.published();
+        for (int p = 0; p < means.length; p++) {
+            means[p] = this.phases[p].getMean();
+        }
+        return means;
+    }
+
+    @Override
+    public long[] getPhaseMedianNanos() {
+        return this.quantiles(0.5);
+    }
+
+    @Override
+    public long[] getPhaseP99Nanos() {
+        return this.quantiles(0.99);
+    }
+
+    @Override
+    public long[] getPhaseMaxNanos() {
+
+        long[] max = new long[PHASES.length];
+        this.published();
+        for (int p = 0; p < max.length; p++) {
+            max[p] = this.phases[p].getMax();
+        }
+        return max;
+    }
+
+    /**
+     * Returns every metric in the Prometheus text format: a line per counter,
+     * then each phase as a summary of its times in nanoseconds, e.g.
+     *
+     * towerdefence_phase_nanos{phase="fire",quantile="0.99"} 1247
+     *
+     * @return the report
+     */
+    @Override
+    public String report() {
+
+        StringBuilder text = new StringBuilder(2048);
+
+        counter(text, "ticks", "counter", this.published());
+        counter(text, "shots", "counter", this.shots);
+        counter(text, "hits", "counter", this.hits);
+        counter(text, "kills", "counter", this.kills);
+        counter(text, "spawns", "counter", this.spawns);
+        counter(text, "breaches", "counter", this.breaches);
+        counter(text, "enemies", "gauge", this.enemies);
+        counter(text, "towers", "gauge", this.towers);
+
+        text.append("# TYPE towerdefence_phase_nanos summary\n");
+        for (int p = 0; p < PHASES.length; p++) {
+
+            LatencyHistogram phase = this.phases[p];
+            for (double q : QUANTILES) {
+                text.append("towerdefence_phase_nanos{phase=\"").append(PHASES[p]).append("\",quantile=\"").append(q)
+                        .append("\"} ").append(phase.getQuantile(q)).append('\n');
+            }
+            text.append("towerdefence_phase_nanos{phase=\"").append(PHASES[p]).append("\",quantile=\"1.0\"} ")
+                    .append(phase.getMax()).append('\n');
+            text.append("towerdefence_phase_nanos_sum{phase=\"").append(PHASES[p]).append("\"} ")
+                    .append(phase.getTotal()).append('\n');
+            text.append("towerdefence_phase_nanos_count{phase=\"").append(PHASES[p]).append("\"} ")
+                    .append(phase.getCount()).append('\n');
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder text = new StringBuilder("ticks = ").append(this.published()).append(" shots = ")
+                .append(this.shots).append(" hits = ").append(this.hits).append(" kills = ").append(this.kills)
+                .append(" spawns = ").append(this.spawns).append(" breaches = ").append(this.breaches);
+        for (int p = 0; p < PHASES.length; p++) {
+            text.append(' ').append(PHASES[p]).append(" p50/p99 = ").append(this.phases[p].getQuantile(0.5))
+                    .append('/').append(this.phases[p].getQuantile(0.99)).append("ns");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Reads the number of timesteps, which a reader on another thread does
+     * before anything else, so as to see everything recorded up to the last
+     * report.
+     *
+     * @return the ticks
+     */
+    private long published() {
+        return this.ticks.get();
+    }
+
+    /**
+     * Returns the time each phase took no longer than the given share of the
+     * times.
+     *
+     * @param quantile
+     *            the share, from 0 to 1
+     * @return the times in nanoseconds, by phase
+     */
+    private long[] quantiles(double quantile) {
+
+        long[] times = new long[PHASES.length];
+        this.published();
+        for (int p = 0; p < times.length; p++) {
+            times[p] = this.phases[p].getQuantile(quantile);
+        }
+        return times;
+    }
+
+    /**
+     * Adds a counter or gauge to a report.
+     *
+     * @param text
+     *            the report
+     * @param name
+     *            the metric's name, without the towerdefence_ prefix
+     * @param type
+     *            "counter" or "gauge"
+     * @param value
+     *            its value
+     */
+    private static void counter(StringBuilder text, String name, String type, long value) {
+        text.append("# TYPE towerdefence_").append(name).append(' ').append(type).append('\n');
+        text.append("towerdefence_").append(name).append(' ').append(value).append('\n');
+    }
+}
@@ -0,0 +1,119 @@
+package towerdefence;
+
+/**
+ * What TickMetrics shows over JMX, e.g. in JConsole or VisualVM under
+ * towerdefence:type=TickMetrics. The phases are fire, updateEnemies,
+ * generateEnemies, endGame and print, and each array has one entry per phase
+ * in that order.
+ *
+ * @author 170021928
+ *
+ */
+public interface TickMetricsMBean {
+
+    /**
+     * Returns the number of timesteps played.
+     *
+     * @return the ticks
+     */
+    long getTicks();
+
+    /**
+     * Returns the number of times a tower has fired, i.e. was loaded when its
+     * timestep came.
+     *
+     * @return the shots
+     */
+    long getShots();
+
+    /**
+     * Returns the number of shots that hit an enemy.
+     *
+     * @return the hits
+     */
+    long getHits();
+
+    /**
+     * Returns the number of enemies killed.
+     *
+     * @return the kills
+     */
+    long getKills();
+
+    /**
+     * Returns the number of enemies spawned.
+     *
+     * @return the spawns
+     */
+    long getSpawns();
+
+    /**
+     * Returns the number of games lost to an enemy reaching the castle.
+     *
+     * @return the breaches
+     */
+    long getBreaches();
+
+    /**
+     * Returns the number of enemies alive, as of each game's last report.
+     *
+     * @return the enemies
+     */
+    long getEnemies();
+
+    /**
+     * Returns the number of towers standing, as of each game's last report.
+     *
+     * @return the towers
+     */
+    long getTowers();
+
+    /**
+     * Returns the names of the phases timed.
+     *
+     * @return the phases
+     */
+    String[] getPhases();
+
+    /**
+     * Returns the number of times each phase has been timed.
+     *
+     * @return the counts, by phase
+     */
+    long[] getPhaseCounts();
+
+    /**
+     * Returns the mean time each phase took.
+     *
+     * @return the means in nanoseconds, by phase
+     */
+    double[] getPhaseMeanNanos();
+
+    /**
+     * Returns the median time each phase took.
+     *
+     * @return the medians in nanoseconds, by phase
+     */
+    long[] getPhaseMedianNanos();
+
+    /**
+     * Returns the time each phase took no longer than 99 times in 100.
+     *
+     * @return the 99th percentiles in nanoseconds, by phase
+     */
+    long[] getPhaseP99Nanos();
+
+    /**
+     * Returns the longest time each phase took.
+     *
+     * @return the longest times in nanoseconds, by phase
+     */
+    long[] getPhaseMaxNanos();
+
+    /**
+     * Returns every metric as text, as the metrics endpoint serves it.
+     *
+     * @return the report
+     */
+    String report();
+}
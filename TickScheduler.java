@@ -0,0 +1,147 @@
+package towerdefence;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces a game loop at a fixed number of ticks a second. Each tick is due a
+ * fixed period after the one before it, measured from when the loop started,
+ * so small delays do not build up. The loop calls awaitTick before each tick,
+ * which waits until the tick is due.
+ *
+ * The scheduler keeps count of how late each tick started (its jitter) and of
+ * overruns: ticks that start late at all, because they were already due when
+ * the loop came to await them, whether by a nanosecond or by whole periods.
+ * After an overrun the loop does not try to catch up by running ticks back to
+ * back; the schedule starts again from then, so the game slows down rather
+ * than lurching forward.
+ *
+ * @author 170021928
+ *
+ */
+public class TickScheduler {
+
+    /**
+     * Constructs a scheduler for the given rate.
+     *
+     * @param ticksPerSecond
+     *            the number of ticks each second, e.g. 20 or 60
+     */
+    public TickScheduler(int ticksPerSecond) {
+        this.periodNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ticksPerSecond);
+    }
+
+    /**
+     * The time between ticks, in nanoseconds.
+     */
+    private final long periodNanos;
+
+    /**
+     * The time the next tick is due, from System.nanoTime.
+     */
+    private long due;
+
+    /**
+     * True once the first tick has been awaited.
+     */
+    private boolean started;
+
+    /**
+     * The number of ticks started.
+     */
+    private long ticks;
+
+    /**
+     * The number of ticks that were due before the tick before them finished.
+     */
+    private long overruns;
+
+    /**
+     * The total time ticks started after they were due, in nanoseconds.
+     */
+    private long totalJitter;
+
+    /**
+     * The latest any tick started after it was due, in nanoseconds.
+     */
+    private long maxJitter;
+
+    /**
+     * Waits until the next tick is due. The first call returns straight away
+     * and starts the schedule.
+     */
+    public void awaitTick() {
+
+        long now = System.nanoTime();
+
+        if (!this.started) {
+            this.started = true;
+            this.due = now;
+        }
+
+        long start = this.due;
+
+        if (now > this.due) {
+            // the last tick ran into this one, so start it now and carry on
+            // the schedule from here
+            this.overruns++;
+            start = now;
+        } else {
+            // parkNanos may return early, so park until the tick is due
+            while (now < this.due) {
+                LockSupport.parkNanos(this.due - now);
+                now = System.nanoTime();
+            }
+        }
+
+        long jitter = now - this.due;
+        this.totalJitter += jitter;
+        this.maxJitter = Math.max(this.maxJitter, jitter);
+        this.ticks++;
+
+        this.due = start + this.periodNanos;
+    }
+
+    /**
+     * Returns the number of ticks started.
+     *
+     * @return the number of ticks
+     */
+    public long getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * Returns the number of ticks that started late, however late, because
+     * they were already due when they were awaited.
+     *
+     * @return the number of overruns
+     */
+    public long getOverruns() {
+        return this.overruns;
+    }
+
+    /**
+     * Returns how late ticks started on average, in microseconds.
+     *
+     * @return the mean jitter
+     */
+    public double getMeanJitterMicros() {
+        return this.ticks == 0 ? 0 : this.totalJitter / (this.ticks * 1000.0);
+    }
+
+    /**
+     * Returns the latest any tick started, in microseconds.
+     *
+     * @return the largest jitter
+     */
+    public double getMaxJitterMicros() {
+        return this.maxJitter / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ticks = %d overruns = %d jitter mean = %.1f us max = %.1f us", this.ticks,
+                this.overruns, this.getMeanJitterMicros(), this.getMaxJitterMicros());
+    }
+}
@@ -5,45 +5,39 @@ package towerdefence;
  * methods and variables used by all enemies. It is not explicitly defined as
  * abstract because it is useful on occasion to create a Tower instance before
  * it is known what type of tower it will be.
+ *
+ * The stats of a tower are those of its kind, a TowerType read from the unit
+ * file, so a tower keeps only its kind, its position and its load time.
  */
 public class Tower {
 
     /**
      * Tower constructor. Used as a super constructor to create different types
-     * of towers.
+     * of towers, or on its own for a kind of tower that has no class of its
+     * own.
      *
-     * @param damage
-     *            an int representing the damage the tower does an enemy.
+     * @param type
+     *            the kind of tower, which holds its damage, cost, symbol and
+     *            starting load time.
      * @param position
      *            an int representing the position of the tower on the map.
-     * @param loadTime
-     *            an int representing how many time steps the tower must wait
-     *            before firing each time.
-     * @param cost
-     *            an int representing how much the tower costs to place on the
-     *            map.
-     * @param symbol
-     *            a string representation of the tower for drawing on the map.
      */
-    Tower(int damage, int position, int loadTime, int cost, String symbol) {
-        this.damage = damage;
+    Tower(TowerType type, int position) {
+        this.type = type;
         this.position = position;
-        this.loadTime = loadTime;
-        this.cost = cost;
-        this.symbol = symbol;
-
+        this.loadTime = type.getLoadTime();
     }
 
     /**
-     * The x index of the tower - how close it is horizontally to the end of the
-     * corridor.
+     * The kind of tower, shared by every tower of the kind.
      */
-    private int position;
+    private final TowerType type;
 
     /**
-     * The damage dealt by the tower to an enemy.
+     * The x index of the tower - how close it is horizontally to the end of the
+     * corridor.
      */
-    private int damage;
+    private int position;
 
     /**
      * The number of timesteps that must elapse before the tower is able to
@@ -51,23 +45,13 @@ public class Tower {
      */
     private int loadTime;
 
-    /**
-     * The cost of the tower in coins.
-     */
-    private int cost;
-
-    /**
-     * The string representation of the tower for printing on the map.
-     */
-    private String symbol;
-
     /**
      * Returns the cost of the tower in coins.
      *
      * @return cost of tower
      */
     public int getCost() {
-        return this.cost;
+        return this.type.getCost();
     }
 
     /**
@@ -76,7 +60,7 @@ public class Tower {
      * @return damage done to enemy if hit by tower
      */
     public int getDamage() {
-        return this.damage;
+        return this.type.getDamage();
     }
 
     /**
@@ -95,7 +79,7 @@ public class Tower {
      * @return string representing tower
      */
     public String getSymbol() {
-        return this.symbol;
+        return this.type.getSymbol();
     }
 
     /**
@@ -104,7 +88,37 @@ public class Tower {
      * @return the name of the kind of tower - e.g. "Cannon"
      */
     public String name() {
-        return this.getClass().getSimpleName();
+        return this.type.getName();
+    }
+
+    /**
+     * Returns the kind of tower that the tower instance is.
+     *
+     * @return the kind of tower
+     */
+    public TowerType getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns the number of timesteps the tower takes to reload.
+     *
+     * @return the load time
+     */
+    public int getLoadTime() {
+        return this.loadTime;
+    }
+
+    /**
+     * Sets the number of timesteps the tower takes to reload, e.g. when it is
+     * upgraded or slowed. Use Game.setLoadTime for a tower in play, so the game
+     * knows when it next fires.
+     *
+     * @param time
+     *            the new load time, at least 1
+     */
+    public void setLoadTime(int time) {
+        this.loadTime = time;
     }
 
     /**
@@ -120,8 +134,8 @@ public class Tower {
     @Override
     public String toString() {
 
-        return this.name() + " damage = " + this.damage + " position = " + this.position + " loadTime = "
-                + this.loadTime + " cost = " + this.cost + " symbol = " + this.symbol;
+        return this.name() + " damage = " + this.getDamage() + " position = " + this.position + " loadTime = "
+                + this.loadTime + " cost = " + this.getCost() + " symbol = " + this.getSymbol();
     }
 
     /**
@@ -0,0 +1,132 @@
+package towerdefence;
+
+/**
+ * A kind of tower, as read from the unit file: everything that is the same for
+ * every tower of the kind. There is one of these per kind, shared by all its
+ * towers, so a tower itself holds only its kind, its position and its load
+ * time.
+ *
+ * @author 170021928
+ *
+ */
+public final class TowerType {
+
+    /**
+     * Constructs a kind of tower.
+     *
+     * @param id
+     *            its number on the buy menu, from 1
+     * @param name
+     *            its name, e.g. "Cannon"
+     * @param damage
+     *            the damage it does an enemy
+     * @param loadTime
+     *            the number of timesteps it takes to reload
+     * @param cost
+     *            its cost in coins
+     * @param symbol
+     *            how it is drawn on the map
+     */
+    TowerType(int id, String name, int damage, int loadTime, int cost, String symbol) {
+        this.id = id;
+        this.name = name;
+        this.damage = damage;
+        this.loadTime = loadTime;
+        this.cost = cost;
+        this.symbol = symbol;
+    }
+
+    /**
+     * The number of the kind on the buy menu.
+     */
+    private final int id;
+
+    /**
+     * The name of the kind.
+     */
+    private final String name;
+
+    /**
+     * The damage dealt by the tower to an enemy.
+     */
+    private final int damage;
+
+    /**
+     * The number of timesteps that must elapse before the tower is able to
+     * fire, until it is changed for a particular tower.
+     */
+    private final int loadTime;
+
+    /**
+     * The cost of the tower in coins.
+     */
+    private final int cost;
+
+    /**
+     * The string representation of the tower for printing on the map.
+     */
+    private final String symbol;
+
+    /**
+     * Returns the number of the kind on the buy menu, which is also the
+     * purchase type replays record.
+     *
+     * @return the type id, from 1
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Returns the name of the kind.
+     *
+     * @return the name, e.g. "Cannon"
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the damage done when a tower of the kind hits an enemy.
+     *
+     * @return the damage
+     */
+    public int getDamage() {
+        return this.damage;
+    }
+
+    /**
+     * Returns the number of timesteps a tower of the kind starts out taking to
+     * reload.
+     *
+     * @return the load time
+     */
+    public int getLoadTime() {
+        return this.loadTime;
+    }
+
+    /**
+     * Returns the cost of a tower of the kind in coins.
+     *
+     * @return the cost
+     */
+    public int getCost() {
+        return this.cost;
+    }
+
+    /**
+     * Returns how a tower of the kind is drawn on the map.
+     *
+     * @return the symbol, e.g. " _0o_"
+     */
+    public String getSymbol() {
+        return this.symbol;
+    }
+
+    @Override
+    public String toString() {
+
+        return this.name + " id = " + this.id + " damage = " + this.damage + " loadTime = " + this.loadTime
+                + " cost = " + this.cost + " symbol = " + this.symbol;
+    }
+}
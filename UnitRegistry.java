@@ -0,0 +1,390 @@
+package towerdefence;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every kind of tower and enemy in the game, read once from the unit file when
+ * the game starts. The stats of the units live in that file rather than in the
+ * code, so the game can be rebalanced, or given new kinds of unit, without
+ * recompiling; see units.txt for its layout.
+ *
+ * The file is units.txt in the towerdefence package on the class path, unless
+ * the system property towerdefence.units names another, e.g.
+ *
+ * java -Dtowerdefence.units=hard.txt -jar towerDefence.jar
+ *
+ * If there is neither, as when the classes are compiled straight from the
+ * sources, units.txt in the working directory is read, and failing that the
+ * kinds the game has always had.
+ *
+ * The kinds read are shared by every unit of that kind, so a tower or enemy
+ * holds only its kind and what changes as it is played.
+ *
+ * @author 170021928
+ *
+ */
+public final class UnitRegistry {
+
+    /**
+     * There are no registries, only the one set of kinds.
+     */
+    private UnitRegistry() {
+    }
+
+    /**
+     * The system property naming a unit file to read instead of the one on the
+     * class path.
+     */
+    public static final String PROPERTY = "towerdefence.units";
+
+    /**
+     * The name of the unit file on the class path, beside these classes.
+     */
+    private static final String RESOURCE = "units.txt";
+
+    /**
+     * The most kinds of tower or of enemy there may be, as replays, spectators
+     * and the enemy store keep a kind in a byte.
+     */
+    private static final int MAX_KINDS = Byte.MAX_VALUE;
+
+    /**
+     * The towers the game's classes ask for by name, which every unit file
+     * must have, wherever it puts them.
+     */
+    private static final String[] NAMED_TOWERS = {"Slingshot", "Catapult", "Cannon"};
+
+    /**
+     * The enemies the game's classes ask for by name, which every unit file
+     * must have, wherever it puts them.
+     */
+    private static final String[] NAMED_ENEMIES = {"Rat", "Camel", "Elephant"};
+
+    /**
+     * The kinds read if there is no unit file to be found: those of the
+     * units.txt the game comes with.
+     */
+    private static final String DEFAULTS = "tower Slingshot  1  1  10  \" _Y>_\"\n"
+            + "tower Catapult   5  3  20  \" _H\\_\"\n"
+            + "tower Cannon    10  5  30  \" _0o_\"\n"
+            + "enemy Rat        1  2.0  2  \"  ~> \"\n"
+            + "enemy Camel      5  1.0  1  \"  MP \"\n"
+            + "enemy Elephant  10  0.5  1  \"/M@\\ \"\n";
+
+    /**
+     * The kinds of tower, by id less one.
+     */
+    private static final TowerType[] TOWERS;
+
+    /**
+     * The kinds of enemy, by id.
+     */
+    private static final EnemyType[] ENEMIES;
+
+    static {
+        List<TowerType> towers = new ArrayList<TowerType>();
+        List<EnemyType> enemies = new ArrayList<EnemyType>();
+
+        try (Reader in = open()) {
+            read(in, towers, enemies);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the unit file", e);
+        }
+        TOWERS = towers.toArray(new TowerType[0]);
+        ENEMIES = enemies.toArray(new EnemyType[0]);
+    }
+
+    /**
+     * Opens the unit file: the one named by the system property, else the one
+     * on the class path, else the one in the working directory, else the
+     * built-in kinds.
+     *
+     * @return a reader of the file
+     * @throws IOException
+     *             if a file named by the system property or in the working
+     *             directory cannot be opened
+     */
+    private static Reader open() throws IOException {
+
+        String path = System.getProperty(PROPERTY);
+        if (path != null) {
+            return Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8);
+        }
+
+        InputStream in = UnitRegistry.class.getResourceAsStream(RESOURCE);
+        if (in != null) {
+            return new InputStreamReader(in, StandardCharsets.UTF_8);
+        }
+
+        Path local = Paths.get(RESOURCE);
+        if (Files.isRegularFile(local)) {
+            return Files.newBufferedReader(local, StandardCharsets.UTF_8);
+        }
+        return new StringReader(DEFAULTS);
+    }
+
+    /**
+     * Reads the kinds of unit from a unit file. Blank lines and lines starting
+     * with # are skipped.
+     *
+     * @param in
+     *            the file
+     * @param towers
+     *            the list to add the kinds of tower to, in order
+     * @param enemies
+     *            the list to add the kinds of enemy to, in order
+     * @throws IOException
+     *             if the file cannot be read
+     * @throws IllegalArgumentException
+     *             if a line is not a tower or enemy as units.txt describes,
+     *             there is not at least one enemy with a spawn weight, or a
+     *             tower or enemy the game asks for by name is missing
+     */
+    static void read(Reader in, List<TowerType> towers, List<EnemyType> enemies) throws IOException {
+
+        BufferedReader lines = new BufferedReader(in);
+        String line;
+        int number = 0;
+
+        while ((line = lines.readLine()) != null) {
+
+            number++;
+            String text = line.trim();
+            if (text.isEmpty() || text.startsWith("#")) {
+                continue;
+            }
+
+            // the symbol is everything between the quotes, spaces and all
+            int open = text.indexOf('"');
+            int close = text.lastIndexOf('"');
+            if (open < 0 || close == open || close != text.length() - 1) {
+                throw badLine(number, line, "the symbol must be last, in double quotes");
+            }
+            String symbol = text.substring(open + 1, close);
+            if (symbol.isEmpty() || symbol.length() > Map.CELL) {
+                throw badLine(number, line, "the symbol must be 1 to " + Map.CELL + " characters");
+            }
+            String[] words = text.substring(0, open).trim().split("\\s+");
+
+            try {
+                if (words[0].equals("tower") && words.length == 5) {
+                    int damage = Integer.parseInt(words[2]);
+                    int loadTime = Integer.parseInt(words[3]);
+                    int cost = Integer.parseInt(words[4]);
+                    if (damage < 0 || loadTime < 1 || cost < 0 || towers.size() == MAX_KINDS) {
+                        throw badLine(number, line, "out of range");
+                    }
+                    towers.add(new TowerType(towers.size() + 1, words[1], damage, loadTime, cost, symbol));
+
+                } else if (words[0].equals("enemy") && words.length == 5) {
+                    int health = Integer.parseInt(words[2]);
+                    double step = Double.parseDouble(words[3]);
+                    int weight = Integer.parseInt(words[4]);
+                    if (health < 1 || !(step > 0) || weight < 0 || enemies.size() == MAX_KINDS) {
+                        throw badLine(number, line, "out of range");
+                    }
+                    enemies.add(new EnemyType(enemies.size(), words[1], health, step, weight, symbol));
+
+                } else {
+                    throw badLine(number, line, "expected a tower or an enemy");
+                }
+            } catch (NumberFormatException e) {
+                throw badLine(number, line, e.getMessage());
+            }
+        }
+
+        int weights = 0;
+        for (EnemyType enemy : enemies) {
+            weights += enemy.getSpawnWeight();
+        }
+        if (weights == 0) {
+            throw new IllegalArgumentException("The unit file needs at least one enemy that spawns");
+        }
+        for (String name : NAMED_TOWERS) {
+            if (!hasTower(towers, name)) {
+                throw new IllegalArgumentException("The unit file needs a tower called " + name);
+            }
+        }
+        for (String name : NAMED_ENEMIES) {
+            if (!hasEnemy(enemies, name)) {
+                throw new IllegalArgumentException("The unit file needs an enemy called " + name);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a kind of tower has been read.
+     *
+     * @param towers
+     *            the kinds read
+     * @param name
+     *            the name of the kind
+     * @return true if one of them has that name
+     */
+    private static boolean hasTower(List<TowerType> towers, String name) {
+
+        for (TowerType type : towers) {
+            if (type.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a kind of enemy has been read.
+     *
+     * @param enemies
+     *            the kinds read
+     * @param name
+     *            the name of the kind
+     * @return true if one of them has that name
+     */
+    private static boolean hasEnemy(List<EnemyType> enemies, String name) {
+
+        for (EnemyType type : enemies) {
+            if (type.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes the exception for a line of the unit file that cannot be read.
+     *
+     * @param number
+     *            the line number, from 1
+     * @param line
+     *            the line
+     * @param reason
+     *            what is wrong with it
+     * @return the exception to throw
+     */
+    private static IllegalArgumentException badLine(int number, String line, String reason) {
+        return new IllegalArgumentException("Unit file line " + number + ": " + reason + ": " + line);
+    }
+
+    /**
+     * Returns the number of kinds of tower, which are numbered 1 to this.
+     *
+     * @return the number of kinds of tower
+     */
+    public static int towerCount() {
+        return TOWERS.length;
+    }
+
+    /**
+     * Returns the kind of tower with the given id.
+     *
+     * @param id
+     *            the number of the kind on the buy menu
+     * @return the kind, or null if there is none with that id
+     */
+    public static TowerType tower(int id) {
+        return id >= 1 && id <= TOWERS.length ? TOWERS[id - 1] : null;
+    }
+
+    /**
+     * Returns the kind of tower with the given name.
+     *
+     * @param name
+     *            the name, e.g. "Cannon"
+     * @return the kind
+     * @throws IllegalArgumentException
+     *             if the unit file has no tower of that name
+     */
+    public static TowerType tower(String name) {
+
+        for (TowerType type : TOWERS) {
+            if (type.getName().equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("The unit file has no tower called " + name);
+    }
+
+    /**
+     * Returns the number of kinds of enemy, which are numbered 0 to one less
+     * than this.
+     *
+     * @return the number of kinds of enemy
+     */
+    public static int enemyCount() {
+        return ENEMIES.length;
+    }
+
+    /**
+     * Returns the kind of enemy with the given type number.
+     *
+     * @param id
+     *            the type number
+     * @return the kind
+     * @throws IllegalArgumentException
+     *             if there is no enemy with that type number, e.g. in a replay
+     *             recorded with another unit file
+     */
+    public static EnemyType enemy(int id) {
+
+        if (id < 0 || id >= ENEMIES.length) {
+            throw new IllegalArgumentException(
+                    "Expected an enemy type from 0 to " + (ENEMIES.length - 1) + " but got " + id);
+        }
+        return ENEMIES[id];
+    }
+
+    /**
+     * Returns the kind of enemy with the given name.
+     *
+     * @param name
+     *            the name, e.g. "Rat"
+     * @return the kind
+     * @throws IllegalArgumentException
+     *             if the unit file has no enemy of that name
+     */
+    public static EnemyType enemy(String name) {
+
+        for (EnemyType type : ENEMIES) {
+            if (type.getName().equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("The unit file has no enemy called " + name);
+    }
+
+    /**
+     * Describes a kind of tower for the buy menu, with the names padded so the
+     * stats of every kind line up.
+     *
+     * @param id
+     *            the number of the kind on the buy menu
+     * @return e.g. "Cannon:    DMG: 10 DELAY: 5 COST: 30"
+     */
+    static String describeTower(int id) {
+
+        int width = 0;
+        for (TowerType type : TOWERS) {
+            width = Math.max(width, type.getName().length() + 1);
+        }
+        TowerType type = TOWERS[id - 1];
+
+        StringBuilder text = new StringBuilder(type.getName()).append(':');
+        while (text.length() <= width) {
+            text.append(' ');
+        }
+        return text.append("DMG: ").append(type.getDamage()).append(" DELAY: ").append(type.getLoadTime())
+                .append(" COST: ").append(type.getCost()).toString();
+    }
+}
@@ -0,0 +1,55 @@
+package towerdefence;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler on, so that every result comes with
+ * its allocation rate, and writes the results to a JSON file that later runs
+ * can be compared against.
+ *
+ * Any of JMH's usual options may be given, for example a benchmark name to
+ * run only some, or -p enemyCount=1000 to run only some parameters.
+ *
+ * @author 170021928
+ *
+ */
+public final class Benchmarks {
+
+    /**
+     * The file the results are written to, unless -rff is given.
+     */
+    private static final String RESULTS = "jmh-result.json";
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args
+     *            JMH command line options
+     * @throws RunnerException
+     *             if a benchmark fails
+     * @throws CommandLineOptionException
+     *             if the options are not understood
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLine.getResult().orElse(RESULTS))
+                .build();
+
+        new Runner(options).run();
+    }
+}
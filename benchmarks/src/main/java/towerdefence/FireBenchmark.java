@@ -0,0 +1,79 @@
+package towerdefence;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the fire phase of a game with thousands of towers, fired on one
+ * thread (threads = 0) and shared over a pool of 2 or 4 threads, to see
+ * whether sharing wins and from how many towers; ParallelFire.THRESHOLD should
+ * sit where it starts to. Subtract restore for the cost of the phase itself.
+ *
+ * @author 170021928
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class FireBenchmark {
+
+    @Param({ "100000" })
+    int enemyCount;
+
+    @Param({ "4000", "16000", "64000" })
+    int towerCount;
+
+    @Param({ "0", "2", "4" })
+    int threads;
+
+    private ForkJoinPool pool;
+
+    private Game game;
+
+    private GameSnapshot start;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.game = Positions.game(2 * this.towerCount, this.enemyCount, this.towerCount);
+        if (this.threads > 0) {
+            this.pool = new ForkJoinPool(this.threads);
+            this.game.setFirePool(this.pool);
+        }
+        this.start = this.game.snapshot();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void restore() {
+        this.game.restore(this.start);
+    }
+
+    @Benchmark
+    public void fire() {
+        this.game.restore(this.start);
+        this.game.fire();
+    }
+}
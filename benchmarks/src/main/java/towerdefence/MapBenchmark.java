@@ -0,0 +1,90 @@
+package towerdefence;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures drawing the map, both from the enemy and tower lists the
+ * interactive game prints and from the frames a watched game prints. The map
+ * is written to a writer that throws it away, so the console is not measured.
+ *
+ * Two frames a timestep apart are drawn in turn, so that in ANSI mode there
+ * are changed cells to redraw each time.
+ *
+ * @author 170021928
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MapBenchmark {
+
+    @Param({ "15", "60" })
+    int corridorLength;
+
+    @Param({ "10", "1000", "100000" })
+    int enemyCount;
+
+    @Param({ "1", "8" })
+    int towerCount;
+
+    @Param({ "false", "true" })
+    boolean ansi;
+
+    private Map map;
+
+    private final Frame[] frames = new Frame[2];
+
+    private final ArrayList<ArrayList<Enemy>> views = new ArrayList<ArrayList<Enemy>>(2);
+
+    private ArrayList<Tower> towers;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        // the enemy lists are views of a game's store, so each needs a game
+        // of its own
+        for (int i = 0; i < 2; i++) {
+            Game game = Positions.game(this.corridorLength, this.enemyCount, this.towerCount);
+            if (i == 1) {
+                game.getEnemyStore().advance();
+            }
+            this.frames[i] = game.toFrame();
+            this.views.add(game.getEnemyStore().views());
+        }
+
+        this.towers = Positions.towers(this.corridorLength, this.towerCount);
+        this.map = new Map(this.corridorLength, this.ansi, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void printFrame() {
+        this.map.print(this.frames[this.next]);
+        this.next ^= 1;
+    }
+
+    @Benchmark
+    public void printLists() {
+        this.map.print(this.views.get(this.next), this.towers);
+        this.next ^= 1;
+    }
+}
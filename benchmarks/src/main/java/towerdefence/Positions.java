@@ -0,0 +1,137 @@
+package towerdefence;
+
+import java.util.ArrayList;
+
+/**
+ * Builds game positions for the benchmarks: a corridor with a given number of
+ * towers spread along it and a given number of enemies walking it. The same
+ * arguments always build the same position.
+ *
+ * @author 170021928
+ *
+ */
+final class Positions {
+
+    /**
+     * The seed every benchmark position is built from.
+     */
+    static final long SEED = 42L;
+
+    /**
+     * The kinds of tower placed, in turn along the corridor.
+     */
+    private static final int[] TOWER_TYPES = {Game.SLINGSHOT, Game.CATAPULT, Game.CANNON};
+
+    /**
+     * There are no instances, only the positions built.
+     */
+    private Positions() {
+    }
+
+    /**
+     * Makes a headless game with the towers and enemies in place, begun and
+     * ready to play the next timestep. Beginning it may spawn a few enemies
+     * more at the start of the corridor.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @param enemyCount
+     *            how many enemies are alive
+     * @param towerCount
+     *            how many towers are placed, at most corridorLength - 1
+     * @return the game
+     */
+    static Game game(int corridorLength, int enemyCount, int towerCount) {
+
+        Game game = Game.newHeadless(corridorLength, SEED);
+
+        // the position is not meant to be affordable, so the purse is only
+        // topped up while the towers are bought
+        game.setPurse(Integer.MAX_VALUE);
+        for (int t = 0; t < towerCount; t++) {
+            if (!game.buy(towerType(t), towerPosition(corridorLength, towerCount, t))) {
+                throw new IllegalArgumentException("Cannot place " + towerCount + " towers on a corridor of "
+                        + corridorLength);
+            }
+        }
+        game.setPurse(Game.startingPurse(corridorLength));
+
+        spawn(game.getEnemyStore(), corridorLength, enemyCount);
+
+        // starts the spawn scheduler, so a snapshot of the game has it and a
+        // restored game spawns rather than building it again; there are
+        // enough enemies already that none are seeded
+        game.begin();
+        return game;
+    }
+
+    /**
+     * Makes the towers of the same position as game(), for printing.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @param towerCount
+     *            how many towers there are
+     * @return the towers
+     */
+    static ArrayList<Tower> towers(int corridorLength, int towerCount) {
+
+        ArrayList<Tower> towers = new ArrayList<Tower>(towerCount);
+        for (int t = 0; t < towerCount; t++) {
+            towers.add(Game.createTower(towerType(t), towerPosition(corridorLength, towerCount, t)));
+        }
+        return towers;
+    }
+
+    /**
+     * Returns the kind of a tower of a position: slingshots, catapults and
+     * cannons in turn.
+     *
+     * @param t
+     *            the tower, from 0
+     * @return its number on the buy menu
+     */
+    private static int towerType(int t) {
+        return TOWER_TYPES[t % TOWER_TYPES.length];
+    }
+
+    /**
+     * Returns where a tower of a position stands. The towers are spread evenly
+     * from position 1, as a tower at 0 can never fire.
+     *
+     * @param corridorLength
+     *            the length of the corridor
+     * @param towerCount
+     *            how many towers there are
+     * @param t
+     *            the tower, from 0
+     * @return its position
+     */
+    private static int towerPosition(int corridorLength, int towerCount, int t) {
+        return 1 + t * (corridorLength - 1) / towerCount;
+    }
+
+    /**
+     * Fills the store with enemies of random kinds on random lines, spread
+     * evenly along the corridor, far enough from the castle that a timestep
+     * later none has reached it. They are spawned nearest the castle first so
+     * the store is already in order.
+     *
+     * @param store
+     *            the store to fill
+     * @param corridorLength
+     *            the length of the corridor
+     * @param enemyCount
+     *            how many enemies to spawn
+     */
+    private static void spawn(EnemyStore store, int corridorLength, int enemyCount) {
+
+        GameRandom random = new GameRandom(SEED);
+        for (int i = 0; i < enemyCount; i++) {
+            byte type = (byte) random.nextInt(3);
+            int slot = store.spawn(type, 2 + random.nextInt(Map.MAPHEIGHT - 2));
+            store.setPosition(slot, (double) (corridorLength - 3) * (enemyCount - i) / enemyCount);
+        }
+        store.sort();
+    }
+}
@@ -0,0 +1,84 @@
+package towerdefence;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a timestep of spawning on a wide map, drawing each lane's next
+ * spawn with the SpawnScheduler or rolling for every lane, at the default
+ * difficulty once it has ramped up and at a sparse one where a lane spawns one
+ * timestep in a hundred.
+ *
+ * @author 170021928
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SpawnBenchmark {
+
+    @Param({ "1000", "100000" })
+    int lanes;
+
+    @Param({ "default", "sparse" })
+    String curve;
+
+    private DifficultyCurve difficulty;
+
+    private SpawnScheduler spawns;
+
+    private GameRandom random;
+
+    private int timeStep;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.difficulty = this.curve.equals("sparse") ? new DifficultyCurve(400, 400, 1) : DifficultyCurve.DEFAULT;
+        this.random = new GameRandom(1);
+        this.spawns = new SpawnScheduler(this.lanes);
+        this.spawns.start(1, this.difficulty, this.random);
+        this.timeStep = 1;
+    }
+
+    @Benchmark
+    public int schedule() {
+
+        int t = this.timeStep++;
+        int kinds = 0;
+        int due = this.spawns.collect(t);
+        for (int d = 0; d < due; d++) {
+            kinds += SpawnScheduler.nextKind(this.random);
+            this.spawns.schedule(this.spawns.getDue(d), t + 1, this.difficulty, this.random);
+        }
+        return kinds;
+    }
+
+    @Benchmark
+    public int roll() {
+
+        int t = this.timeStep++;
+        int rate = this.difficulty.inverseRate(t);
+        int kinds = 0;
+        for (int lane = 0; lane < this.lanes; lane++) {
+            if (this.random.nextInt(rate) < DifficultyCurve.SPAWN_CHANCES) {
+                kinds += SpawnScheduler.nextKind(this.random);
+            }
+        }
+        return kinds;
+    }
+}
@@ -0,0 +1,97 @@
+package towerdefence;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each phase of a headless timestep, and the whole timestep.
+ *
+ * Every phase changes the game, so each call first restores the position it
+ * started from. The restore benchmark measures that alone; subtract it from
+ * the others to get the cost of the phase. With metrics, the game has
+ * TickMetrics timing one timestep in the default number, which advance is the
+ * one to compare for their overhead.
+ *
+ * @author 170021928
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TickBenchmark {
+
+    @Param({ "15", "60" })
+    int corridorLength;
+
+    @Param({ "10", "1000", "100000" })
+    int enemyCount;
+
+    @Param({ "1", "8" })
+    int towerCount;
+
+    @Param({ "false", "true" })
+    boolean metrics;
+
+    private Game game;
+
+    private GameSnapshot start;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.game = Positions.game(this.corridorLength, this.enemyCount, this.towerCount);
+        if (this.metrics) {
+            this.game.setMetrics(new TickMetrics());
+        }
+        this.start = this.game.snapshot();
+    }
+
+    @Benchmark
+    public void restore() {
+        this.game.restore(this.start);
+    }
+
+    @Benchmark
+    public void advance() {
+        this.game.restore(this.start);
+        this.game.advance();
+    }
+
+    @Benchmark
+    public void fire() {
+        this.game.restore(this.start);
+        this.game.fire();
+    }
+
+    @Benchmark
+    public void updateEnemies() {
+        this.game.restore(this.start);
+        this.game.updateEnemies();
+    }
+
+    @Benchmark
+    public EnemyStore generateEnemies() {
+        this.game.restore(this.start);
+        return this.game.generateEnemies(this.game.getEnemyStore());
+    }
+
+    @Benchmark
+    public int endGame() {
+        this.game.restore(this.start);
+        return this.game.endGame();
+    }
+}